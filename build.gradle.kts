@@ -20,6 +20,16 @@ repositories {
 sourceSets.main.get().java.srcDir("src")
 sourceSets.test.get().java.srcDir("test")
 
+// JMH benchmarks of the compiler phases and of the compiled programs, next to the tests.
+val jmh: SourceSet by sourceSets.creating {
+    java.srcDir("jmh")
+    resources.srcDir("jmh/resources")
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[jmh.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+
 dependencies {
     // Use JUnit test framework.
     testImplementation("junit:junit:4.13.2")
@@ -33,9 +43,142 @@ dependencies {
 
     // This dependency is used by the application.
     implementation("com.google.guava:guava:31.1-jre")
+
+    // JMH
+    jmh.implementationConfigurationName("org.openjdk.jmh:jmh-core:1.37")
+    jmh.annotationProcessorConfigurationName("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 application {
     // Define the main class for the application.
     mainClass.set("compiler.Compiler")
+
+    // Use the AppCDS archive written by appCds, the JVM ignores it when it is missing or stale.
+    applicationDefaultJvmArgs = listOf(
+        "-XX:SharedArchiveFile=APP_HOME_PLACEHOLDER/lib/compiler.jsa",
+        "-Xshare:auto",
+        "-Xlog:cds=off,cds+dynamic=off"
+    )
+}
+
+tasks.startScripts {
+    doLast {
+        // The archive lies next to the jars of the installation.
+        unixScript.writeText(unixScript.readText().replace("APP_HOME_PLACEHOLDER", "'\"\$APP_HOME\"'"))
+        windowsScript.writeText(windowsScript.readText().replace("APP_HOME_PLACEHOLDER", "%APP_HOME%"))
+    }
+}
+
+val installDirectory = layout.buildDirectory.dir("install/compiler")
+
+// The class path of the start scripts, an archive is only used with the same one.
+fun installedClassPath(): List<File> {
+    val lib = installDirectory.get().dir("lib").asFile
+    val jars = listOf(tasks.jar.get().archiveFileName.get()) + configurations.runtimeClasspath.get().map { it.name }
+
+    return jars.map { File(lib, it) }
+}
+
+val appCds by tasks.registering(JavaExec::class) {
+    group = "distribution"
+    description = "Trains the installed compiler on the examples and writes its AppCDS archive next to the jars."
+    dependsOn(tasks.installDist)
+
+    mainClass.set("compiler.Compiler")
+    classpath = files(provider { installedClassPath() })
+    args("--batch", "-j", "1", "-d", layout.buildDirectory.dir("cds/training").get().asFile.path, "test/examples")
+    jvmArgs("-XX:ArchiveClassesAtExit=" + installDirectory.get().file("lib/compiler.jsa").asFile.path)
+
+    // Some examples fail to compile on purpose.
+    isIgnoreExitValue = true
+}
+
+// The scaling test up to programs of a million lines, only up to 10K lines with the other tests.
+val scalingTest by tasks.registering(Test::class) {
+    group = "verification"
+    description = "Checks that each phase takes about the same time per line from 1K to 1M lines of generated code."
+
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    filter.includeTestsMatching("TestProgramGenerator.testScaling")
+    systemProperty("scaling.maxLines", project.findProperty("scaling.maxLines") ?: "1000000")
+    maxHeapSize = "8g"
+    testLogging.showStandardStreams = true
+}
+
+tasks.installDist {
+    finalizedBy(appCds)
+}
+
+val startupBenchmark by tasks.registering {
+    group = "verification"
+    description = "Compares the cold start time of compiling a small program with and without the AppCDS archive."
+    dependsOn(appCds)
+
+    doLast {
+        val java = File(System.getProperty("java.home"), "bin/java").path
+        val classPath = installedClassPath().joinToString(File.pathSeparator)
+        val archive = installDirectory.get().file("lib/compiler.jsa").asFile.path
+        val target = layout.buildDirectory.file("cds/benchmark/test.class").get().asFile.path
+        val runs = (project.findProperty("runs") as String?)?.toInt() ?: 10
+
+        fun medianMillis(vararg jvmArgs: String): Double {
+            val times = (1..runs).map {
+                val command = listOf(java) + jvmArgs + listOf("-cp", classPath, "compiler.Compiler", "test/examples/factorial.lang", "-o", target)
+                val start = System.nanoTime()
+                val process = ProcessBuilder(command)
+                    .directory(projectDir)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start()
+
+                check(process.waitFor() == 0) { "The compilation failed: $command" }
+
+                (System.nanoTime() - start) / 1e6
+            }.sorted()
+
+            return times[times.size / 2]
+        }
+
+        val defaultMillis = medianMillis("-Xshare:auto")
+        val archiveMillis = medianMillis("-Xshare:auto", "-XX:SharedArchiveFile=$archive")
+
+        println("Cold start compile of factorial.lang, median of $runs runs")
+        println("  JDK archive only: %8.1f ms".format(defaultMillis))
+        println("  AppCDS archive:   %8.1f ms (%.0f%% faster)".format(archiveMillis, 100 * (defaultMillis - archiveMillis) / defaultMillis))
+    }
+}
+
+// ./gradlew jmh -Pjmh.includes=Lexer runs the matching benchmarks only.
+tasks.register<JavaExec>("jmh") {
+    group = "verification"
+    description = "Runs the JMH benchmarks of the compiler phases and of the compiled programs, with the bytes allocated per operation."
+
+    val results = layout.buildDirectory.file("reports/jmh/results.json")
+
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args(listOfNotNull(project.findProperty("jmh.includes") as String?))
+    // The gc profiler adds gc.alloc.rate.norm, the bytes allocated per operation.
+    args("-prof", "gc", "-rf", "json", "-rff", results.get().asFile.path)
+
+    doFirst {
+        results.get().asFile.parentFile.mkdirs()
+    }
+}
+
+// The programs of jmh/resources/programs compiled by this compiler against their Java baselines.
+tasks.register<JavaExec>("runtimeBenchmark") {
+    group = "verification"
+    description = "Runs the compiled benchmark programs and their Java baselines, and prints the gap of each."
+
+    val results = layout.buildDirectory.file("reports/jmh/runtime.json")
+
+    classpath = jmh.runtimeClasspath
+    mainClass.set("benchmarks.RuntimeGap")
+    args("-rf", "json", "-rff", results.get().asFile.path)
+
+    doFirst {
+        results.get().asFile.parentFile.mkdirs()
+    }
 }
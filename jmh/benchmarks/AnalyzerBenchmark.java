@@ -0,0 +1,41 @@
+package benchmarks;
+
+import compiler.Analyzer;
+import compiler.Components.Blocks.Block;
+import compiler.Lexer;
+import compiler.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+// the checks of a parsed program, by a new analyzer every time
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalyzerBenchmark {
+    @Param({"10", "100", "1000"})
+    public int functions;
+
+    @Param({"1"})
+    public int parallelism;
+
+    private Block ast;
+
+    @Setup
+    public void setUp() {
+        ast = new Parser(new Lexer(new StringReader(Programs.synthetic(functions)))).getAST();
+    }
+
+    @Benchmark
+    public Analyzer analyze() {
+        Analyzer analyzer = Analyzer.newInstance();
+        analyzer.setParallelism(parallelism);
+        analyzer.analyze(ast);
+
+        return analyzer;
+    }
+}
@@ -0,0 +1,170 @@
+package benchmarks;
+
+import java.io.PrintStream;
+
+// the programs of jmh/programs written by hand in Java, printing the same
+public class Baselines {
+    private Baselines() {}
+
+    public static void run(String program, PrintStream out) {
+        switch (program) {
+            case "factorial" -> factorial(out);
+            case "sieve" -> sieve(out);
+            case "matrix" -> matrix(out);
+            case "particles" -> particles(out);
+            case "strings" -> strings(out);
+            default -> throw new IllegalArgumentException("No baseline for " + program);
+        }
+    }
+
+    static void factorial(PrintStream out) {
+        int total = 0;
+
+        for (int i = 0; i < 1_000_000; i++) {
+            total += factorial(i % 13);
+        }
+
+        out.println(total);
+    }
+
+    private static int factorial(int n) {
+        if (n <= 1) {
+            return 1;
+        }
+
+        return n * factorial(n - 1);
+    }
+
+    static void sieve(PrintStream out) {
+        out.println(countPrimes(2_000_000));
+    }
+
+    private static int countPrimes(int n) {
+        boolean[] composite = new boolean[n];
+        int count = 0;
+
+        for (int i = 2; i < n; i++) {
+            if (!composite[i]) {
+                count++;
+
+                for (long j = (long) i * i; j < n; j += i) {
+                    composite[(int) j] = true;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    static void matrix(PrintStream out) {
+        int n = 200;
+        int[] a = new int[n * n];
+        int[] b = new int[n * n];
+        int[] c = new int[n * n];
+
+        fill(a, n, 3);
+        fill(b, n, 11);
+        multiply(a, b, c, n);
+
+        int checksum = 0;
+
+        for (int i = 0; i < n * n; i++) {
+            checksum += c[i] * (i % 7 + 1);
+        }
+
+        out.println(checksum);
+    }
+
+    private static void fill(int[] m, int n, int seed) {
+        for (int i = 0; i < n * n; i++) {
+            m[i] = (i * seed + 7) % 100;
+        }
+    }
+
+    private static void multiply(int[] a, int[] b, int[] c, int n) {
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                int sum = 0;
+
+                for (int k = 0; k < n; k++) {
+                    sum += a[i * n + k] * b[k * n + j];
+                }
+
+                c[i * n + j] = sum;
+            }
+        }
+    }
+
+    private record Particle(int x, int y, int vx, int vy) {}
+
+    static void particles(PrintStream out) {
+        int n = 1000;
+        int size = 500;
+        Particle[] particles = new Particle[n];
+
+        for (int i = 0; i < n; i++) {
+            particles[i] = new Particle(i * 37 % size, i * 91 % size, i % 7 - 3, i % 5 - 2);
+        }
+
+        for (int step = 0; step < 1000; step++) {
+            for (int i = 0; i < n; i++) {
+                particles[i] = move(particles[i], size);
+            }
+        }
+
+        int checksum = 0;
+
+        for (Particle particle : particles) {
+            checksum += particle.x() * 31 + particle.y();
+        }
+
+        out.println(checksum);
+    }
+
+    private static Particle move(Particle p, int size) {
+        int x = p.x() + p.vx();
+        int y = p.y() + p.vy();
+        int vx = p.vx();
+        int vy = p.vy();
+
+        if (x < 0) {
+            x = -x;
+            vx = -vx;
+        }
+        if (x >= size) {
+            x = 2 * (size - 1) - x;
+            vx = -vx;
+        }
+        if (y < 0) {
+            y = -y;
+            vy = -vy;
+        }
+        if (y >= size) {
+            y = 2 * (size - 1) - y;
+            vy = -vy;
+        }
+
+        return new Particle(x, y, vx, vy);
+    }
+
+    static void strings(PrintStream out) {
+        int total = 0;
+
+        for (int round = 0; round < 2000; round++) {
+            total += word(200, round).length();
+        }
+
+        out.println(total);
+        out.println(word(40, 1));
+    }
+
+    private static String word(int length, int seed) {
+        StringBuilder word = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++) {
+            word.append((char) (97 + (i * 7 + seed) % 26));
+        }
+
+        return word.toString();
+    }
+}
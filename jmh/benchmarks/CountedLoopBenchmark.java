@@ -0,0 +1,98 @@
+package benchmarks;
+
+import compiler.InMemoryCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// array loops compiled from for loops, emitted as counted loops with an iinc and a hoisted limit, next to the same loops written as whiles,
+// each one also run with superword vectorization turned off, the gap between the two being what vectorization brings
+// on JDK 21 C2 counts and vectorizes both shapes, the while loops too, so the two run at about the same speed
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CountedLoopBenchmark {
+    private static final String CLASS_NAME = "Program";
+
+    private static final String FOR_LOOPS = """
+            fun kernel(a int[], b int[], k int) int {
+                i int;
+                for (i, 0, len(a), 1) {
+                    a[i] = a[i] + b[i] * k;
+                }
+                s int = 0;
+                for (i, 0, len(a), 1) {
+                    s = s + a[i];
+                }
+                return s;
+            }
+
+            fun main() {
+            }
+            """;
+
+    private static final String WHILE_LOOPS = """
+            fun kernel(a int[], b int[], k int) int {
+                i int = 0;
+                while (i < len(a)) {
+                    a[i] = a[i] + b[i] * k;
+                    i = i + 1;
+                }
+                s int = 0;
+                i = 0;
+                while (i < len(a)) {
+                    s = s + a[i];
+                    i = i + 1;
+                }
+                return s;
+            }
+
+            fun main() {
+            }
+            """;
+
+    @Param({"for", "while"})
+    public String loop;
+
+    @Param({"4096"})
+    public int size;
+
+    private MethodHandle kernel;
+    private int[] a;
+    private int[] b;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        Map<String, byte[]> classes = InMemoryCompiler.compile(loop.equals("for") ? FOR_LOOPS : WHILE_LOOPS, CLASS_NAME, 1);
+        Class<?> program = InMemoryCompiler.load(classes, CLASS_NAME, InputStream.nullInputStream(), new PrintStream(OutputStream.nullOutputStream()));
+
+        kernel = MethodHandles.publicLookup().findStatic(program, "kernel", MethodType.methodType(int.class, int[].class, int[].class, int.class));
+        a = new int[size];
+        b = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            b[i] = i;
+        }
+    }
+
+    @Benchmark
+    public int vectorized() throws Throwable {
+        return (int) kernel.invokeExact(a, b, 3);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-XX:-UseSuperWord")
+    public int scalar() throws Throwable {
+        return (int) kernel.invokeExact(a, b, 3);
+    }
+}
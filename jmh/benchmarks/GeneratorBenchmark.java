@@ -0,0 +1,48 @@
+package benchmarks;
+
+import compiler.Analyzer;
+import compiler.Components.Blocks.Block;
+import compiler.Generator;
+import compiler.Lexer;
+import compiler.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// the class files of an analyzed program, kept in memory
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeneratorBenchmark {
+    @Param({"10", "100", "1000"})
+    public int functions;
+
+    @Param({"1"})
+    public int parallelism;
+
+    private Block ast;
+    private Analyzer analyzer;
+
+    @Setup
+    public void setUp() {
+        ast = new Parser(new Lexer(new StringReader(Programs.synthetic(functions)))).getAST();
+
+        analyzer = Analyzer.newInstance();
+        analyzer.setParallelism(parallelism);
+        analyzer.analyze(ast);
+    }
+
+    @Benchmark
+    public Map<String, byte[]> generate() {
+        Generator generator = new Generator("Benchmark", null, analyzer);
+        generator.setParallelism(parallelism);
+        generator.generate(ast);
+
+        return generator.getClasses();
+    }
+}
@@ -0,0 +1,39 @@
+package benchmarks;
+
+import compiler.Components.Token;
+import compiler.Lexer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+// the symbols of a whole program, one by one as the parser asks for them
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LexerBenchmark {
+    @Param({"10", "100", "1000"})
+    public int functions;
+
+    private String program;
+
+    @Setup
+    public void setUp() {
+        program = Programs.synthetic(functions);
+    }
+
+    @Benchmark
+    public int getNextSymbol() {
+        Lexer lexer = new Lexer(new StringReader(program));
+        int symbols = 0;
+
+        while (lexer.getNextSymbol().getToken() != Token.EOF) {
+            symbols++;
+        }
+
+        return symbols;
+    }
+}
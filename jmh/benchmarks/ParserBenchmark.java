@@ -0,0 +1,34 @@
+package benchmarks;
+
+import compiler.BufferedLexer;
+import compiler.Components.Blocks.Block;
+import compiler.Lexer;
+import compiler.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+// the tree of a program from its symbols, lexed once beforehand
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+    @Param({"10", "100", "1000"})
+    public int functions;
+
+    private BufferedLexer symbols;
+
+    @Setup
+    public void setUp() {
+        symbols = new BufferedLexer(new Lexer(new StringReader(Programs.synthetic(functions))));
+    }
+
+    @Benchmark
+    public Block getAST() {
+        return new Parser(symbols.replay()).getAST();
+    }
+}
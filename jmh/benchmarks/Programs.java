@@ -0,0 +1,34 @@
+package benchmarks;
+
+import compiler.ProgramGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// the inputs of the benchmarks, the same programs from one run to the next
+public class Programs {
+    private static final long SEED = 42;
+
+    private Programs() {}
+
+    public static String synthetic(int functions) {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setSeed(SEED);
+        generator.setFunctions(functions);
+
+        return generator.generate();
+    }
+
+    // one of jmh/resources/programs, by name
+    public static String source(String name) {
+        try (InputStream program = Programs.class.getResourceAsStream("/programs/" + name + ".lang")) {
+            if (program == null) throw new IllegalArgumentException("No program " + name);
+
+            return new String(program.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package benchmarks;
+
+import compiler.Regex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// one lexeme matched against patterns of the lexer
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegexBenchmark {
+    @Param({"keyword", "identifier", "float"})
+    public String pattern;
+
+    @Param({"while", "counter_42", "3.14159"})
+    public String lexeme;
+
+    private Regex regex;
+
+    @Setup
+    public void setUp() {
+        regex = new Regex(switch (pattern) {
+            case "keyword" -> "free|final|rec|fun|for|while|if|else|return|int|float|bool|array|of|string|do";
+            case "identifier" -> "[_a-zA-Z][_a-zA-Z0-9]*";
+            case "float" -> "([0-9]+\\.[0-9]*)|([0-9]*\\.[0-9]+)";
+            default -> throw new IllegalArgumentException("Unknown pattern " + pattern);
+        });
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return regex.matches(lexeme);
+    }
+}
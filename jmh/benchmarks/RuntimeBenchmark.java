@@ -0,0 +1,83 @@
+package benchmarks;
+
+import compiler.InMemoryCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// the programs of jmh/resources/programs compiled by this compiler, next to the same programs written in Java
+// ./gradlew runtimeBenchmark prints how far behind the compiled ones are
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuntimeBenchmark {
+    private static final String CLASS_NAME = "Program";
+    private static final String[] ARGUMENTS = new String[0];
+
+    @Param({"factorial", "sieve", "matrix", "particles", "strings"})
+    public String program;
+
+    private MethodHandle main;
+    private PrintStream out;
+
+    @Setup
+    public void setUp() throws Throwable {
+        Map<String, byte[]> classes = InMemoryCompiler.compile(Programs.source(program), CLASS_NAME, 1);
+
+        // the comparison means nothing unless both compute the same
+        String expected = capture(stream -> Baselines.run(program, stream));
+        String actual = capture(stream -> {
+            try {
+                main(classes, stream).invokeExact(ARGUMENTS);
+            } catch (Throwable e) {
+                throw new IllegalStateException("The compiled " + program + " failed", e);
+            }
+        });
+
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("The compiled " + program + " printed " + actual + " instead of " + expected);
+        }
+
+        out = new PrintStream(OutputStream.nullOutputStream());
+        main = main(classes, out);
+    }
+
+    @Benchmark
+    public void compiled() throws Throwable {
+        main.invokeExact(ARGUMENTS);
+    }
+
+    @Benchmark
+    public void java() {
+        Baselines.run(program, out);
+    }
+
+    private static MethodHandle main(Map<String, byte[]> classes, PrintStream out) throws ReflectiveOperationException {
+        Class<?> mainClass = InMemoryCompiler.load(classes, CLASS_NAME, InputStream.nullInputStream(), out);
+
+        return MethodHandles.publicLookup().findStatic(mainClass, "main", MethodType.methodType(void.class, String[].class));
+    }
+
+    private static String capture(Consumer<PrintStream> run) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (PrintStream stream = new PrintStream(output, true, StandardCharsets.UTF_8)) {
+            run.accept(stream);
+        }
+
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,45 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+// runs RuntimeBenchmark, then prints how many times slower each compiled program is than its Java baseline
+// the arguments are the ones of JMH, like -rf json
+public class RuntimeGap {
+    private RuntimeGap() {}
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(RuntimeBenchmark.class.getName())
+                .build()).run();
+
+        // the compiled and the java score of each program
+        Map<String, double[]> scores = new TreeMap<>();
+
+        for (RunResult result : results) {
+            String program = result.getParams().getParam("program");
+            boolean baseline = result.getParams().getBenchmark().endsWith(".java");
+
+            scores.computeIfAbsent(program, name -> new double[2])[baseline ? 1 : 0] = result.getPrimaryResult().getScore();
+        }
+
+        System.out.println();
+        System.out.printf("%-12s %14s %14s %8s%n", "program", "compiled ms/op", "java ms/op", "gap");
+
+        for (Map.Entry<String, double[]> entry : scores.entrySet()) {
+            double compiled = entry.getValue()[0];
+            double java = entry.getValue()[1];
+
+            System.out.printf("%-12s %14.3f %14.3f %7.2fx%n", entry.getKey(), compiled, java, java == 0 ? 0.0 : compiled / java);
+        }
+    }
+}
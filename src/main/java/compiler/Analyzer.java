@@ -6,29 +6,58 @@ import compiler.Components.Blocks.*;
 import compiler.Components.Semantic.*;
 import compiler.Exceptions.Semantic.*;
 
-import java.util.HashMap;
+import compiler.Components.WorkerPool;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.ArrayList;
+import java.util.concurrent.Future;
 
 public class Analyzer {
     private static Analyzer instance;
-    private static SymbolTableManager symbolTableManager;
+    private final SymbolTableManager symbolTableManager;
     // for checking the return type
     private FunctionType currentFunctionType;
+    private int parallelism = WorkerPool.defaultParallelism();
+    // bodies found correct by an earlier compilation, only their signatures are declared again
+    private Set<Method> checkedMethods = Set.of();
 
     private Analyzer() {
+        this(SymbolTableManager.getInstance());
         reset();
     }
 
+    private Analyzer(SymbolTableManager symbolTableManager) {
+        this.symbolTableManager = symbolTableManager;
+    }
+
     public static Analyzer getInstance() {
         if (instance == null) instance = new Analyzer();
         return instance;
     }
 
+    public static Analyzer newInstance() {
+        Analyzer analyzer = new Analyzer(SymbolTableManager.newInstance());
+        analyzer.reset();
+
+        return analyzer;
+    }
+
+    // an analyzer over the same symbol tables with its own current scope, used by the generator workers
+    public Analyzer fork() {
+        return new Analyzer(symbolTableManager.fork());
+    }
+
+    public SymbolTableManager getSymbolTableManager() {
+        return symbolTableManager;
+    }
+
     public void reset() {
-        symbolTableManager = SymbolTableManager.getInstance();
         symbolTableManager.reset();
 
         setupBuiltins();
@@ -48,8 +77,61 @@ public class Analyzer {
         symbolTableManager.getGlobalTable().insert("writeln", new FunctionType(ReturnType.VOID, List.of(PrimitiveType.STRING)));
     }
 
-    public void analyze(Block n) {
-        n.accept(this);
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public void setCheckedMethods(Set<Method> checkedMethods) {
+        this.checkedMethods = checkedMethods;
+    }
+
+    public void analyze(Block program) {
+        SymbolTable programScope = new SymbolTable(SymbolTableType.SCOPE, symbolTableManager.getCurrentScope());
+        symbolTableManager.getCurrentScope().add(program, programScope);
+        symbolTableManager.enterSymbolTable(program);
+
+        // first pass: the record names, then their fields and the function signatures, which may use the records defined after them,
+        // then constants, globals and the other statements
+        Map<Method, FunctionType> methods = new LinkedHashMap<>();
+        List<RecordDefinition> records = new ArrayList<>();
+
+        for (Statement stmt : program.getStatements()) {
+            if (stmt instanceof RecordDefinition record && declare(record)) {
+                records.add(record);
+            }
+        }
+
+        for (RecordDefinition record : records) {
+            check(record);
+        }
+
+        for (Statement stmt : program.getStatements()) {
+            if (stmt instanceof Method method) {
+                methods.put(method, declare(method));
+            }
+        }
+
+        for (Statement stmt : program.getStatements()) {
+            if (!(stmt instanceof RecordDefinition) && !(stmt instanceof Method)) {
+                stmt.accept(this);
+            }
+        }
+
+        // second pass: the bodies only read the global scope, so they are checked concurrently
+        try (WorkerPool pool = new WorkerPool(parallelism)) {
+            List<Future<Method>> tasks = new ArrayList<>();
+
+            for (Map.Entry<Method, FunctionType> method : methods.entrySet()) {
+                if (checkedMethods.contains(method.getKey())) continue;
+
+                Analyzer worker = fork();
+                tasks.add(pool.submit(() -> worker.checkBody(method.getKey(), method.getValue())));
+            }
+
+            WorkerPool.join(tasks);
+        }
+
+        symbolTableManager.leaveSymbolTable();
     }
 
     public void check(ASTNodeImpl node) {}
@@ -122,6 +204,8 @@ public class Analyzer {
             }
 
             lhsType = arr.getElementType();
+        } else if (target instanceof RecordFieldAccess access) {
+            lhsType = check(access);
         } else {
             throw new TypeError("Invalid assignment target", elem.getLineNumber());
         }
@@ -388,6 +472,10 @@ public class Analyzer {
 
 
     public void check(Method elem) {
+        checkBody(elem, declare(elem));
+    }
+
+    private FunctionType declare(Method elem) {
         List<VarType> paramTypes = new ArrayList<>();
         for (Param param : elem.getParameters()) {
             paramTypes.add(mapToVarType(param.getType()));
@@ -404,19 +492,26 @@ public class Analyzer {
         SymbolTable newSymbolTable = new SymbolTable(SymbolTableType.SCOPE, symbolTableManager.getCurrentScope());
 
         symbolTableManager.getCurrentScope().add(elem, newSymbolTable);
-        symbolTableManager.enterSymbolTable(elem);
-
-        currentFunctionType = functionType;
 
         for (int i = 0; i < elem.getParameters().size(); i++) {
             Param param = elem.getParameters().get(i);
-            symbolTableManager.getCurrentScope().insert(param.getName(), paramTypes.get(i));
+            newSymbolTable.insert(param.getName(), paramTypes.get(i));
         }
 
+        return functionType;
+    }
+
+    private Method checkBody(Method elem, FunctionType functionType) {
+        symbolTableManager.enterSymbolTable(elem);
+
+        currentFunctionType = functionType;
+
         elem.getBody().accept(this);
 
         currentFunctionType = null;
         symbolTableManager.leaveSymbolTable();
+
+        return elem;
     }
 
     public void check(FreeStatement elem) {
@@ -437,23 +532,54 @@ public class Analyzer {
 
     public void check(Type elem) {}
 
-    public void check(RecordDefinition elem) {
+    // the record without its fields, false when it was already known
+    private boolean declare(RecordDefinition elem) {
         if (symbolTableManager.getGlobalTable().contains(elem.getName())) {
             throw new RecordError("Record '" + elem.getName() + "' is already defined", elem.getLineNumber());
         }
 
         if (symbolTableManager.getGlobalTable().lookup(elem.getName()) instanceof RecordType) {
-            return;
+            return false;
         } else if (symbolTableManager.getGlobalTable().lookup(elem.getName()) != null) {
             throw new RecordError("Record " + elem.getName() + " already exists", elem.getLineNumber());
         }
 
-        Map<String, VarType> fields = new HashMap<>();
+        // in the order of the declaration, the one of the constructor arguments
+        symbolTableManager.getGlobalTable().insert(elem.getName(), new RecordType(elem.getName(), new LinkedHashMap<>()));
+
+        return true;
+    }
+
+    // the fields, once every record is declared
+    public void check(RecordDefinition elem) {
+        RecordType record = (RecordType) symbolTableManager.getGlobalTable().lookup(elem.getName());
+
         for (RecordField field : elem.getFields()) {
-            fields.put(field.getName(), mapToVarType(field.getType()));
+            record.getFields().put(field.getName(), mapToVarType(field.getType()));
+        }
+
+        // the equality and the hash of a record go through its fields, they would never end
+        for (VarType field : record.getFields().values()) {
+            if (contains(field, record, Collections.newSetFromMap(new IdentityHashMap<>()))) {
+                throw new RecordError("Record " + elem.getName() + " contains itself", elem.getLineNumber());
+            }
+        }
+    }
+
+    private static boolean contains(VarType type, RecordType record, Set<RecordType> seen) {
+        while (type instanceof ArrayType array) {
+            type = array.getElementType();
+        }
+
+        if (!(type instanceof RecordType inner)) return false;
+        if (inner == record) return true;
+        if (!seen.add(inner)) return false;
+
+        for (VarType field : inner.getFields().values()) {
+            if (contains(field, record, seen)) return true;
         }
 
-        symbolTableManager.getGlobalTable().insert(elem.getName(), new RecordType(elem.getName(), fields));
+        return false;
     }
 
     public void check(Param elem) {}
@@ -0,0 +1,184 @@
+package compiler;
+
+import compiler.Components.WorkerPool;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+// compiles many source files in one JVM: Compiler --batch [-j workers] [-d outputDirectory] [--cache-dir directory] <files or directories>
+public class BatchCompiler {
+    private static final String TARGET_NAME = "test.class";
+
+    public record Result(Path source, Path targetDirectory, double millis, String error) {
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    private record Job(Path source, Path targetDirectory) {}
+
+    private final int workers;
+    private final Path outputDirectory;
+    private final CompilerOptions options;
+
+    public BatchCompiler(int workers, Path outputDirectory) {
+        this(workers, outputDirectory, new CompilerOptions());
+    }
+
+    public BatchCompiler(int workers, Path outputDirectory, CompilerOptions options) {
+        this.workers = workers;
+        this.outputDirectory = outputDirectory;
+
+        // the batch already keeps every core busy, so each file is compiled on one thread
+        this.options = options.copy();
+        this.options.setParallelism(1);
+    }
+
+    public static int run(String[] args) throws IOException {
+        CompilerOptions options = CompilerOptions.parse(args);
+        List<String> arguments = options.getArguments();
+
+        Path outputDirectory = Paths.get("out");
+        List<Path> inputs = new ArrayList<>();
+
+        for (int i = 0; i < arguments.size(); i++) {
+            switch (arguments.get(i)) {
+                case "-d" -> outputDirectory = Paths.get(arguments.get(++i));
+                case String option when option.startsWith("-") -> {
+                    System.err.println("Unknown option " + option);
+                    return 1;
+                }
+                default -> inputs.add(Paths.get(arguments.get(i)));
+            }
+        }
+
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: Compiler --batch [-j workers] [-d outputDirectory] [--cache-dir directory] <files or directories>");
+            return 1;
+        }
+
+        long start = System.nanoTime();
+        List<Result> results;
+
+        try {
+            results = new BatchCompiler(options.getParallelism(), outputDirectory, options).compile(inputs);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+
+        double totalMillis = (System.nanoTime() - start) / 1e6;
+
+        printSummary(results, totalMillis);
+
+        if (options.getCache() != null) {
+            System.out.println(String.join(" ", options.getCache().stats()));
+        }
+
+        return results.stream().allMatch(Result::isSuccess) ? 0 : 2;
+    }
+
+    public List<Result> compile(List<Path> inputs) throws IOException {
+        List<Job> jobs = collectJobs(inputs);
+        Semaphore permits = new Semaphore(Math.max(1, workers));
+
+        // reading and writing happen on virtual threads, the permits bound the compilations running at once
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Result>> tasks = new ArrayList<>();
+
+            for (Job job : jobs) {
+                tasks.add(executor.submit(() -> compile(job, permits)));
+            }
+
+            return WorkerPool.join(tasks);
+        }
+    }
+
+    private Result compile(Job job, Semaphore permits) throws InterruptedException {
+        long start = System.nanoTime();
+        long waited = 0;
+
+        try {
+            String content = Compiler.readSource(job.source().toString());
+
+            long queued = System.nanoTime();
+            permits.acquire();
+            waited = System.nanoTime() - queued;
+
+            try {
+                Compiler.compile(content, job.targetDirectory().resolve(TARGET_NAME).toFile(), options);
+            } finally {
+                permits.release();
+            }
+
+            return new Result(job.source(), job.targetDirectory(), (System.nanoTime() - start - waited) / 1e6, null);
+        } catch (OutOfMemoryError e) {
+            throw e;
+        } catch (IOException | RuntimeException | Error e) {
+            // a stack overflow on a deeply nested program only fails its own file
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+
+            return new Result(job.source(), job.targetDirectory(), (System.nanoTime() - start - waited) / 1e6, message);
+        }
+    }
+
+    private List<Job> collectJobs(List<Path> inputs) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        Set<Path> targets = new HashSet<>();
+
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                List<Path> sources;
+
+                try (Stream<Path> files = Files.walk(input)) {
+                    sources = files.filter(file -> file.toString().endsWith(".lang")).sorted().toList();
+                }
+
+                for (Path source : sources) {
+                    addJob(jobs, targets, source, outputDirectory.resolve(stripExtension(input.relativize(source))));
+                }
+            } else {
+                addJob(jobs, targets, input, outputDirectory.resolve(stripExtension(input.getFileName())));
+            }
+        }
+
+        return jobs;
+    }
+
+    private void addJob(List<Job> jobs, Set<Path> targets, Path source, Path targetDirectory) {
+        if (!targets.add(targetDirectory.toAbsolutePath().normalize())) {
+            throw new IllegalArgumentException("Two sources compile to the same directory - " + targetDirectory);
+        }
+
+        jobs.add(new Job(source, targetDirectory));
+    }
+
+    static Path stripExtension(Path path) {
+        String name = path.toString();
+
+        return Paths.get(name.endsWith(".lang") ? name.substring(0, name.length() - ".lang".length()) : name);
+    }
+
+    private static void printSummary(List<Result> results, double totalMillis) {
+        int failed = 0;
+
+        for (Result result : results) {
+            if (result.isSuccess()) {
+                System.out.printf("OK   %10.1f ms  %s -> %s%n", result.millis(), result.source(), result.targetDirectory());
+            } else {
+                failed++;
+                System.out.printf("FAIL %10.1f ms  %s: %s%n", result.millis(), result.source(), result.error());
+            }
+        }
+
+        System.out.printf("Compiled %d of %d files in %.1f ms, %d failed%n", results.size() - failed, results.size(), totalMillis, failed);
+    }
+}
@@ -0,0 +1,62 @@
+package compiler;
+
+import compiler.Components.Symbol;
+import compiler.Components.Token;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// reads every symbol up front, so that lexing is done, and timed, apart from parsing
+// a lexical error is kept and thrown once the parser gets to it, as when reading on demand
+public class BufferedLexer extends Lexer {
+    private final List<Symbol> symbols;
+    private RuntimeException error;
+    private int position;
+
+    private BufferedLexer(BufferedLexer source) {
+        super(Reader.nullReader());
+        symbols = source.symbols;
+        error = source.error;
+    }
+
+    public BufferedLexer(Lexer source) {
+        super(Reader.nullReader());
+        symbols = new ArrayList<>();
+
+        try {
+            Symbol symbol;
+
+            do {
+                symbol = source.getNextSymbol();
+                symbols.add(symbol);
+            } while (symbol.getToken() != Token.EOF);
+        } catch (RuntimeException e) {
+            error = e;
+        }
+    }
+
+    @Override
+    public Symbol getNextSymbol() {
+        if (position < symbols.size()) {
+            Symbol symbol = symbols.get(position);
+
+            // the end of the file is read again and again
+            if (symbol.getToken() != Token.EOF) position++;
+
+            return symbol;
+        }
+
+        throw error;
+    }
+
+    // the same symbols from the start, for parsing them again
+    public BufferedLexer replay() {
+        return new BufferedLexer(this);
+    }
+
+    // without the end of the file
+    public int getTokenCount() {
+        return error == null ? symbols.size() - 1 : symbols.size();
+    }
+}
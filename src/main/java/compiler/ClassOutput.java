@@ -0,0 +1,101 @@
+package compiler;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+// where the generated classes go, written one by one as the generator produces them
+public interface ClassOutput extends AutoCloseable {
+    void write(String className, byte[] bytecode) throws IOException;
+
+    // completes the output, for a jar the archive only appears now
+    @Override
+    void close() throws IOException;
+
+    // drops what was written so far, after a failed compilation
+    default void discard() throws IOException {
+        close();
+    }
+
+    // a target ending with .jar is an executable archive, its name is the one of the main class
+    static ClassOutput forTarget(File targetFile) throws IOException {
+        Path target = targetFile.getAbsoluteFile().toPath();
+        Files.createDirectories(target.getParent());
+
+        if (targetFile.getName().endsWith(".jar")) {
+            return new JarOutput(target, targetFile.getName().split("\\.")[0]);
+        }
+
+        return new DirectoryOutput(target.getParent());
+    }
+
+    class DirectoryOutput implements ClassOutput {
+        private final Path directory;
+
+        public DirectoryOutput(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public void write(String className, byte[] bytecode) throws IOException {
+            Files.write(directory.resolve(className + ".class"), bytecode);
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    // all the classes go through one buffered stream over one channel, into a file next to the archive
+    // which is moved in place once complete
+    class JarOutput implements ClassOutput {
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final Path target;
+        private final Path temporary;
+        private final JarOutputStream jar;
+
+        public JarOutput(Path target, String mainClass) throws IOException {
+            this.target = target;
+            temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, mainClass);
+
+            FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            jar = new JarOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE), manifest);
+        }
+
+        @Override
+        public synchronized void write(String className, byte[] bytecode) throws IOException {
+            jar.putNextEntry(new JarEntry(className + ".class"));
+            jar.write(bytecode);
+            jar.closeEntry();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            jar.close();
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        @Override
+        public synchronized void discard() throws IOException {
+            try {
+                jar.close();
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+}
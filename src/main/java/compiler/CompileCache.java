@@ -0,0 +1,190 @@
+package compiler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// class files by the hash of the source, the compiler version and the options
+// each entry is a directory named after the hash, holding the main class and one class per record
+// its modification time is the last access, the least recently used entries are evicted first
+public class CompileCache {
+    public static final long DEFAULT_SIZE = 256L * 1024 * 1024;
+
+    private static final String CLASS_EXTENSION = ".class";
+    private static final String TEMPORARY_PREFIX = ".tmp-";
+
+    private final Path directory;
+    private final long maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CompileCache(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    public String key(String content, String className, String options) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            for (String part : List.of(Compiler.VERSION, options, className, content)) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalError("SHA-256 is not available", e);
+        }
+    }
+
+    // the cached classes, or null on a miss
+    public Map<String, byte[]> load(String key) {
+        Path entry = directory.resolve(key);
+
+        if (Files.isDirectory(entry)) {
+            try (Stream<Path> files = Files.list(entry)) {
+                Map<String, byte[]> classes = new LinkedHashMap<>();
+
+                for (Path file : files.sorted().toList()) {
+                    String name = file.getFileName().toString();
+                    classes.put(name.substring(0, name.length() - CLASS_EXTENSION.length()), Files.readAllBytes(file));
+                }
+
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                hits.incrementAndGet();
+
+                return classes;
+            } catch (IOException e) {
+                // evicted while reading, compiled again
+            }
+        }
+
+        misses.incrementAndGet();
+
+        return null;
+    }
+
+    // written next to the entry and moved in place, so readers only ever see complete entries
+    public void store(String key, Map<String, byte[]> classes) {
+        Path entry = directory.resolve(key);
+
+        try {
+            Files.createDirectories(directory);
+
+            Path temporary = Files.createTempDirectory(directory, TEMPORARY_PREFIX);
+
+            for (Map.Entry<String, byte[]> element : classes.entrySet()) {
+                Files.write(temporary.resolve(element.getKey() + CLASS_EXTENSION), element.getValue());
+            }
+
+            try {
+                Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+                stores.incrementAndGet();
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                // stored by another compilation in the meantime
+                delete(temporary);
+            }
+
+            evict();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store in the cache - " + entry, e);
+        }
+    }
+
+    private synchronized void evict() throws IOException {
+        record Entry(Path path, long size, long lastAccess) {}
+
+        List<Entry> entries = new ArrayList<>();
+        long total = 0;
+
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : paths.toList()) {
+                if (!Files.isDirectory(path) || path.getFileName().toString().startsWith(TEMPORARY_PREFIX)) continue;
+
+                try {
+                    long size = size(path);
+                    entries.add(new Entry(path, size, Files.getLastModifiedTime(path).toMillis()));
+                    total += size;
+                } catch (NoSuchFileException e) {
+                    // evicted by another process
+                }
+            }
+        }
+
+        entries.sort(Comparator.comparingLong(Entry::lastAccess));
+
+        for (Entry entry : entries) {
+            if (total <= maxSize) break;
+
+            // renamed first, so a reader never sees a half deleted entry
+            Path removed = directory.resolve(TEMPORARY_PREFIX + entry.path().getFileName());
+
+            try {
+                Files.move(entry.path(), removed, StandardCopyOption.ATOMIC_MOVE);
+                delete(removed);
+                evictions.incrementAndGet();
+            } catch (NoSuchFileException | FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                // evicted by another process
+            }
+
+            total -= entry.size();
+        }
+    }
+
+    private static long size(Path entry) throws IOException {
+        long size = 0;
+
+        try (Stream<Path> files = Files.list(entry)) {
+            for (Path file : files.toList()) {
+                size += Files.size(file);
+            }
+        }
+
+        return size;
+    }
+
+    private static void delete(Path entry) throws IOException {
+        try (Stream<Path> files = Files.list(entry)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        Files.deleteIfExists(entry);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public List<String> stats() {
+        long lookups = hits.get() + misses.get();
+
+        return List.of(
+                "cache.hits=" + hits.get(),
+                "cache.misses=" + misses.get(),
+                String.format("cache.hit.rate=%.2f", lookups == 0 ? 0.0 : (double) hits.get() / lookups),
+                "cache.stores=" + stores.get(),
+                "cache.evictions=" + evictions.get()
+        );
+    }
+}
@@ -0,0 +1,118 @@
+package compiler;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// thin client of the daemon: Compiler --client [--port port] (--status | --stop | <source> [-o target] [compile options])
+// the options changing how the program is compiled, -j, -O, --ir, --pass= and --cache-dir, are forwarded to the daemon
+// compiles in-process when no daemon is listening
+public class CompileClient {
+    private final int port;
+
+    public CompileClient(int port) {
+        this.port = port;
+    }
+
+    public static int run(String[] args) throws IOException {
+        CompilerOptions options = CompilerOptions.parse(args);
+        List<String> arguments = options.getArguments();
+
+        int port = CompileDaemon.DEFAULT_PORT;
+        String command = "compile";
+        String source = null;
+
+        for (int i = 0; i < arguments.size(); i++) {
+            switch (arguments.get(i)) {
+                case "--port" -> port = Integer.parseInt(arguments.get(++i));
+                case "--status" -> command = "status";
+                case "--stop" -> command = "stop";
+                case String option when option.startsWith("-") -> {
+                    System.err.println("Unknown option " + option);
+                    return 1;
+                }
+                default -> source = arguments.get(i);
+            }
+        }
+
+        CompileClient client = new CompileClient(port);
+
+        if (!command.equals("compile")) {
+            try {
+                List<String> response = client.send(command);
+                response.forEach(System.out::println);
+
+                return response.getFirst().startsWith("OK") ? 0 : 2;
+            } catch (ConnectException e) {
+                System.err.println("No daemon listening on port " + port);
+                return 1;
+            }
+        }
+
+        if (source == null) {
+            System.err.println("Usage: Compiler --client [--port port] (--status | --stop | <source> [-o target] [-j workers] [-O0|-O1|-O2] [--ir] [--pass=list] [--cache-dir directory])");
+            return 1;
+        }
+
+        long start = System.nanoTime();
+        String error = client.compile(new File(source), new File(options.getTarget()), options);
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        if (error != null) {
+            System.err.println(error);
+            return 2;
+        }
+
+        System.out.printf("Done!!! (%.1f ms)%n", millis);
+
+        return 0;
+    }
+
+    public String compile(File source, File target, int parallelism) throws IOException {
+        CompilerOptions options = new CompilerOptions();
+        options.setParallelism(parallelism);
+
+        return compile(source, target, options);
+    }
+
+    // returns the error message, or null when the compilation succeeded
+    public String compile(File source, File target, CompilerOptions options) throws IOException {
+        List<String> request = new ArrayList<>(List.of("compile", source.getAbsolutePath(), target.getAbsolutePath()));
+        request.addAll(options.toArguments());
+
+        try {
+            String response = send(String.join("\t", request)).getFirst();
+
+            return response.startsWith("OK") ? null : response.substring("ERROR ".length());
+        } catch (ConnectException e) {
+            try {
+                Compiler.compile(Compiler.readSource(source.getPath()), target, options);
+                return null;
+            } catch (RuntimeException runtimeException) {
+                return runtimeException.getMessage();
+            }
+        }
+    }
+
+    public List<String> send(String request) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            writer.println(request);
+
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+
+            if (lines.isEmpty()) throw new IOException("Empty response from the daemon");
+
+            return lines;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package compiler;
+
+import compiler.Components.WorkerPool;
+
+import java.io.*;
+import java.lang.management.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// keeps a warm JVM around: Compiler --daemon [--port port] [--warmup iterations] [--cache-dir directory]
+// one request per connection, a line of tab separated words:
+//   compile <source> <target> [-j workers] [-O0|-O1|-O2] [--ir] [--pass=list] [--cache-dir directory] | status | stop
+// answered with "OK <millis>" or "ERROR <message>", followed by the status lines if requested
+public class CompileDaemon {
+    public static final int DEFAULT_PORT = 7077;
+    // the targets whose functions are kept, the least recently compiled one is dropped past that
+    public static final int MAX_TARGETS = 64;
+
+    private static final String WARMUP_PROGRAM = """
+            Point rec { x int; y int; }
+
+            fun square(v int) int {
+                return v * v;
+            }
+
+            fun main() {
+                p Point = Point(1, 2);
+                i int;
+                total int = 0;
+                for (i, 0, 10, 1) {
+                    if (i % 2 == 0) { total = total + square(i); } else { total = total - p.x; }
+                }
+                writeInt(total);
+            }
+            """;
+
+    private final int port;
+    private final CompilerOptions options;
+    private final long startTime = System.currentTimeMillis();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong reusedFunctions = new AtomicLong();
+    private final AtomicLong rebuiltFunctions = new AtomicLong();
+    // the functions of each target are kept, so that an edit only rebuilds what it changed
+    private final Map<Path, IncrementalCompiler> compilers = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, IncrementalCompiler> eldest) {
+            return size() > MAX_TARGETS;
+        }
+    });
+    private volatile double lastMillis;
+    private volatile boolean running = true;
+
+    public CompileDaemon(int port) {
+        this(port, new CompilerOptions());
+    }
+
+    public CompileDaemon(int port, CompilerOptions options) {
+        this.port = port;
+        this.options = options.copy();
+    }
+
+    public static int run(String[] args) throws IOException {
+        CompilerOptions options = CompilerOptions.parse(args);
+        List<String> arguments = options.getArguments();
+
+        int port = DEFAULT_PORT;
+        int warmup = 20;
+
+        for (int i = 0; i < arguments.size(); i++) {
+            switch (arguments.get(i)) {
+                case "--port" -> port = Integer.parseInt(arguments.get(++i));
+                case "--warmup" -> warmup = Integer.parseInt(arguments.get(++i));
+                default -> {
+                    System.err.println("Usage: Compiler --daemon [--port port] [--warmup iterations] [--cache-dir directory]");
+                    return 1;
+                }
+            }
+        }
+
+        CompileDaemon daemon = new CompileDaemon(port, options);
+        daemon.warmUp(warmup);
+        daemon.serve();
+
+        return 0;
+    }
+
+    // runs the whole pipeline a few times, so that the first requests already hit compiled code
+    public void warmUp(int iterations) throws IOException {
+        Path directory = Files.createTempDirectory("compiler-warmup");
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            Compiler.compile(WARMUP_PROGRAM, directory.resolve("test.class").toFile(), 1);
+        }
+
+        System.out.printf("Warmed up with %d compilations in %.1f ms%n", iterations, (System.nanoTime() - start) / 1e6);
+    }
+
+    public void serve() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            System.out.println("Listening on " + serverSocket.getLocalSocketAddress());
+
+            while (running) {
+                Socket socket = serverSocket.accept();
+                executor.submit(() -> handle(socket, serverSocket));
+            }
+        } catch (IOException e) {
+            if (running) throw e;
+        }
+    }
+
+    private Void handle(Socket socket, ServerSocket serverSocket) throws IOException {
+        try (socket;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            String line = reader.readLine();
+            String[] request = line == null ? new String[] {""} : line.split("\t");
+
+            switch (request[0]) {
+                case "compile" -> writer.println(compile(request));
+                case "status" -> {
+                    writer.println("OK 0");
+                    status().forEach(writer::println);
+                }
+                case "stop" -> {
+                    writer.println("OK 0");
+                    running = false;
+                    serverSocket.close();
+                }
+                default -> writer.println("ERROR Unknown request - " + request[0]);
+            }
+        }
+
+        return null;
+    }
+
+    private String compile(String[] request) {
+        if (request.length < 3) return "ERROR Expected: compile <source> <target> [options]";
+
+        long start = System.nanoTime();
+        String response;
+        String details = "";
+
+        try {
+            CompilerOptions requestOptions = options.copy();
+            requestOptions.setParallelism(WorkerPool.defaultParallelism());
+            requestOptions.apply(Arrays.copyOfRange(request, 3, request.length));
+
+            if (!requestOptions.getArguments().isEmpty()) {
+                throw new IllegalArgumentException("Unknown option " + requestOptions.getArguments().getFirst());
+            }
+
+            File target = new File(request[2]);
+            IncrementalCompiler compiler = compilers.computeIfAbsent(target.getAbsoluteFile().toPath(), path -> new IncrementalCompiler());
+
+            if (compiler.compile(Compiler.readSource(request[1]), target, requestOptions)) {
+                details = " (cached)";
+            } else {
+                reusedFunctions.addAndGet(compiler.getReusedCount());
+                rebuiltFunctions.addAndGet(compiler.getRebuiltCount());
+                details = String.format(" (%d functions reused, %d rebuilt)", compiler.getReusedCount(), compiler.getRebuiltCount());
+            }
+
+            response = "OK";
+        } catch (IOException | RuntimeException | InternalError e) {
+            failures.incrementAndGet();
+            response = "ERROR " + e.getMessage();
+        } catch (Error e) {
+            // a stack overflow on a deeply nested program is answered like the other failures
+            failures.incrementAndGet();
+            response = "ERROR " + e.getClass().getSimpleName() + (e.getMessage() != null ? ": " + e.getMessage() : "");
+        }
+
+        long elapsed = System.nanoTime() - start;
+        requests.incrementAndGet();
+        totalNanos.addAndGet(elapsed);
+        lastMillis = elapsed / 1e6;
+
+        System.out.printf("%s %s -> %.1f ms%s%n", request[1], response.startsWith("OK") ? "ok" : "failed", lastMillis, details);
+
+        return response.startsWith("OK") ? String.format("OK %.1f", lastMillis) : response;
+    }
+
+    public List<String> status() {
+        List<String> lines = new ArrayList<>();
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+
+        long count = requests.get();
+
+        lines.add("uptime.ms=" + (System.currentTimeMillis() - startTime));
+        lines.add("requests=" + count);
+        lines.add("failures=" + failures.get());
+        lines.add(String.format("latency.last.ms=%.1f", lastMillis));
+        lines.add(String.format("latency.average.ms=%.1f", count == 0 ? 0.0 : totalNanos.get() / 1e6 / count));
+        lines.add("functions.reused=" + reusedFunctions.get());
+        lines.add("functions.rebuilt=" + rebuiltFunctions.get());
+        lines.add("targets=" + compilers.size());
+        lines.add("heap.used.bytes=" + heap.getUsed());
+        lines.add("heap.committed.bytes=" + heap.getCommitted());
+        lines.add("heap.max.bytes=" + heap.getMax());
+
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcMillis += Math.max(0, gc.getCollectionTime());
+        }
+
+        lines.add("gc.count=" + gcCount);
+        lines.add("gc.time.ms=" + gcMillis);
+
+        if (jit != null) {
+            lines.add("jit.name=" + jit.getName());
+            if (jit.isCompilationTimeMonitoringSupported()) {
+                lines.add("jit.time.ms=" + jit.getTotalCompilationTime());
+            }
+        }
+
+        lines.add("classes.loaded=" + ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+
+        if (options.getCache() != null) {
+            lines.addAll(options.getCache().stats());
+        }
+
+        return lines;
+    }
+}
@@ -1,48 +1,279 @@
 package compiler;
 
+import compiler.Components.Blocks.ASTCounter;
 import compiler.Components.Blocks.Block;
+import compiler.Components.Blocks.Method;
+import compiler.Components.IR.IRPrinter;
+import compiler.Components.IR.Program;
+import compiler.Components.Semantic.SymbolTable;
+import compiler.Events.AnalyzeEvent;
+import compiler.Events.GenerateEvent;
+import compiler.Events.LexEvent;
+import compiler.Events.ParseEvent;
+import compiler.Passes.PassManager;
+import compiler.PhaseProfile.Phase;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 public class Compiler {
+    // part of the cache key, so that a new compiler never reuses classes generated by an older one
+    public static final String VERSION = "1.1";
+
+    private static final String USAGE = "Usage: Compiler <source> [-o target] [-j workers] [-O0|-O1|-O2] [--ir] [--dump-ir] [--verify-ir] [--pass=list]"
+            + " [--cache-dir directory] [--cache-size megabytes] [--time-phases] [--stats=json] [--stats-file file]\n"
+            + "       Compiler (--batch | --daemon | --client | --watch | --generate) ...";
+
     public static void main(String[] args) throws IOException {
-        String sourceFilepath = args[0];
-        String targetFilepath = args.length > 2 ? args[2] : "test.class";
+        try {
+            run(args);
+        } catch (IllegalArgumentException e) {
+            // a missing or bad value of an option
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void run(String[] args) throws IOException {
+        if (args.length > 0) {
+            switch (args[0]) {
+                case "--batch" -> System.exit(BatchCompiler.run(Arrays.copyOfRange(args, 1, args.length)));
+                case "--daemon" -> System.exit(CompileDaemon.run(Arrays.copyOfRange(args, 1, args.length)));
+                case "--client" -> System.exit(CompileClient.run(Arrays.copyOfRange(args, 1, args.length)));
+                case "--watch" -> System.exit(WatchCompiler.run(Arrays.copyOfRange(args, 1, args.length)));
+                case "--generate" -> System.exit(ProgramGenerator.run(Arrays.copyOfRange(args, 1, args.length)));
+            }
+        }
+
+        CompilerOptions options = CompilerOptions.parse(args);
+        List<String> arguments = options.getArguments();
+
+        // a misspelled flag would be taken for the source otherwise
+        for (String argument : arguments) {
+            if (argument.startsWith("-")) {
+                System.err.println("Unknown option " + argument);
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+        }
+
+        if (arguments.size() != 1) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        String sourceFilepath = arguments.getFirst();
+
+        String content = readSource(sourceFilepath);
+
+        try {
+            PhaseProfile profile = new PhaseProfile();
+            boolean cached = compile(content, new File(options.getTarget()), options, profile);
+
+            System.out.println(cached ? "Done!!! (cached)" : "Done!!!");
+
+            if (options.isTimingPhases()) {
+                profile.breakdown().forEach(System.err::println);
 
+                if (options.isUsingIR()) {
+                    PassManager.report(profile).forEach(System.err::println);
+                }
+            }
+
+            if (options.getStatsFile() != null) {
+                Files.writeString(options.getStatsFile(), profile.toJson() + "\n");
+            } else if (options.isReportingStats()) {
+                System.err.println(profile.toJson());
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    public static String readSource(String sourceFilepath) throws IOException {
         // read the file
         FileInputStream inputStream = new FileInputStream(sourceFilepath);
         InputStreamReader streamReader = new InputStreamReader(inputStream);
-        BufferedReader bufferedReader = new BufferedReader(streamReader);
         StringBuilder content = new StringBuilder();
 
-        String line;
-        while ((line = bufferedReader.readLine()) != null) {
-            content.append(line).append("\n");
+        try (BufferedReader bufferedReader = new BufferedReader(streamReader)) {
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                content.append(line).append("\n");
+            }
         }
 
-        try {
-            Lexer lexer = new Lexer(new StringReader(content.toString()));
-            Parser parser = new Parser(lexer);
+        return content.toString();
+    }
 
-            Block ast = parser.getAST();
+    public static void compile(String content, File targetFile, int parallelism) {
+        CompilerOptions options = new CompilerOptions();
+        options.setParallelism(parallelism);
 
-            Analyzer analyzer = Analyzer.getInstance();
+        compile(content, targetFile, options);
+    }
+
+    public static boolean compile(String content, File targetFile, CompilerOptions options) {
+        return compile(content, targetFile, options, new PhaseProfile());
+    }
 
-            analyzer.analyze(ast);
+    // every compilation gets its own analyzer, so several of them can run at the same time
+    // returns true when the classes came from the cache
+    public static boolean compile(String content, File targetFile, CompilerOptions options, PhaseProfile profile) {
+        CompileCache cache = options.getCache();
+        String key = null;
 
-            File targetFile = new File(targetFilepath);
+        if (cache != null) {
+            key = cache.key(content, targetFile.getName().split("\\.")[0], options.fingerprint());
 
-            if (targetFile.getParentFile() != null) {
-                targetFile.getParentFile().mkdirs();
+            if (restore(cache, key, targetFile, profile)) return true;
+        }
+
+        Map<String, byte[]> classes = writeTo(targetFile, profile, output -> generate(content, targetFile.getName().split("\\.")[0], output, options, profile));
+
+        if (cache != null) {
+            cache.store(key, classes);
+        }
+
+        return false;
+    }
+
+    // the classes by name, also written to the output unless it is null
+    static Map<String, byte[]> generate(String content, String className, ClassOutput output, int parallelism) {
+        return generate(content, className, output, parallelism, new PhaseProfile());
+    }
+
+    static Map<String, byte[]> generate(String content, String className, ClassOutput output, int parallelism, PhaseProfile profile) {
+        CompilerOptions options = new CompilerOptions();
+        options.setParallelism(parallelism);
+
+        return generate(content, className, output, options, profile);
+    }
+
+    static Map<String, byte[]> generate(String content, String className, ClassOutput output, CompilerOptions options, PhaseProfile profile) {
+        int parallelism = options.getParallelism();
+
+        profile.setClassName(className);
+
+        PhaseProfile.Measurement lexing = profile.start(new LexEvent());
+        BufferedLexer lexer = new BufferedLexer(new Lexer(new StringReader(content)));
+        profile.end(Phase.LEX, lexing, lexer.getTokenCount());
+
+        PhaseProfile.Measurement parsing = profile.start(new ParseEvent());
+        Block ast = new Parser(lexer).getAST();
+        profile.end(Phase.PARSE, parsing, ASTCounter.count(ast));
+
+        PhaseProfile.Measurement analyzing = profile.start(new AnalyzeEvent());
+
+        Analyzer analyzer = Analyzer.newInstance();
+        analyzer.setParallelism(parallelism);
+
+        analyzer.analyze(ast);
+
+        profile.end(Phase.ANALYZE, analyzing, ast.getStatements().stream().filter(statement -> statement instanceof Method).count());
+
+        SymbolTable globalTable = analyzer.getSymbolTableManager().getGlobalTable();
+        profile.count("symbols", globalTable.countSymbols());
+        profile.count("scopes", globalTable.countScopes());
+
+        GenerateEvent generateEvent = new GenerateEvent();
+        PhaseProfile.Measurement generating = profile.start(generateEvent);
+
+        Generator generator = new Generator(className, output, analyzer);
+        generator.setParallelism(parallelism);
+
+        if (options.isUsingIR()) {
+            PassManager passManager = new PassManager(options);
+            IRBuilder builder = new IRBuilder(analyzer);
+            builder.setParallelism(parallelism);
+
+            Program program = builder.build(ast);
+
+            passManager.run(program, profile);
+
+            if (options.isDumpingIR()) {
+                System.out.print(IRPrinter.print(program));
             }
 
-            Generator generator = new Generator(targetFile);
-            generator.generate(ast);
+            generator.setProgram(program);
+        }
 
-            System.out.println("Done!!!");
-        } catch (RuntimeException e) {
-            System.err.println(e.getMessage());
-            System.exit(2);
+        generator.generate(ast);
+
+        generateEvent.methods = generator.getMethods().size();
+        profile.end(Phase.GENERATE, generating, generator.getClasses().values().stream().mapToLong(bytecode -> bytecode.length).sum());
+        profile.setClasses(generator.getClasses());
+
+        return generator.getClasses();
+    }
+
+    // the output of the target is completed when the generation succeeds, and dropped otherwise
+    static <T> T writeTo(File targetFile, Function<ClassOutput, T> generation) {
+        return writeTo(targetFile, new PhaseProfile(), generation);
+    }
+
+    static <T> T writeTo(File targetFile, PhaseProfile profile, Function<ClassOutput, T> generation) {
+        ClassOutput output;
+
+        try {
+            output = profile.track(ClassOutput.forTarget(targetFile));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the output - " + targetFile, e);
+        }
+
+        T result;
+
+        try {
+            result = generation.apply(output);
+        } catch (RuntimeException | Error e) {
+            try {
+                output.discard();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+
+        try {
+            output.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save class files - " + targetFile, e);
         }
+
+        return result;
+    }
+
+    // writes the cached classes to the target, false on a miss
+    static boolean restore(CompileCache cache, String key, File targetFile) {
+        return restore(cache, key, targetFile, new PhaseProfile());
+    }
+
+    static boolean restore(CompileCache cache, String key, File targetFile, PhaseProfile profile) {
+        Map<String, byte[]> classes = cache.load(key);
+
+        if (classes == null) return false;
+
+        profile.setClassName(targetFile.getName().split("\\.")[0]);
+        profile.setCached(true);
+        profile.setClasses(classes);
+
+        writeTo(targetFile, profile, output -> {
+            try {
+                for (Map.Entry<String, byte[]> element : classes.entrySet()) {
+                    output.write(element.getKey(), element.getValue());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to save class files - " + targetFile, e);
+            }
+
+            return classes;
+        });
+
+        return true;
     }
 }
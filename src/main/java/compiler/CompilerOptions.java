@@ -0,0 +1,230 @@
+package compiler;
+
+import compiler.Components.WorkerPool;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CompilerOptions {
+    private String target = "test.class";
+    private int parallelism = WorkerPool.defaultParallelism();
+    private Path cacheDirectory;
+    private long cacheSize = CompileCache.DEFAULT_SIZE;
+    private CompileCache cache;
+    private boolean timingPhases;
+    private boolean reportingStats;
+    private Path statsFile;
+    private boolean usingIR;
+    private boolean dumpingIR;
+    private boolean verifyingIR;
+    private int optimizationLevel;
+    private final Map<String, Boolean> passes = new LinkedHashMap<>();
+    private final List<String> arguments = new ArrayList<>();
+
+    // shared flags, everything else is kept as a positional argument, the flags of a command included
+    // a missing or bad value throws an IllegalArgumentException
+    public static CompilerOptions parse(String[] args) {
+        return new CompilerOptions().apply(args);
+    }
+
+    // the flags given on top of these options
+    public CompilerOptions apply(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-o" -> target = value(args, ++i);
+                case "-j" -> parallelism = (int) number(args, ++i, Integer.MAX_VALUE);
+                case "--cache-dir" -> {
+                    cacheDirectory = Paths.get(value(args, ++i));
+                    cache = null;
+                }
+                case "--cache-size" -> {
+                    cacheSize = number(args, ++i, Long.MAX_VALUE / 1024 / 1024) * 1024 * 1024;
+                    cache = null;
+                }
+                case "--time-phases" -> timingPhases = true;
+                case "--stats=json" -> reportingStats = true;
+                case "--stats-file" -> {
+                    reportingStats = true;
+                    statsFile = Paths.get(value(args, ++i));
+                }
+                case "--ir" -> usingIR = true;
+                case "--dump-ir" -> {
+                    usingIR = true;
+                    dumpingIR = true;
+                }
+                case "--verify-ir" -> verifyingIR = true;
+                case "-O0" -> optimizationLevel = 0;
+                case "-O1" -> optimizationLevel = 1;
+                case "-O2" -> optimizationLevel = 2;
+                case String arg when arg.startsWith("--pass=") -> setPasses(arg.substring("--pass=".length()));
+                default -> arguments.add(args[i]);
+            }
+        }
+
+        return this;
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+
+        return args[i];
+    }
+
+    // a positive number up to the maximum
+    private static long number(String[] args, int i, long max) {
+        String value = value(args, i);
+
+        try {
+            long number = Long.parseLong(value);
+
+            if (number > 0 && number <= max) return number;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+
+        throw new IllegalArgumentException("Invalid value for " + args[i - 1] + " - " + value);
+    }
+
+    // the flags changing how a program is compiled, as given to apply, the cache directory made absolute
+    public List<String> toArguments() {
+        List<String> args = new ArrayList<>(List.of("-j", String.valueOf(parallelism)));
+
+        if (usingIR) args.add("--ir");
+        if (verifyingIR) args.add("--verify-ir");
+        if (optimizationLevel > 0) args.add("-O" + optimizationLevel);
+
+        passes.forEach((name, enabled) -> args.add("--pass=" + (enabled ? "+" : "-") + name));
+
+        if (cacheDirectory != null) {
+            args.addAll(List.of("--cache-dir", cacheDirectory.toAbsolutePath().toString(), "--cache-size", String.valueOf(cacheSize / 1024 / 1024)));
+        }
+
+        return args;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    // prints the time spent in each phase
+    public boolean isTimingPhases() {
+        return timingPhases;
+    }
+
+    // prints the statistics of the compilation as json
+    public boolean isReportingStats() {
+        return reportingStats;
+    }
+
+    // where the json statistics go instead of the error output, null when not set
+    public Path getStatsFile() {
+        return statsFile;
+    }
+
+    // the functions are lowered to the IR and generated from it, which the passes need
+    public boolean isUsingIR() {
+        return usingIR || optimizationLevel > 0 || passes.containsValue(true);
+    }
+
+    public void setUsingIR(boolean usingIR) {
+        this.usingIR = usingIR;
+    }
+
+    // prints the IR of the program
+    public boolean isDumpingIR() {
+        return dumpingIR;
+    }
+
+    // checks the IR after every pass
+    public boolean isVerifyingIR() {
+        return verifyingIR;
+    }
+
+    public void setVerifyingIR(boolean verifyingIR) {
+        this.verifyingIR = verifyingIR;
+    }
+
+    // 0 generates from the tree, 1 and 2 run more and more passes over the IR
+    public int getOptimizationLevel() {
+        return optimizationLevel;
+    }
+
+    public void setOptimizationLevel(int optimizationLevel) {
+        this.optimizationLevel = optimizationLevel;
+    }
+
+    // the passes turned on or off whatever the level, by name
+    public Map<String, Boolean> getPasses() {
+        return passes;
+    }
+
+    // a comma separated list, -name turns a pass off and name or +name on
+    public void setPasses(String list) {
+        for (String name : list.split(",")) {
+            if (name.isBlank()) continue;
+
+            if (name.startsWith("-")) {
+                passes.put(name.substring(1), false);
+            } else {
+                passes.put(name.startsWith("+") ? name.substring(1) : name, true);
+            }
+        }
+    }
+
+    // created once, so that the statistics cover every compilation using these options
+    public synchronized CompileCache getCache() {
+        if (cache == null && cacheDirectory != null) {
+            cache = new CompileCache(cacheDirectory, cacheSize);
+        }
+
+        return cache;
+    }
+
+    // the options changing the generated classes, part of the cache key
+    public String fingerprint() {
+        if (!isUsingIR()) return "";
+
+        StringBuilder fingerprint = new StringBuilder("ir");
+
+        if (optimizationLevel > 0) fingerprint.append(" -O").append(optimizationLevel);
+
+        passes.forEach((name, enabled) -> fingerprint.append(' ').append(enabled ? '+' : '-').append(name));
+
+        return fingerprint.toString();
+    }
+
+    public CompilerOptions copy() {
+        CompilerOptions copy = new CompilerOptions();
+        copy.target = target;
+        copy.parallelism = parallelism;
+        copy.cacheDirectory = cacheDirectory;
+        copy.cacheSize = cacheSize;
+        copy.cache = getCache();
+        copy.timingPhases = timingPhases;
+        copy.reportingStats = reportingStats;
+        copy.statsFile = statsFile;
+        copy.usingIR = usingIR;
+        copy.dumpingIR = dumpingIR;
+        copy.verifyingIR = verifyingIR;
+        copy.optimizationLevel = optimizationLevel;
+        copy.passes.putAll(passes);
+
+        return copy;
+    }
+}
@@ -0,0 +1,42 @@
+package compiler.Components.Blocks;
+
+import java.util.List;
+
+// the number of nodes of a tree, types not included
+public class ASTCounter {
+    private ASTCounter() {}
+
+    public static long count(ASTNode node) {
+        return switch (node) {
+            case null -> 0;
+            case Block block -> 1 + countAll(block.getStatements());
+            case Method method -> 1 + method.getParameters().size() + count(method.getBody());
+            case RecordDefinition record -> 1 + record.getFields().size();
+            case VariableDeclaration declaration -> 1 + count(declaration.getValue());
+            case Assignment assign -> 1 + count(assign.getTarget()) + count(assign.getValue());
+            case FunctionCall call -> 1 + countAll(call.getArguments());
+            case ReturnStatement ret -> 1 + count(ret.getReturnValue());
+            case ForLoop loop -> 1 + count(loop.getStart()) + count(loop.getMaxValue()) + count(loop.getStep()) + count(loop.getBody());
+            case WhileLoop loop -> 1 + count(loop.getCondition()) + count(loop.getBody());
+            case DoWhileLoop loop -> 1 + count(loop.getCondition()) + count(loop.getBody());
+            case IfStatement ifs -> 1 + count(ifs.getCondition()) + count(ifs.getThenBlock()) + count(ifs.getElseBlock());
+            case BinaryExpression bin -> 1 + count(bin.getLeft()) + count(bin.getRight());
+            case UnaryExpression unary -> 1 + count(unary.getOperand());
+            case CallExpression call -> 1 + countAll(call.getArguments());
+            case ArrayAccess access -> 1 + count(access.getArrayExpr()) + count(access.getIndex());
+            case RecordFieldAccess access -> 1 + count(access.getRecord());
+            case ArrayCreation creation -> 1 + count(creation.getSize());
+            default -> 1;
+        };
+    }
+
+    private static long countAll(List<? extends ASTNode> nodes) {
+        long count = 0;
+
+        for (ASTNode node : nodes) {
+            count += count(node);
+        }
+
+        return count;
+    }
+}
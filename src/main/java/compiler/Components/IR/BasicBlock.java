@@ -0,0 +1,140 @@
+package compiler.Components.IR;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// straight-line code, the phis first and a terminator last
+public class BasicBlock {
+    private final Function function;
+    private final int id;
+    private final List<Instruction> instructions = new ArrayList<>();
+    private final List<BasicBlock> predecessors = new ArrayList<>();
+
+    BasicBlock(Function function, int id) {
+        this.function = function;
+        this.id = id;
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public List<Instruction> getInstructions() {
+        return Collections.unmodifiableList(instructions);
+    }
+
+    public List<Instruction> getPhis() {
+        int count = 0;
+
+        while (count < instructions.size() && instructions.get(count).isPhi()) {
+            count++;
+        }
+
+        return Collections.unmodifiableList(instructions.subList(0, count));
+    }
+
+    // null while the block is being built
+    public Instruction getTerminator() {
+        if (instructions.isEmpty()) return null;
+
+        Instruction last = instructions.getLast();
+
+        return last.getOpcode().isTerminator() ? last : null;
+    }
+
+    public List<BasicBlock> getSuccessors() {
+        Instruction terminator = getTerminator();
+
+        return terminator == null ? List.of() : terminator.getTargets();
+    }
+
+    public List<BasicBlock> getPredecessors() {
+        return Collections.unmodifiableList(predecessors);
+    }
+
+    // a terminator also makes this block a predecessor of its targets
+    public Instruction append(Instruction instruction) {
+        insert(instructions.size(), instruction);
+
+        for (BasicBlock target : instruction.getTargets()) {
+            target.predecessors.add(this);
+        }
+
+        return instruction;
+    }
+
+    public Instruction insertPhi(Instruction phi) {
+        return insert(getPhis().size(), phi);
+    }
+
+    // before the terminator
+    public Instruction insertBeforeTerminator(Instruction instruction) {
+        return insert(getTerminator() == null ? instructions.size() : instructions.size() - 1, instruction);
+    }
+
+    public Instruction insertBefore(Instruction position, Instruction instruction) {
+        return insert(instructions.indexOf(position), instruction);
+    }
+
+    private Instruction insert(int index, Instruction instruction) {
+        instructions.add(index, instruction);
+        instruction.setBlock(this);
+        instruction.setId(function.nextValueId());
+
+        return instruction;
+    }
+
+    void removeInstruction(Instruction instruction) {
+        instructions.remove(instruction);
+        instruction.setBlock(null);
+    }
+
+    // moved as it is to another block, its id and uses kept
+    public void moveTo(Instruction instruction, BasicBlock block) {
+        removeInstruction(instruction);
+        block.instructions.add(block.getTerminator() == null ? block.instructions.size() : block.instructions.size() - 1, instruction);
+        instruction.setBlock(block);
+    }
+
+    public void addPredecessor(BasicBlock predecessor) {
+        predecessors.add(predecessor);
+    }
+
+    // the phis lose the operand of that predecessor
+    public void removePredecessor(BasicBlock predecessor) {
+        int index = predecessors.indexOf(predecessor);
+
+        predecessors.remove(index);
+
+        for (Instruction phi : getPhis()) {
+            phi.removeOperand(index);
+        }
+    }
+
+    // in the same position, so the phis keep their operands
+    public void replacePredecessor(BasicBlock from, BasicBlock to) {
+        predecessors.set(predecessors.indexOf(from), to);
+    }
+
+    // the branch ending the block becomes a jump to one of its targets, the other one loses this predecessor
+    public void foldBranch(BasicBlock taken) {
+        Instruction branch = getTerminator();
+
+        for (BasicBlock target : branch.getTargets()) {
+            if (target != taken) target.removePredecessor(this);
+        }
+
+        branch.remove();
+        insert(instructions.size(), Instruction.jump(taken));
+    }
+
+    @Override
+    public String toString() {
+        return "b" + id;
+    }
+}
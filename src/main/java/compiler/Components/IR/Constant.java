@@ -0,0 +1,85 @@
+package compiler.Components.IR;
+
+import compiler.Components.Semantic.PrimitiveType;
+import compiler.Components.Semantic.TypeName;
+import compiler.Components.Semantic.VarType;
+
+import java.util.Objects;
+
+// an int, float, bool or string known at compile time, or the null of an array or record
+public class Constant extends Value {
+    private final Object value;
+
+    private Constant(VarType type, Object value) {
+        super(type);
+        this.value = value;
+    }
+
+    public static Constant of(int value) {
+        return new Constant(PrimitiveType.INT, value);
+    }
+
+    public static Constant of(float value) {
+        return new Constant(PrimitiveType.FLOAT, value);
+    }
+
+    public static Constant of(boolean value) {
+        return new Constant(PrimitiveType.BOOL, value);
+    }
+
+    public static Constant of(String value) {
+        return new Constant(PrimitiveType.STRING, value);
+    }
+
+    // the value of a variable declared without one
+    public static Constant defaultOf(VarType type) {
+        return switch (type.getName()) {
+            case INTEGER -> of(0);
+            case FLOAT -> of(0.0f);
+            case BOOLEAN -> of(false);
+            case STRING -> of("");
+            default -> new Constant(type, null);
+        };
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public int intValue() {
+        return (Integer) value;
+    }
+
+    public float floatValue() {
+        return (Float) value;
+    }
+
+    public boolean boolValue() {
+        return (Boolean) value;
+    }
+
+    public String stringValue() {
+        return (String) value;
+    }
+
+    public boolean isNull() {
+        return value == null;
+    }
+
+    // the same constant, whichever instance it is
+    public boolean sameAs(Constant other) {
+        return getType().getName() == other.getType().getName() && Objects.equals(value, other.value)
+                && (value != null || getType().equals(other.getType()));
+    }
+
+    @Override
+    public String toString() {
+        if (value == null) return "null";
+
+        if (getType().getName() == TypeName.STRING) {
+            return '"' + ((String) value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + '"';
+        }
+
+        return value.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package compiler.Components.IR;
+
+import java.util.*;
+
+// the dominator tree of the reachable blocks of a function, by the iterative algorithm of Cooper, Harvey and Kennedy
+// computed once, it no longer holds after the blocks or their edges change
+public class Dominators {
+    private final List<BasicBlock> order;
+    private final Map<BasicBlock, Integer> positions = new HashMap<>();
+    private final Map<BasicBlock, BasicBlock> immediateDominators = new HashMap<>();
+    private final Map<BasicBlock, List<BasicBlock>> children = new HashMap<>();
+
+    public Dominators(Function function) {
+        order = function.reversePostOrder();
+
+        for (int i = 0; i < order.size(); i++) {
+            positions.put(order.get(i), i);
+        }
+
+        BasicBlock entry = function.getEntry();
+        immediateDominators.put(entry, entry);
+
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            for (BasicBlock block : order.subList(1, order.size())) {
+                BasicBlock dominator = null;
+
+                for (BasicBlock predecessor : block.getPredecessors()) {
+                    if (!immediateDominators.containsKey(predecessor)) continue;
+
+                    dominator = dominator == null ? predecessor : intersect(predecessor, dominator);
+                }
+
+                if (dominator != immediateDominators.get(block)) {
+                    immediateDominators.put(block, dominator);
+                    changed = true;
+                }
+            }
+        }
+
+        for (BasicBlock block : order) {
+            children.put(block, new ArrayList<>());
+        }
+
+        for (BasicBlock block : order.subList(1, order.size())) {
+            children.get(immediateDominators.get(block)).add(block);
+        }
+    }
+
+    private BasicBlock intersect(BasicBlock first, BasicBlock second) {
+        while (first != second) {
+            while (positions.get(first) > positions.get(second)) {
+                first = immediateDominators.get(first);
+            }
+            while (positions.get(second) > positions.get(first)) {
+                second = immediateDominators.get(second);
+            }
+        }
+
+        return first;
+    }
+
+    // null for the entry
+    public BasicBlock getImmediateDominator(BasicBlock block) {
+        BasicBlock dominator = immediateDominators.get(block);
+
+        return dominator == block ? null : dominator;
+    }
+
+    public List<BasicBlock> getChildren(BasicBlock block) {
+        return children.getOrDefault(block, List.of());
+    }
+
+    public boolean isReachable(BasicBlock block) {
+        return positions.containsKey(block);
+    }
+
+    public boolean dominates(BasicBlock dominator, BasicBlock block) {
+        if (!isReachable(block)) return false;
+
+        while (block != dominator) {
+            BasicBlock next = immediateDominators.get(block);
+
+            if (next == block) return false;
+
+            block = next;
+        }
+
+        return true;
+    }
+
+    // reverse post order, every block after its dominators
+    public List<BasicBlock> getOrder() {
+        return order;
+    }
+}
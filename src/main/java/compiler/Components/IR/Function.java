@@ -0,0 +1,160 @@
+package compiler.Components.IR;
+
+import compiler.Components.Semantic.VarType;
+
+import java.util.*;
+
+// the control flow graph of one function, its first block being the entry
+public class Function {
+    private final String name;
+    private final VarType returnType;
+    private final List<Parameter> parameters;
+    private final List<BasicBlock> blocks = new ArrayList<>();
+    private int nextBlockId;
+    private int nextValueId;
+
+    public Function(String name, VarType returnType, List<Parameter> parameters) {
+        this.name = name;
+        this.returnType = returnType;
+        this.parameters = List.copyOf(parameters);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public VarType getReturnType() {
+        return returnType;
+    }
+
+    public List<Parameter> getParameters() {
+        return parameters;
+    }
+
+    public List<BasicBlock> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    public BasicBlock getEntry() {
+        return blocks.getFirst();
+    }
+
+    public BasicBlock newBlock() {
+        BasicBlock block = new BasicBlock(this, nextBlockId++);
+        blocks.add(block);
+
+        return block;
+    }
+
+    // laid out right after the given block
+    public BasicBlock newBlockAfter(BasicBlock position) {
+        BasicBlock block = new BasicBlock(this, nextBlockId++);
+        blocks.add(blocks.indexOf(position) + 1, block);
+
+        return block;
+    }
+
+    // the new entry when it is put before the current one
+    public BasicBlock newBlockBefore(BasicBlock position) {
+        BasicBlock block = new BasicBlock(this, nextBlockId++);
+        blocks.add(blocks.indexOf(position), block);
+
+        return block;
+    }
+
+    // once nothing jumps to it
+    public void removeBlock(BasicBlock block) {
+        for (Instruction instruction : new ArrayList<>(block.getInstructions())) {
+            instruction.remove();
+        }
+
+        blocks.remove(block);
+    }
+
+    int nextValueId() {
+        return nextValueId++;
+    }
+
+    public int countInstructions() {
+        int count = 0;
+
+        for (BasicBlock block : blocks) {
+            count += block.getInstructions().size();
+        }
+
+        return count;
+    }
+
+    // the blocks the entry can't reach, dropped with their edges
+    public boolean removeUnreachableBlocks() {
+        Set<BasicBlock> reachable = new HashSet<>();
+        Deque<BasicBlock> pending = new ArrayDeque<>(List.of(getEntry()));
+
+        while (!pending.isEmpty()) {
+            BasicBlock block = pending.pop();
+
+            if (reachable.add(block)) {
+                pending.addAll(block.getSuccessors());
+            }
+        }
+
+        if (reachable.size() == blocks.size()) return false;
+
+        List<BasicBlock> unreachable = blocks.stream().filter(block -> !reachable.contains(block)).toList();
+
+        for (BasicBlock block : unreachable) {
+            for (BasicBlock successor : new LinkedHashSet<>(block.getSuccessors())) {
+                while (successor.getPredecessors().contains(block)) {
+                    successor.removePredecessor(block);
+                }
+            }
+        }
+
+        // their values may only be used in other unreachable blocks
+        for (BasicBlock block : unreachable) {
+            for (Instruction instruction : new ArrayList<>(block.getInstructions())) {
+                instruction.replaceAllUsesWith(Constant.defaultOf(instruction.getType()));
+                instruction.remove();
+            }
+        }
+
+        blocks.removeAll(unreachable);
+
+        return true;
+    }
+
+    // the order of the blocks in the class file, each one after one of its predecessors where possible
+    public List<BasicBlock> reversePostOrder() {
+        List<BasicBlock> order = new ArrayList<>();
+        Set<BasicBlock> visited = new HashSet<>();
+        Deque<Iterator<BasicBlock>> stack = new ArrayDeque<>();
+        Deque<BasicBlock> path = new ArrayDeque<>();
+
+        visited.add(getEntry());
+        stack.push(getEntry().getSuccessors().iterator());
+        path.push(getEntry());
+
+        while (!stack.isEmpty()) {
+            if (stack.peek().hasNext()) {
+                BasicBlock next = stack.peek().next();
+
+                if (visited.add(next)) {
+                    stack.push(next.getSuccessors().iterator());
+                    path.push(next);
+                }
+            } else {
+                stack.pop();
+                order.add(path.pop());
+            }
+        }
+
+        Collections.reverse(order);
+
+        return order;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
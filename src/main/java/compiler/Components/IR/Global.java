@@ -0,0 +1,6 @@
+package compiler.Components.IR;
+
+import compiler.Components.Semantic.VarType;
+
+// a variable or constant of the program, a static field of the class
+public record Global(String name, VarType type, boolean isFinal) {}
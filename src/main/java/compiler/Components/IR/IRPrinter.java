@@ -0,0 +1,98 @@
+package compiler.Components.IR;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+// the text of a program, one instruction per line
+//     %3 = add int %1, 2
+//     %5 = phi int [%3, b1], [%4, b2]
+//     br %6, b3, b4
+public class IRPrinter {
+    private IRPrinter() {}
+
+    public static String print(Program program) {
+        StringBuilder text = new StringBuilder();
+
+        for (Global global : program.getGlobals()) {
+            text.append(global.isFinal() ? "final " : "global ").append(global.name()).append(' ').append(Types.name(global.type())).append('\n');
+        }
+
+        if (!program.getGlobals().isEmpty()) text.append('\n');
+
+        for (Function function : program.getAllFunctions()) {
+            text.append(print(function)).append('\n');
+        }
+
+        return text.toString();
+    }
+
+    public static String print(Function function) {
+        StringBuilder text = new StringBuilder("fun ").append(function.getName()).append('(');
+
+        text.append(function.getParameters().stream()
+                .map(parameter -> parameter + " " + Types.name(parameter.getType()))
+                .collect(Collectors.joining(", ")));
+
+        text.append(") ").append(Types.name(function.getReturnType())).append(" {\n");
+
+        for (BasicBlock block : function.getBlocks()) {
+            text.append(block).append(':');
+
+            if (!block.getPredecessors().isEmpty()) {
+                text.append(" ; from ").append(join(block.getPredecessors()));
+            }
+
+            text.append('\n');
+
+            for (Instruction instruction : block.getInstructions()) {
+                text.append("    ").append(print(instruction)).append('\n');
+            }
+        }
+
+        return text.append("}\n").toString();
+    }
+
+    public static String print(Instruction instruction) {
+        StringBuilder text = new StringBuilder();
+
+        if (!instruction.isVoid()) {
+            text.append(instruction).append(" = ");
+        }
+
+        text.append(instruction.getOpcode());
+
+        if (!instruction.isVoid()) {
+            text.append(' ').append(Types.name(instruction.getType()));
+        }
+
+        List<?> operands = instruction.getOperands();
+
+        switch (instruction.getOpcode()) {
+            case PHI -> {
+                List<BasicBlock> predecessors = instruction.getBlock().getPredecessors();
+
+                for (int i = 0; i < operands.size(); i++) {
+                    text.append(i == 0 ? " " : ", ").append('[').append(operands.get(i)).append(", ")
+                            .append(i < predecessors.size() ? predecessors.get(i) : "?").append(']');
+                }
+            }
+            case CALL, NEW_RECORD -> text.append(' ').append(instruction.getName()).append('(').append(join(operands)).append(')');
+            case GET_FIELD, PUT_FIELD, GET_GLOBAL, PUT_GLOBAL, READ, WRITE -> {
+                text.append(' ').append(instruction.getName());
+                if (!operands.isEmpty()) text.append(", ").append(join(operands));
+            }
+            default -> {
+                if (!operands.isEmpty()) text.append(' ').append(join(operands));
+                if (!instruction.getTargets().isEmpty()) {
+                    text.append(operands.isEmpty() ? " " : ", ").append(join(instruction.getTargets()));
+                }
+            }
+        }
+
+        return text.toString();
+    }
+
+    private static String join(List<?> elements) {
+        return elements.stream().map(String::valueOf).collect(Collectors.joining(", "));
+    }
+}
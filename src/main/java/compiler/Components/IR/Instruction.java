@@ -0,0 +1,138 @@
+package compiler.Components.IR;
+
+import compiler.Components.Semantic.ReturnType;
+import compiler.Components.Semantic.TypeName;
+import compiler.Components.Semantic.VarType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// one operation of a block, its result is the value of the instruction, void when it has none
+public final class Instruction extends Value {
+    private final Opcode opcode;
+    private final List<Value> operands = new ArrayList<>();
+    private final String name; // the function, field, global, or input and output function
+    private final List<BasicBlock> targets = new ArrayList<>(); // of a jump or a branch
+    private BasicBlock block;
+    private int id = -1;
+
+    public Instruction(Opcode opcode, VarType type, List<? extends Value> operands) {
+        this(opcode, type, null, operands);
+    }
+
+    public Instruction(Opcode opcode, VarType type, String name, List<? extends Value> operands) {
+        super(type);
+        this.opcode = opcode;
+        this.name = name;
+
+        for (Value operand : operands) {
+            addOperand(operand);
+        }
+    }
+
+    public static Instruction jump(BasicBlock target) {
+        Instruction jump = new Instruction(Opcode.JUMP, ReturnType.VOID, List.of());
+        jump.targets.add(target);
+
+        return jump;
+    }
+
+    public static Instruction branch(Value condition, BasicBlock whenTrue, BasicBlock whenFalse) {
+        Instruction branch = new Instruction(Opcode.BRANCH, ReturnType.VOID, List.of(condition));
+        branch.targets.add(whenTrue);
+        branch.targets.add(whenFalse);
+
+        return branch;
+    }
+
+    public static Instruction ret(Value value) {
+        return new Instruction(Opcode.RETURN, ReturnType.VOID, value == null ? List.of() : List.of(value));
+    }
+
+    public Opcode getOpcode() {
+        return opcode;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Value> getOperands() {
+        return Collections.unmodifiableList(operands);
+    }
+
+    public Value getOperand(int index) {
+        return operands.get(index);
+    }
+
+    public void setOperand(int index, Value value) {
+        operands.get(index).removeUser(this);
+        operands.set(index, value);
+        value.addUser(this);
+    }
+
+    public void addOperand(Value value) {
+        operands.add(value);
+        value.addUser(this);
+    }
+
+    public void removeOperand(int index) {
+        operands.remove(index).removeUser(this);
+    }
+
+    public void replaceOperand(Value from, Value to) {
+        for (int i = 0; i < operands.size(); i++) {
+            if (operands.get(i) == from) setOperand(i, to);
+        }
+    }
+
+    public List<BasicBlock> getTargets() {
+        return Collections.unmodifiableList(targets);
+    }
+
+    // the predecessors of the blocks are the caller's to update
+    public void setTarget(int index, BasicBlock target) {
+        targets.set(index, target);
+    }
+
+    public BasicBlock getBlock() {
+        return block;
+    }
+
+    void setBlock(BasicBlock block) {
+        this.block = block;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
+    public boolean isPhi() {
+        return opcode == Opcode.PHI;
+    }
+
+    public boolean isVoid() {
+        return getType().getName() == TypeName.VOID;
+    }
+
+    // out of its block, its operands no longer used by it
+    public void remove() {
+        if (block != null) block.removeInstruction(this);
+
+        for (Value operand : operands) {
+            operand.removeUser(this);
+        }
+
+        operands.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "%" + id;
+    }
+}
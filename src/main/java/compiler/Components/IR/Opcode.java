@@ -0,0 +1,71 @@
+package compiler.Components.IR;
+
+public enum Opcode {
+    // int or float arithmetic, the operands have the type of the result
+    ADD("add"),
+    SUB("sub"),
+    MUL("mul"),
+    DIV("div"),
+    REM("rem"),
+    NEG("neg"),
+
+    // int shifts and masks, only made by the passes, the language having none
+    SHL("shl"),
+    SHR("shr"),
+    AND("and"),
+
+    // comparisons to a bool, equality on any type and order on ints and floats
+    EQ("eq"),
+    NE("ne"),
+    LT("lt"),
+    LE("le"),
+    GT("gt"),
+    GE("ge"),
+
+    // the built-in functions
+    NOT("not"),
+    CONCAT("concat"),
+    LENGTH("length"),
+    CHR("chr"),
+    FLOOR("floor"),
+
+    NEW_ARRAY("newarray"),
+    ARRAY_LOAD("aload"),
+    ARRAY_STORE("astore"),
+    NEW_RECORD("newrecord"),
+    GET_FIELD("getfield"),
+    PUT_FIELD("putfield"),
+    GET_GLOBAL("getglobal"),
+    PUT_GLOBAL("putglobal"),
+
+    CALL("call"),
+    READ("read"),
+    WRITE("write"),
+
+    // one operand by predecessor of its block, in the same order
+    PHI("phi"),
+
+    // the last instruction of every block
+    JUMP("jump"),
+    BRANCH("br"),
+    RETURN("ret");
+
+    private final String mnemonic;
+
+    Opcode(String mnemonic) {
+        this.mnemonic = mnemonic;
+    }
+
+    public boolean isTerminator() {
+        return this == JUMP || this == BRANCH || this == RETURN;
+    }
+
+    public boolean isComparison() {
+        return ordinal() >= EQ.ordinal() && ordinal() <= GE.ordinal();
+    }
+
+    @Override
+    public String toString() {
+        return mnemonic;
+    }
+}
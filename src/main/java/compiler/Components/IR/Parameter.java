@@ -0,0 +1,27 @@
+package compiler.Components.IR;
+
+import compiler.Components.Semantic.VarType;
+
+public class Parameter extends Value {
+    private final String name;
+    private final int index;
+
+    public Parameter(String name, int index, VarType type) {
+        super(type);
+        this.name = name;
+        this.index = index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return "%" + name;
+    }
+}
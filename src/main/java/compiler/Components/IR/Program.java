@@ -0,0 +1,54 @@
+package compiler.Components.IR;
+
+import java.util.*;
+
+// the functions of a program, with its globals set by the entry function before it calls main
+public class Program {
+    public static final String ENTRY = "<entry>";
+
+    private final Map<String, Global> globals = new LinkedHashMap<>();
+    private final Map<String, Function> functions = new LinkedHashMap<>();
+    private Function entry;
+
+    public void addGlobal(Global global) {
+        globals.put(global.name(), global);
+    }
+
+    public Global getGlobal(String name) {
+        return globals.get(name);
+    }
+
+    public Collection<Global> getGlobals() {
+        return Collections.unmodifiableCollection(globals.values());
+    }
+
+    public void addFunction(Function function) {
+        functions.put(function.getName(), function);
+    }
+
+    // a function of the program, null for the built-in ones
+    public Function getFunction(String name) {
+        return functions.get(name);
+    }
+
+    // in source order
+    public Collection<Function> getFunctions() {
+        return Collections.unmodifiableCollection(functions.values());
+    }
+
+    public Function getEntry() {
+        return entry;
+    }
+
+    public void setEntry(Function entry) {
+        this.entry = entry;
+    }
+
+    // the entry last
+    public List<Function> getAllFunctions() {
+        List<Function> all = new ArrayList<>(functions.values());
+        all.add(entry);
+
+        return all;
+    }
+}
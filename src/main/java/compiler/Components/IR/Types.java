@@ -0,0 +1,50 @@
+package compiler.Components.IR;
+
+import compiler.Components.Semantic.ArrayType;
+import compiler.Components.Semantic.RecordType;
+import compiler.Components.Semantic.VarType;
+
+public class Types {
+    private Types() {}
+
+    // as in the source
+    public static String name(VarType type) {
+        return switch (type.getName()) {
+            case INTEGER -> "int";
+            case FLOAT -> "float";
+            case BOOLEAN -> "bool";
+            case STRING -> "string";
+            case VOID -> "void";
+            case ARRAY -> name(((ArrayType) type).getElementType()) + "[]";
+            case RECORD -> ((RecordType) type).getRecordName();
+            case FUNCTION -> "function";
+        };
+    }
+
+    public static String descriptor(VarType type) {
+        return switch (type.getName()) {
+            case INTEGER -> "I";
+            case FLOAT -> "F";
+            case BOOLEAN -> "Z";
+            case STRING -> "Ljava/lang/String;";
+            case VOID -> "V";
+            case ARRAY -> "[" + descriptor(((ArrayType) type).getElementType());
+            case RECORD -> "L" + ((RecordType) type).getRecordName() + ";";
+            case FUNCTION -> throw new IllegalArgumentException("A function has no descriptor of its own");
+        };
+    }
+
+    public static boolean isNumeric(VarType type) {
+        return switch (type.getName()) {
+            case INTEGER, FLOAT -> true;
+            default -> false;
+        };
+    }
+
+    public static boolean isReference(VarType type) {
+        return switch (type.getName()) {
+            case STRING, ARRAY, RECORD -> true;
+            default -> false;
+        };
+    }
+}
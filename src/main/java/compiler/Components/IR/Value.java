@@ -0,0 +1,40 @@
+package compiler.Components.IR;
+
+import compiler.Components.Semantic.VarType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// what an instruction computes, a constant or a parameter, each one used by the instructions listed as its users
+public abstract class Value {
+    private final VarType type;
+    private final List<Instruction> users = new ArrayList<>(); // once per use
+
+    protected Value(VarType type) {
+        this.type = type;
+    }
+
+    public VarType getType() {
+        return type;
+    }
+
+    public List<Instruction> getUsers() {
+        return users;
+    }
+
+    void addUser(Instruction user) {
+        users.add(user);
+    }
+
+    void removeUser(Instruction user) {
+        users.remove(user);
+    }
+
+    public void replaceAllUsesWith(Value value) {
+        if (value == this) return;
+
+        for (Instruction user : new ArrayList<>(users)) {
+            user.replaceOperand(this, value);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package compiler.Components.IR;
+
+import compiler.Components.Semantic.*;
+import compiler.Exceptions.IRException;
+
+import java.util.*;
+
+// checks that a program is well formed, run after it is built and after every pass that changes it
+// the blocks end with their terminator, their predecessors match the targets of the others,
+// every value is defined before its uses on every path, and every instruction has operands of the right types
+public class Verifier {
+    private final Program program;
+    private Function function;
+
+    private Verifier(Program program) {
+        this.program = program;
+    }
+
+    public static void verify(Program program) {
+        for (Function function : program.getAllFunctions()) {
+            verify(program, function);
+        }
+    }
+
+    public static void verify(Program program, Function function) {
+        Verifier verifier = new Verifier(program);
+        verifier.function = function;
+        verifier.verifyFunction();
+    }
+
+    private void verifyFunction() {
+        if (function.getBlocks().isEmpty()) fail("has no blocks");
+        if (!function.getEntry().getPredecessors().isEmpty()) fail("jumps back to its entry block");
+
+        Dominators dominators = new Dominators(function);
+        Map<BasicBlock, List<BasicBlock>> incoming = new HashMap<>();
+
+        for (BasicBlock block : function.getBlocks()) {
+            if (block.getFunction() != function) fail(block + " belongs to another function");
+            if (!dominators.isReachable(block)) fail(block + " is unreachable");
+
+            verifyShape(block);
+
+            for (BasicBlock target : block.getSuccessors()) {
+                if (!function.getBlocks().contains(target)) fail(block + " jumps to " + target + " of another function");
+
+                incoming.computeIfAbsent(target, key -> new ArrayList<>()).add(block);
+            }
+        }
+
+        for (BasicBlock block : function.getBlocks()) {
+            List<BasicBlock> expected = new ArrayList<>(incoming.getOrDefault(block, List.of()));
+            List<BasicBlock> actual = new ArrayList<>(block.getPredecessors());
+            Comparator<BasicBlock> byId = Comparator.comparingInt(BasicBlock::getId);
+
+            expected.sort(byId);
+            actual.sort(byId);
+
+            if (!expected.equals(actual)) fail(block + " has the predecessors " + block.getPredecessors() + " instead of " + expected);
+        }
+
+        for (BasicBlock block : function.getBlocks()) {
+            List<Instruction> instructions = block.getInstructions();
+
+            for (int i = 0; i < instructions.size(); i++) {
+                Instruction instruction = instructions.get(i);
+
+                verifyUses(instruction);
+                verifyOperands(instruction, i, dominators);
+                verifyTypes(instruction);
+            }
+        }
+    }
+
+    private void verifyShape(BasicBlock block) {
+        List<Instruction> instructions = block.getInstructions();
+
+        if (block.getTerminator() == null) fail(block + " doesn't end with a terminator");
+
+        boolean phis = true;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+
+            if (instruction.getBlock() != block) fail(instruction + " is listed in " + block + " but belongs to " + instruction.getBlock());
+            if (instruction.getOpcode().isTerminator() && i != instructions.size() - 1) fail(block + " has a terminator before its end");
+
+            if (instruction.isPhi()) {
+                if (!phis) fail(instruction + " follows an instruction that is not a phi in " + block);
+                if (instruction.getOperands().size() != block.getPredecessors().size()) {
+                    fail(instruction + " has " + instruction.getOperands().size() + " operands for " + block.getPredecessors().size() + " predecessors");
+                }
+            } else {
+                phis = false;
+            }
+        }
+    }
+
+    private void verifyUses(Instruction instruction) {
+        for (Value operand : new HashSet<>(instruction.getOperands())) {
+            long uses = instruction.getOperands().stream().filter(value -> value == operand).count();
+            long listed = operand.getUsers().stream().filter(user -> user == instruction).count();
+
+            if (uses != listed) fail(instruction + " uses " + operand + " " + uses + " times but is listed " + listed + " times as its user");
+        }
+
+        for (Instruction user : instruction.getUsers()) {
+            if (user.getBlock() == null) fail(instruction + " is used by the removed " + user);
+            if (!user.getOperands().contains(instruction)) fail(instruction + " lists " + user + " as a user that doesn't use it");
+        }
+    }
+
+    private void verifyOperands(Instruction instruction, int position, Dominators dominators) {
+        List<Value> operands = instruction.getOperands();
+
+        for (int i = 0; i < operands.size(); i++) {
+            Value operand = operands.get(i);
+
+            if (operand instanceof Parameter parameter && !function.getParameters().contains(parameter)) {
+                fail(instruction + " uses the parameter " + parameter + " of another function");
+            }
+
+            if (!(operand instanceof Instruction definition)) continue;
+
+            if (definition.getBlock() == null || definition.getBlock().getFunction() != function) {
+                fail(instruction + " uses " + definition + ", which is not in the function");
+            }
+            if (definition.isVoid()) fail(instruction + " uses " + definition + ", which has no value");
+
+            BasicBlock definitionBlock = definition.getBlock();
+
+            if (instruction.isPhi()) {
+                BasicBlock predecessor = instruction.getBlock().getPredecessors().get(i);
+
+                if (!dominators.dominates(definitionBlock, predecessor)) {
+                    fail(instruction + " takes " + definition + " from " + predecessor + ", which it doesn't dominate");
+                }
+            } else if (definitionBlock == instruction.getBlock()) {
+                if (definitionBlock.getInstructions().indexOf(definition) >= position) {
+                    fail(instruction + " uses " + definition + " before its definition");
+                }
+            } else if (!dominators.dominates(definitionBlock, instruction.getBlock())) {
+                fail(instruction + " uses " + definition + ", which doesn't dominate it");
+            }
+        }
+    }
+
+    private void verifyTypes(Instruction instruction) {
+        VarType type = instruction.getType();
+        List<Value> operands = instruction.getOperands();
+
+        switch (instruction.getOpcode()) {
+            case ADD, SUB, MUL, DIV, REM -> {
+                expect(instruction, Types.isNumeric(type), "an int or a float result");
+                expectOperands(instruction, type, type);
+            }
+            case SHL, SHR, AND -> {
+                expect(instruction, type.equals(PrimitiveType.INT), "an int result");
+                expectOperands(instruction, PrimitiveType.INT, PrimitiveType.INT);
+            }
+            case NEG -> {
+                expect(instruction, Types.isNumeric(type), "an int or a float result");
+                expectOperands(instruction, type);
+            }
+            case EQ, NE -> {
+                expect(instruction, type.equals(PrimitiveType.BOOL), "a bool result");
+                expectCount(instruction, 2);
+                expectOperands(instruction, operands.get(0).getType(), operands.get(0).getType());
+            }
+            case LT, LE, GT, GE -> {
+                expect(instruction, type.equals(PrimitiveType.BOOL), "a bool result");
+                expectCount(instruction, 2);
+                expect(instruction, Types.isNumeric(operands.get(0).getType()), "int or float operands");
+                expectOperands(instruction, operands.get(0).getType(), operands.get(0).getType());
+            }
+            case NOT -> {
+                expect(instruction, type.equals(PrimitiveType.BOOL), "a bool result");
+                expectOperands(instruction, PrimitiveType.BOOL);
+            }
+            case CONCAT -> {
+                expect(instruction, type.equals(PrimitiveType.STRING), "a string result");
+                expectOperands(instruction, PrimitiveType.STRING, PrimitiveType.STRING);
+            }
+            case LENGTH -> {
+                expect(instruction, type.equals(PrimitiveType.INT), "an int result");
+                expectCount(instruction, 1);
+                VarType operand = operands.getFirst().getType();
+                expect(instruction, operand.equals(PrimitiveType.STRING) || operand instanceof ArrayType, "a string or an array");
+            }
+            case CHR -> {
+                expect(instruction, type.equals(PrimitiveType.STRING), "a string result");
+                expectOperands(instruction, PrimitiveType.INT);
+            }
+            case FLOOR -> {
+                expect(instruction, type.equals(PrimitiveType.INT), "an int result");
+                expectOperands(instruction, PrimitiveType.FLOAT);
+            }
+            case NEW_ARRAY -> {
+                expect(instruction, type instanceof ArrayType, "an array result");
+                expectOperands(instruction, PrimitiveType.INT);
+            }
+            case ARRAY_LOAD -> {
+                expectCount(instruction, 2);
+                expect(instruction, operands.getFirst().getType() instanceof ArrayType, "an array");
+                expectOperands(instruction, operands.getFirst().getType(), PrimitiveType.INT);
+                expect(instruction, type.equals(((ArrayType) operands.getFirst().getType()).getElementType()), "the type of the elements");
+            }
+            case ARRAY_STORE -> {
+                expectCount(instruction, 3);
+                expect(instruction, operands.getFirst().getType() instanceof ArrayType, "an array");
+                expectOperands(instruction, operands.getFirst().getType(), PrimitiveType.INT, ((ArrayType) operands.getFirst().getType()).getElementType());
+                expectVoid(instruction);
+            }
+            case NEW_RECORD -> {
+                expect(instruction, type instanceof RecordType, "a record result");
+                RecordType record = (RecordType) type;
+                expect(instruction, record.getRecordName().equals(instruction.getName()), "the record it creates");
+                expectOperands(instruction, record.getFields().values().toArray(VarType[]::new));
+            }
+            case GET_FIELD -> {
+                expectCount(instruction, 1);
+                VarType field = field(instruction, operands.getFirst());
+                expect(instruction, type.equals(field), "the type of the field");
+            }
+            case PUT_FIELD -> {
+                expectCount(instruction, 2);
+                VarType field = field(instruction, operands.getFirst());
+                expectOperands(instruction, operands.getFirst().getType(), field);
+                expectVoid(instruction);
+            }
+            case GET_GLOBAL -> {
+                expectCount(instruction, 0);
+                expect(instruction, type.equals(global(instruction).type()), "the type of the global");
+            }
+            case PUT_GLOBAL -> {
+                expectOperands(instruction, global(instruction).type());
+                expectVoid(instruction);
+            }
+            case CALL -> {
+                Function callee = program.getFunction(instruction.getName());
+
+                if (callee != null) {
+                    expect(instruction, type.equals(callee.getReturnType()), "the return type of " + callee);
+                    expectOperands(instruction, callee.getParameters().stream().map(Value::getType).toArray(VarType[]::new));
+                }
+            }
+            case READ -> {
+                expectCount(instruction, 0);
+                VarType expected = switch (instruction.getName()) {
+                    case "readInt" -> PrimitiveType.INT;
+                    case "readFloat" -> PrimitiveType.FLOAT;
+                    case "readString" -> PrimitiveType.STRING;
+                    default -> null;
+                };
+                expect(instruction, type.equals(expected), "the type read by " + instruction.getName());
+            }
+            case WRITE -> {
+                expectCount(instruction, 1);
+                expect(instruction, instruction.getName().equals("write") || instruction.getName().equals("writeln"), "write or writeln");
+                expectVoid(instruction);
+            }
+            case PHI -> {
+                for (Value operand : operands) {
+                    expect(instruction, operand.getType().equals(type) || isNullOf(operand, type), "operands of its own type");
+                }
+            }
+            case JUMP -> {
+                expectCount(instruction, 0);
+                expect(instruction, instruction.getTargets().size() == 1, "one target");
+            }
+            case BRANCH -> {
+                expectOperands(instruction, PrimitiveType.BOOL);
+                expect(instruction, instruction.getTargets().size() == 2, "two targets");
+                expect(instruction, instruction.getTargets().get(0) != instruction.getTargets().get(1), "two different targets");
+            }
+            case RETURN -> {
+                if (function.getReturnType().getName() == TypeName.VOID) {
+                    expectCount(instruction, 0);
+                } else {
+                    expectOperands(instruction, function.getReturnType());
+                }
+            }
+        }
+    }
+
+    private VarType field(Instruction instruction, Value record) {
+        if (!(record.getType() instanceof RecordType recordType) || !recordType.hasField(instruction.getName())) {
+            fail(instruction + " accesses the field " + instruction.getName() + " of a " + Types.name(record.getType()));
+            return null;
+        }
+
+        return recordType.getFieldValue(instruction.getName());
+    }
+
+    private Global global(Instruction instruction) {
+        Global global = program.getGlobal(instruction.getName());
+
+        if (global == null) fail(instruction + " accesses the unknown global " + instruction.getName());
+
+        return global;
+    }
+
+    private void expectCount(Instruction instruction, int count) {
+        expect(instruction, instruction.getOperands().size() == count, count + " operands");
+    }
+
+    private void expectOperands(Instruction instruction, VarType... types) {
+        expectCount(instruction, types.length);
+
+        for (int i = 0; i < types.length; i++) {
+            Value operand = instruction.getOperand(i);
+
+            if (!operand.getType().equals(types[i]) && !isNullOf(operand, types[i])) {
+                fail(IRPrinter.print(instruction) + " has a " + Types.name(operand.getType()) + " operand instead of a " + Types.name(types[i]));
+            }
+        }
+    }
+
+    private void expectVoid(Instruction instruction) {
+        expect(instruction, instruction.isVoid(), "no result");
+    }
+
+    // the null of an array or record fits any of them
+    private static boolean isNullOf(Value value, VarType type) {
+        return value instanceof Constant constant && constant.isNull() && Types.isReference(type);
+    }
+
+    private void expect(Instruction instruction, boolean condition, String expected) {
+        if (!condition) fail(IRPrinter.print(instruction) + " should have " + expected);
+    }
+
+    private void fail(String message) {
+        throw new IRException("Invalid IR in " + function.getName() + ": " + message);
+    }
+}
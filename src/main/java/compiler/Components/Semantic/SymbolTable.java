@@ -47,6 +47,28 @@ public class SymbolTable {
         return varType;
     }
 
+    // this scope and the ones nested in it
+    public long countScopes() {
+        long count = 1;
+
+        for (SymbolTable descendant : descendants.values()) {
+            count += descendant.countScopes();
+        }
+
+        return count;
+    }
+
+    // the names declared in this scope and the ones nested in it
+    public long countSymbols() {
+        long count = identifiers.size();
+
+        for (SymbolTable descendant : descendants.values()) {
+            count += descendant.countSymbols();
+        }
+
+        return count;
+    }
+
     public SymbolTable getParent() {
         return parent;
     }
@@ -15,6 +15,11 @@ public class SymbolTableManager {
         reset();
     }
 
+    private SymbolTableManager(SymbolTable globalTable, SymbolTable currentScope) {
+        this.globalTable = globalTable;
+        this.currentScope = currentScope;
+    }
+
     public void reset() {
         globalTable = new SymbolTable(SymbolTableType.GLOBAL, null);
         currentScope = globalTable;
@@ -25,6 +30,16 @@ public class SymbolTableManager {
         return instance;
     }
 
+    // independent tables, for compilations running next to each other
+    public static SymbolTableManager newInstance() {
+        return new SymbolTableManager();
+    }
+
+    // shares the tables but keeps its own current scope, so workers can walk different parts of the tree
+    public SymbolTableManager fork() {
+        return new SymbolTableManager(globalTable, currentScope);
+    }
+
     public void enterSymbolTable(Statement st) {
         currentScope = currentScope.getSymbolTable(st);
     }
@@ -0,0 +1,84 @@
+package compiler.Components;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+// the CPU time and the bytes allocated by a piece of work, on its own thread and on the workers it hands tasks to
+// started and stopped on the same thread, the worker pools created in between report to it
+public class ThreadUsage {
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final ThreadLocal<ThreadUsage> CURRENT = new ThreadLocal<>();
+
+    private final ThreadUsage previous;
+    private final long cpuStart;
+    private final long allocatedStart;
+    private final LongAdder workerCpuNanos = new LongAdder();
+    private final LongAdder workerAllocatedBytes = new LongAdder();
+
+    private long cpuNanos;
+    private long allocatedBytes;
+
+    private ThreadUsage(ThreadUsage previous) {
+        this.previous = previous;
+        cpuStart = cpuNanos();
+        allocatedStart = allocatedBytes();
+    }
+
+    public static ThreadUsage start() {
+        ThreadUsage usage = new ThreadUsage(CURRENT.get());
+        CURRENT.set(usage);
+
+        return usage;
+    }
+
+    // the usage the tasks started from this thread are added to, null when nothing is measured
+    public static ThreadUsage current() {
+        return CURRENT.get();
+    }
+
+    public void stop() {
+        cpuNanos = cpuNanos() - cpuStart + workerCpuNanos.sum();
+        allocatedBytes = allocatedBytes() - allocatedStart + workerAllocatedBytes.sum();
+
+        // the enclosing usage saw this thread but not the workers
+        if (previous != null) {
+            previous.workerCpuNanos.add(workerCpuNanos.sum());
+            previous.workerAllocatedBytes.add(workerAllocatedBytes.sum());
+        }
+
+        CURRENT.set(previous);
+    }
+
+    // the task measured on the thread running it
+    public <T> Callable<T> track(Callable<T> task) {
+        return () -> {
+            long cpu = cpuNanos();
+            long allocated = allocatedBytes();
+
+            try {
+                return task.call();
+            } finally {
+                workerCpuNanos.add(cpuNanos() - cpu);
+                workerAllocatedBytes.add(allocatedBytes() - allocated);
+            }
+        };
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    // 0 where the virtual machine doesn't measure it
+    private static long cpuNanos() {
+        return Math.max(0, THREADS.getCurrentThreadCpuTime());
+    }
+
+    private static long allocatedBytes() {
+        return Math.max(0, THREADS.getCurrentThreadAllocatedBytes());
+    }
+}
@@ -0,0 +1,61 @@
+package compiler.Components;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class WorkerPool implements AutoCloseable {
+    private final ExecutorService executor; // null when running sequentially
+    private final ThreadUsage usage = ThreadUsage.current(); // where the tasks are measured, null when nothing is
+
+    public WorkerPool(int parallelism) {
+        if (parallelism > 1) {
+            executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "compiler-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            executor = null;
+        }
+    }
+
+    public static int defaultParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        if (executor != null) return executor.submit(usage == null ? task : usage.track(task));
+
+        FutureTask<T> future = new FutureTask<>(task);
+        future.run();
+
+        return future;
+    }
+
+    // waits for the results in submission order, the first failure is rethrown as is
+    public static <T> List<T> join(List<Future<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a worker", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+                if (e.getCause() instanceof Error error) throw error;
+
+                throw new IllegalStateException("Worker failed", e.getCause());
+            }
+        }
+
+        return results;
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) executor.shutdownNow();
+    }
+}
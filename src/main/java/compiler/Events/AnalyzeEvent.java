@@ -0,0 +1,16 @@
+package compiler.Events;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("compiler.Analyze")
+@Label("Analyze")
+public class AnalyzeEvent extends PhaseEvent {
+    @Label("Functions")
+    public long functions;
+
+    @Override
+    public void setCount(long count) {
+        functions = count;
+    }
+}
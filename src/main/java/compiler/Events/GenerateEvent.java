@@ -0,0 +1,21 @@
+package compiler.Events;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("compiler.Generate")
+@Label("Generate")
+public class GenerateEvent extends PhaseEvent {
+    @Label("Methods")
+    public long methods;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Override
+    public void setCount(long count) {
+        bytes = count;
+    }
+}
@@ -0,0 +1,16 @@
+package compiler.Events;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("compiler.Lex")
+@Label("Lex")
+public class LexEvent extends PhaseEvent {
+    @Label("Tokens")
+    public long tokens;
+
+    @Override
+    public void setCount(long count) {
+        tokens = count;
+    }
+}
@@ -0,0 +1,16 @@
+package compiler.Events;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("compiler.Parse")
+@Label("Parse")
+public class ParseEvent extends PhaseEvent {
+    @Label("Nodes")
+    public long nodes;
+
+    @Override
+    public void setCount(long count) {
+        nodes = count;
+    }
+}
@@ -0,0 +1,17 @@
+package compiler.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+// one phase of a compilation, committed only while a flight recording is running
+@Category("Compiler")
+@StackTrace(false)
+public abstract class PhaseEvent extends Event {
+    @Label("Class")
+    public String className;
+
+    // what the phase produced, in the unit of the phase
+    public abstract void setCount(long count);
+}
@@ -0,0 +1,20 @@
+package compiler.Events;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("compiler.Write")
+@Label("Write")
+@Description("One class written to the output")
+public class WriteEvent extends PhaseEvent {
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Override
+    public void setCount(long count) {
+        bytes = count;
+    }
+}
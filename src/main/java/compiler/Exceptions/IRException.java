@@ -0,0 +1,7 @@
+package compiler.Exceptions;
+
+public class IRException extends RuntimeException {
+  public IRException(String message) {
+    super(message.contains("IRError: ") ? message : "IRError: " + message);
+  }
+}
@@ -1,56 +1,132 @@
 package compiler;
 
+import compiler.Components.IR.Function;
+import compiler.Components.IR.Global;
+import compiler.Components.IR.Program;
+import compiler.Components.IR.Types;
 import compiler.Components.Semantic.*;
 import compiler.Components.SymbolTableManager;
+import compiler.Components.WorkerPool;
 import compiler.Exceptions.GeneratorException;
 import compiler.Exceptions.Semantic.OperatorError;
 import compiler.Exceptions.Semantic.ReturnError;
 import compiler.Exceptions.Semantic.ScopeError;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.commons.LocalVariablesSorter;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
 
 import compiler.Exceptions.Semantic.TypeError;
 import compiler.Components.Blocks.*;
 import compiler.Components.Token;
 
-import java.io.FileOutputStream;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 
 import java.io.*;
 
 public class Generator {
-    private static SymbolTableManager symbolTableManager;
+    private final SymbolTableManager symbolTableManager;
     private final String className;
-    private final String outputDirectory;
-    private ClassWriter classWriter;
+    private final ClassOutput output;
     private final Stack<MethodVisitor> methodVisitorStack = new Stack<>();
     private final Stack<Map<String, Integer>> slotStack = new Stack<>();
 
-    private static Analyzer analyzer;
+    private final Analyzer analyzer;
+
+    private int parallelism = WorkerPool.defaultParallelism();
+    private WorkerPool workerPool;
+    // user functions in source order, each one lowered by its own worker
+    private final Map<Method, Future<MethodNode>> methodTasks = new LinkedHashMap<>();
+    // functions generated by an earlier compilation, appended as they are
+    private Map<Method, MethodNode> reusedMethods = Map.of();
+    private final Map<Method, MethodNode> methods = new LinkedHashMap<>();
+    // every class written, by name
+    private final Map<String, byte[]> classes = new LinkedHashMap<>();
+    // the IR of the program, the functions are then generated from it instead of the tree
+    private Program program;
 
     public Generator(File file) {
-        analyzer = Analyzer.getInstance();
-        symbolTableManager = SymbolTableManager.getInstance();
+        this(file, Analyzer.getInstance());
+    }
+
+    public Generator(File file, Analyzer analyzer) {
+        this(file.getName().split("\\.")[0], new ClassOutput.DirectoryOutput(file.getAbsoluteFile().toPath().getParent()), analyzer);
+    }
+
+    // the classes are only kept in memory when there is no output
+    public Generator(String className, ClassOutput output, Analyzer analyzer) {
+        this.analyzer = analyzer;
+        symbolTableManager = analyzer.getSymbolTableManager();
+
+        this.className = className;
+        this.output = output;
+    }
+
+    // worker generator, walks the shared symbol tables with its own scope
+    private Generator(Generator parent) {
+        analyzer = parent.analyzer.fork();
+        symbolTableManager = analyzer.getSymbolTableManager();
+
+        className = parent.className;
+        output = parent.output;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public void setProgram(Program program) {
+        this.program = program;
+    }
+
+    public void setReusedMethods(Map<Method, MethodNode> reusedMethods) {
+        this.reusedMethods = reusedMethods;
+    }
+
+    // the user functions of the last generation, in source order
+    public Map<Method, MethodNode> getMethods() {
+        return methods;
+    }
 
-        className = file.getName().split("\\.")[0];
-        outputDirectory = file.getParent() == null ? "./" : file.getParent();
+    public Map<String, byte[]> getClasses() {
+        return classes;
     }
 
     private void createClassFile(String className, byte[] bytecode) {
-        Path filePath = Paths.get(outputDirectory, className + ".class");
+        classes.put(className, bytecode);
+
+        if (output == null) return;
 
-        try (FileOutputStream fos = new FileOutputStream(filePath.toFile())) {
-            fos.write(bytecode);
-        } catch (Exception e) {
-            throw new InternalError("Failed to save class file - " + filePath);
+        try {
+            output.write(className, bytecode);
+        } catch (IOException e) {
+            throw new InternalError("Failed to save class file - " + className + ".class");
         }
     }
 
+    private MethodNode createMethod(String name, String descriptor) {
+        return new MethodNode(Opcodes.ASM9, Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, name, descriptor, null, null);
+    }
+
+    // frames and maxs are computed for each method on its own, the class is then only assembled
+    private MethodNode computeFrames(MethodNode method) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
+        method.accept(cw);
+        cw.visitEnd();
+
+        ClassNode classNode = new ClassNode();
+        new ClassReader(cw.toByteArray()).accept(classNode, 0);
+
+        return classNode.methods.getFirst();
+    }
+
     // root
     public void generate(Block ast) {
         VarType mainType = symbolTableManager.getGlobalTable().lookup("main");
@@ -63,15 +139,59 @@ public class Generator {
             throw new GeneratorException("The function 'main' should not have any parameters");
         }
 
-        classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
-        classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
+        try (WorkerPool pool = new WorkerPool(parallelism)) {
+            workerPool = pool;
+            methodTasks.clear();
+            methods.clear();
+
+            List<Future<MethodNode>> builtInTasks = new ArrayList<>();
+
+            for (MethodNode builtIn : generateBuiltInFunctions()) {
+                builtInTasks.add(pool.submit(() -> computeFrames(builtIn)));
+            }
+
+            Future<MethodNode> mainTask = program != null ? generateProgram(ast) : generateMain(ast);
+
+            // appended in a fixed order, so the bytes don't depend on the number of workers
+            ClassWriter classWriter = new ClassWriter(0);
+            classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
+
+            if (program != null) {
+                for (Global global : program.getGlobals()) {
+                    classWriter.visitField(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, global.name(), Types.descriptor(global.type()), null, null).visitEnd();
+                }
+            }
+
+            for (MethodNode method : WorkerPool.join(builtInTasks)) {
+                method.accept(classWriter);
+            }
+
+            WorkerPool.join(List.of(mainTask)).getFirst().accept(classWriter);
 
-        generateBuiltInFunctions();
+            List<MethodNode> methodNodes = WorkerPool.join(new ArrayList<>(methodTasks.values()));
+            Iterator<Method> declarations = methodTasks.keySet().iterator();
+
+            for (MethodNode method : methodNodes) {
+                methods.put(declarations.next(), method);
+                method.accept(classWriter);
+            }
+
+            classWriter.visitEnd();
+
+            byte[] bytecode = classWriter.toByteArray();
+
+            createClassFile(className, bytecode);
+        } finally {
+            workerPool = null;
+        }
+    }
 
+    // the statements outside of the functions, then the call to main, the functions are generated as they are reached
+    private Future<MethodNode> generateMain(Block ast) {
         // main function
-        MethodVisitor methodVisitor = classWriter.visitMethod(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, "main", "([Ljava/lang/String;)V", null, null);
+        MethodNode mainMethod = createMethod("main", "([Ljava/lang/String;)V");
 
-        LocalVariablesSorter localVariablesSorter = new LocalVariablesSorter(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, "([Ljava/lang/String;)V", methodVisitor);
+        LocalVariablesSorter localVariablesSorter = new LocalVariablesSorter(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, "([Ljava/lang/String;)V", mainMethod);
 
         methodVisitorStack.push(localVariablesSorter);
 
@@ -88,16 +208,27 @@ public class Generator {
 
         methodVisitorStack.pop();
 
-        classWriter.visitEnd();
+        return workerPool.submit(() -> computeFrames(mainMethod));
+    }
+
+    // the records are the only statements still generated from the tree
+    private Future<MethodNode> generateProgram(Block ast) {
+        for (Statement statement : ast.getStatements()) {
+            if (statement instanceof RecordDefinition record) {
+                record.accept(this);
+            } else if (statement instanceof Method method) {
+                Function function = program.getFunction(method.getName());
 
-        byte[] bytecode = classWriter.toByteArray();
+                methodTasks.put(method, workerPool.submit(() -> computeFrames(IRGenerator.generate(className, program, function))));
+            }
+        }
 
-        createClassFile(className, bytecode);
+        return workerPool.submit(() -> computeFrames(IRGenerator.generate(className, program, program.getEntry())));
     }
 
     // built-ins
-    private void generateNegateBoolean() {
-        MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, "!", "(Z)Z", null, null);
+    private MethodNode generateNegateBoolean() {
+        MethodNode mv = createMethod("!", "(Z)Z");
 
         mv.visitCode();
         mv.visitVarInsn(Opcodes.ILOAD, 0);
@@ -106,10 +237,12 @@ public class Generator {
         mv.visitInsn(Opcodes.IRETURN);
         mv.visitMaxs(0, 0);
         mv.visitEnd();
+
+        return mv;
     }
 
-    private void generateChr() {
-        MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, "chr", "(I)Ljava/lang/String;", null, null);
+    private MethodNode generateChr() {
+        MethodNode mv = createMethod("chr", "(I)Ljava/lang/String;");
 
         mv.visitCode();
         mv.visitVarInsn(Opcodes.ILOAD, 0);
@@ -117,16 +250,12 @@ public class Generator {
         mv.visitInsn(Opcodes.ARETURN);
         mv.visitMaxs(0, 0);
         mv.visitEnd();
+
+        return mv;
     }
 
-    private void generateFloor() {
-        MethodVisitor mv = classWriter.visitMethod(
-                Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC,
-                "floor",
-                "(F)I",
-                null,
-                null
-        );
+    private MethodNode generateFloor() {
+        MethodNode mv = createMethod("floor", "(F)I");
 
         mv.visitCode();
         mv.visitVarInsn(Opcodes.FLOAD, 0);
@@ -143,10 +272,12 @@ public class Generator {
 
         mv.visitMaxs(0, 0);
         mv.visitEnd();
+
+        return mv;
     }
 
-    private void generateLen() {
-        MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, "len", "(Ljava/lang/String;)I", null, null);
+    private MethodNode generateLen() {
+        MethodNode mv = createMethod("len", "(Ljava/lang/String;)I");
 
         mv.visitCode();
         mv.visitVarInsn(Opcodes.ALOAD, 0);
@@ -154,10 +285,12 @@ public class Generator {
         mv.visitInsn(Opcodes.IRETURN);
         mv.visitMaxs(0, 0);
         mv.visitEnd();
+
+        return mv;
     }
 
-    private void generateReadInt() {
-        MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC,"readInt","()I",null,null);
+    private MethodNode generateReadInt() {
+        MethodNode mv = createMethod("readInt", "()I");
 
         mv.visitCode();
 
@@ -170,10 +303,12 @@ public class Generator {
         mv.visitInsn(Opcodes.IRETURN);
         mv.visitMaxs(0, 0);
         mv.visitEnd();
+
+        return mv;
     }
 
-    private void generateReadFloat() {
-        MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC,"readFloat","()F",null,null);
+    private MethodNode generateReadFloat() {
+        MethodNode mv = createMethod("readFloat", "()F");
 
         mv.visitCode();
 
@@ -186,10 +321,12 @@ public class Generator {
         mv.visitInsn(Opcodes.FRETURN);
         mv.visitMaxs(0, 0);
         mv.visitEnd();
+
+        return mv;
     }
 
-    private void generateReadString() {
-        MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, "readString", "()Ljava/lang/String;", null, null);
+    private MethodNode generateReadString() {
+        MethodNode mv = createMethod("readString", "()Ljava/lang/String;");
 
         mv.visitCode();
 
@@ -202,10 +339,12 @@ public class Generator {
         mv.visitInsn(Opcodes.ARETURN);
         mv.visitMaxs(0, 0);
         mv.visitEnd();
+
+        return mv;
     }
 
-    private void generateWriteInt() {
-        MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, "writeInt", "(I)V", null, null);
+    private MethodNode generateWriteInt() {
+        MethodNode mv = createMethod("writeInt", "(I)V");
 
         mv.visitCode();
         mv.visitFieldInsn(Opcodes.GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
@@ -214,10 +353,12 @@ public class Generator {
         mv.visitInsn(Opcodes.RETURN);
         mv.visitMaxs(0, 0);
         mv.visitEnd();
+
+        return mv;
     }
 
-    private void generateWriteFloat() {
-        MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, "writeFloat", "(F)V", null, null);
+    private MethodNode generateWriteFloat() {
+        MethodNode mv = createMethod("writeFloat", "(F)V");
 
         mv.visitCode();
         mv.visitFieldInsn(Opcodes.GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
@@ -226,17 +367,21 @@ public class Generator {
         mv.visitInsn(Opcodes.RETURN);
         mv.visitMaxs(0, 0);
         mv.visitEnd();
+
+        return mv;
     }
 
-    private void generateBuiltInFunctions() {
-        generateNegateBoolean();
-        generateChr();
-        generateFloor();
-        generateReadInt();
-        generateReadFloat();
-        generateReadString();
-        generateWriteInt();
-        generateWriteFloat();
+    private List<MethodNode> generateBuiltInFunctions() {
+        return List.of(
+                generateNegateBoolean(),
+                generateChr(),
+                generateFloor(),
+                generateReadInt(),
+                generateReadFloat(),
+                generateReadString(),
+                generateWriteInt(),
+                generateWriteFloat()
+        );
     }
 
     private String mapToPrimitive(String id) {
@@ -434,6 +579,17 @@ public class Generator {
             return;
         }
 
+        if (target instanceof RecordFieldAccess access) {
+            generateBlock(access.getRecord());
+            generateBlock(value);
+
+            RecordType recordType = access.getRecordType();
+            String descriptor = getTypeDescriptor(recordType.getFieldValue(access.getFieldName()));
+
+            methodVisitorStack.peek().visitFieldInsn(Opcodes.PUTFIELD, recordType.getRecordName(), access.getFieldName(), descriptor);
+            return;
+        }
+
         throw new GeneratorException("Unsupported assignment target: " + target.getClass().getSimpleName(), elem.getLineNumber());
     }
 
@@ -500,6 +656,27 @@ public class Generator {
             return;
         }
 
+        // the strings are compared by value, the bools as ints and the records and arrays by identity, as by the IR backend
+        if (resultTypeName == TypeName.BOOLEAN && (op == Token.EQUAL || op == Token.NOT_EQUAL)) {
+            Label trueLabel = new Label();
+            Label endLabel = new Label();
+
+            switch (operandType) {
+                case BOOLEAN -> mv.visitJumpInsn(op == Token.EQUAL ? Opcodes.IF_ICMPEQ : Opcodes.IF_ICMPNE, trueLabel);
+                case STRING -> {
+                    mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z", false);
+                    mv.visitJumpInsn(op == Token.EQUAL ? Opcodes.IFNE : Opcodes.IFEQ, trueLabel);
+                }
+                default -> mv.visitJumpInsn(op == Token.EQUAL ? Opcodes.IF_ACMPEQ : Opcodes.IF_ACMPNE, trueLabel);
+            }
+
+            mv.visitInsn(Opcodes.ICONST_0); // false
+            mv.visitJumpInsn(Opcodes.GOTO, endLabel);
+            mv.visitLabel(trueLabel);
+            mv.visitInsn(Opcodes.ICONST_1); // true
+            mv.visitLabel(endLabel);
+            return;
+        }
 
         switch (operandType) {
             case INTEGER -> {
@@ -524,6 +701,13 @@ public class Generator {
                 }
             }
 
+            case STRING -> {
+                switch (op) {
+                    case ADD -> mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;", false);
+                    default -> throw new OperatorError("Unsupported string operator: " + op, elem.getLineNumber());
+                }
+            }
+
             case BOOLEAN -> {
                 Label trueLabel = new Label();
                 Label endLabel = new Label();
@@ -772,10 +956,8 @@ public class Generator {
             case "readString" -> methodVisitorStack.peek().visitMethodInsn(
                     Opcodes.INVOKESTATIC, className, "readString", "()Ljava/lang/String;", false);
             case "len" -> {
-                Expression argExpr = elem.getArguments().get(0);
-                VarType argType = analyzer.getType(argExpr);
-
-                generateBlock(argExpr);
+                // the argument is already on the stack
+                VarType argType = analyzer.getType(elem.getArguments().get(0));
 
                 MethodVisitor mv = methodVisitorStack.peek();
 
@@ -884,17 +1066,35 @@ public class Generator {
     }
 
     public void generateBlock(Method elem) {
+        if (reusedMethods.containsKey(elem)) {
+            methodTasks.put(elem, CompletableFuture.completedFuture(reusedMethods.get(elem)));
+            return;
+        }
+
+        Generator worker = new Generator(this);
+
+        // the variables visible at the declaration, as in a sequential walk
+        List<Map<String, Integer>> enclosingSlots = new ArrayList<>();
+        for (Map<String, Integer> slots : slotStack) {
+            enclosingSlots.add(new HashMap<>(slots));
+        }
+
+        methodTasks.put(elem, workerPool.submit(() -> worker.generateMethod(elem, enclosingSlots)));
+    }
+
+    private MethodNode generateMethod(Method elem, List<Map<String, Integer>> enclosingSlots) {
         String desc = getMethodDescriptor(elem);
 
-        MethodVisitor methodVisitor = classWriter.visitMethod(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, elem.getName(), getMethodDescriptor(elem), null, null);
+        MethodNode methodNode = createMethod(elem.getName(), desc);
 
-        LocalVariablesSorter localVariablesSorter = new LocalVariablesSorter(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, desc, methodVisitor);
+        LocalVariablesSorter localVariablesSorter = new LocalVariablesSorter(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, desc, methodNode);
 
         methodVisitorStack.push(localVariablesSorter);
 
         methodVisitorStack.peek().visitCode();
 
         symbolTableManager.enterSymbolTable(elem);
+        slotStack.addAll(enclosingSlots);
         slotStack.push(new HashMap<>());
 
         // Assign slots for the parameters
@@ -933,6 +1133,8 @@ public class Generator {
         symbolTableManager.leaveSymbolTable();
 
         methodVisitorStack.pop();
+
+        return computeFrames(methodNode);
     }
 
     public void generateBlock(FreeStatement elem) {
@@ -1019,6 +1221,8 @@ public class Generator {
         mv.visitJumpInsn(Opcodes.IFNE, loopStart);
     }
 
+    // an int loop with a constant step is emitted the way C2 finds counted loops, to unroll and vectorize them:
+    // its variable only changed by an iinc, against a limit computed once when nothing in the loop can change it
     public void generateBlock(ForLoop elem) {
         MethodVisitor mv = methodVisitorStack.peek();
 
@@ -1033,6 +1237,16 @@ public class Generator {
         int storeOpcode = getStoreOpcode(typeDescriptor);
         mv.visitVarInsn(storeOpcode, slot);
 
+        boolean counted = varType.getName() == TypeName.INTEGER;
+        Integer step = counted ? constantStep(elem.getStep()) : null;
+        int limitSlot = -1;
+
+        if (counted && isLoopInvariant(elem.getMaxValue(), assignedNames(elem))) {
+            generateBlock(elem.getMaxValue());
+            limitSlot = ((LocalVariablesSorter) mv).newLocal(org.objectweb.asm.Type.INT_TYPE);
+            mv.visitVarInsn(Opcodes.ISTORE, limitSlot);
+        }
+
         Label loopStart = new Label();
         Label loopEnd = new Label();
 
@@ -1043,7 +1257,11 @@ public class Generator {
         mv.visitVarInsn(loadOpcode, slot);
 
         // Push max value
-        generateBlock(elem.getMaxValue());
+        if (limitSlot >= 0) {
+            mv.visitVarInsn(Opcodes.ILOAD, limitSlot);
+        } else {
+            generateBlock(elem.getMaxValue());
+        }
 
         // check if iterator reached its max value to exit loop
         switch (varType.getName()) {
@@ -1058,6 +1276,13 @@ public class Generator {
         generateBlock(elem.getBody());
 
         // add step to iterator
+        if (step != null) {
+            mv.visitIincInsn(slot, step);
+            mv.visitJumpInsn(Opcodes.GOTO, loopStart);
+            mv.visitLabel(loopEnd);
+            return;
+        }
+
         mv.visitVarInsn(loadOpcode, slot);
         generateBlock(elem.getStep());
 
@@ -1073,6 +1298,62 @@ public class Generator {
         mv.visitLabel(loopEnd);
     }
 
+    // an int literal, negated or not, small enough for an iinc
+    private static Integer constantStep(Expression step) {
+        boolean negated = step instanceof UnaryExpression unary && unary.getOperator() == Token.SUBTRACT;
+        Expression operand = negated ? ((UnaryExpression) step).getOperand() : step;
+
+        if (!(operand instanceof Literal literal) || !literal.getType().equals("Integer")) return null;
+
+        try {
+            int value = Integer.parseInt(literal.getValue());
+            int added = negated ? -value : value;
+
+            return added >= Short.MIN_VALUE && added <= Short.MAX_VALUE ? added : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // the variables the loop may change, its own one included, and the ones declared in it, which may hide others
+    private static Set<String> assignedNames(ForLoop loop) {
+        Set<String> names = new HashSet<>(List.of(loop.getVariable()));
+        Deque<Statement> pending = new ArrayDeque<>(loop.getBody().getStatements());
+
+        while (!pending.isEmpty()) {
+            switch (pending.pop()) {
+                case Assignment assignment when assignment.getTarget() instanceof VarReference target -> names.add(target.getName());
+                case VariableDeclaration declaration -> names.add(declaration.getIdentifier());
+                case ForLoop inner -> {
+                    names.add(inner.getVariable());
+                    pending.addAll(inner.getBody().getStatements());
+                }
+                case WhileLoop inner -> pending.addAll(inner.getBody().getStatements());
+                case DoWhileLoop inner -> pending.addAll(inner.getBody().getStatements());
+                case IfStatement branch -> {
+                    pending.addAll(branch.getThenBlock().getStatements());
+                    if (branch.getElseBlock() != null) pending.addAll(branch.getElseBlock().getStatements());
+                }
+                case Block block -> pending.addAll(block.getStatements());
+                default -> {}
+            }
+        }
+
+        return names;
+    }
+
+    // the locals of a method are only changed by its own statements, and the length of an array never changes
+    private static boolean isLoopInvariant(Expression expression, Set<String> assigned) {
+        return switch (expression) {
+            case Literal literal -> true;
+            case VarReference reference -> !assigned.contains(reference.getName());
+            case UnaryExpression unary -> isLoopInvariant(unary.getOperand(), assigned);
+            case BinaryExpression binary -> isLoopInvariant(binary.getLeft(), assigned) && isLoopInvariant(binary.getRight(), assigned);
+            case CallExpression call -> call.getType().equals("len") && isLoopInvariant(call.getArguments().getFirst(), assigned);
+            default -> false;
+        };
+    }
+
     public void generateBlock(Block block) {
         symbolTableManager.enterSymbolTable(block);
         slotStack.push(new HashMap<>());
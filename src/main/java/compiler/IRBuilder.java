@@ -0,0 +1,624 @@
+package compiler;
+
+import compiler.Components.Blocks.*;
+import compiler.Components.IR.*;
+import compiler.Components.IR.Function;
+import compiler.Components.Semantic.*;
+import compiler.Components.Token;
+import compiler.Components.WorkerPool;
+import compiler.Exceptions.Semantic.OperatorError;
+import compiler.Exceptions.Semantic.TypeError;
+
+import java.util.*;
+import java.util.concurrent.Future;
+
+// lowers an analyzed program to its IR, each function by its own worker
+// the locals are put in SSA form as the code is walked, by the algorithm of Braun et al.:
+// a block is sealed once all its predecessors are known, the phis of the blocks read before that are completed then
+public class IRBuilder {
+    private final SymbolTable globalTable;
+    private int parallelism = WorkerPool.defaultParallelism();
+
+    private Program program;
+    private Function function;
+    private BasicBlock current;
+    private final Deque<Map<String, Variable>> scopes = new ArrayDeque<>();
+    private final Map<Variable, Map<BasicBlock, Value>> definitions = new HashMap<>();
+    private final Set<BasicBlock> sealed = new HashSet<>();
+    private final Map<BasicBlock, Map<Variable, Instruction>> incompletePhis = new HashMap<>();
+    // the removed phis, the definitions recorded before may still name them
+    private final Map<Instruction, Value> replaced = new HashMap<>();
+
+    // a local, or a global when it has one, identified by the declaration and not by its name
+    private static final class Variable {
+        private final VarType type;
+        private final Global global;
+
+        private Variable(VarType type, Global global) {
+            this.type = type;
+            this.global = global;
+        }
+    }
+
+    public IRBuilder(Analyzer analyzer) {
+        globalTable = analyzer.getSymbolTableManager().getGlobalTable();
+    }
+
+    // worker lowering one function
+    private IRBuilder(IRBuilder parent, Function function, Map<String, Variable> globals) {
+        globalTable = parent.globalTable;
+        program = parent.program;
+        this.function = function;
+
+        scopes.push(new HashMap<>(globals));
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public Program build(Block ast) {
+        program = new Program();
+
+        Map<String, Variable> globals = new HashMap<>();
+        Map<Method, Function> methods = new LinkedHashMap<>();
+
+        for (Statement statement : ast.getStatements()) {
+            if (statement instanceof VariableDeclaration declaration) {
+                Global global = new Global(declaration.getIdentifier(), type(declaration.getType()), declaration.isFinal());
+
+                program.addGlobal(global);
+                globals.put(global.name(), new Variable(global.type(), global));
+            } else if (statement instanceof Method method) {
+                List<Parameter> parameters = new ArrayList<>();
+
+                for (Param param : method.getParameters()) {
+                    parameters.add(new Parameter(param.getName(), parameters.size(), type(param.getType())));
+                }
+
+                Function function = new Function(method.getName(), type(method.getReturnType()), parameters);
+
+                program.addFunction(function);
+                methods.put(method, function);
+            }
+        }
+
+        program.setEntry(new Function(Program.ENTRY, ReturnType.VOID, List.of()));
+
+        try (WorkerPool pool = new WorkerPool(parallelism)) {
+            List<Future<Function>> tasks = new ArrayList<>();
+
+            for (Map.Entry<Method, Function> method : methods.entrySet()) {
+                IRBuilder worker = new IRBuilder(this, method.getValue(), globals);
+                tasks.add(pool.submit(() -> worker.lowerMethod(method.getKey())));
+            }
+
+            IRBuilder worker = new IRBuilder(this, program.getEntry(), globals);
+            tasks.add(pool.submit(() -> worker.lowerEntry(ast)));
+
+            WorkerPool.join(tasks);
+        }
+
+        Verifier.verify(program);
+
+        return program;
+    }
+
+    private Function lowerMethod(Method method) {
+        start();
+
+        Map<String, Variable> parameters = new HashMap<>();
+
+        for (Parameter parameter : function.getParameters()) {
+            Variable variable = new Variable(parameter.getType(), null);
+
+            parameters.put(parameter.getName(), variable);
+            write(variable, parameter);
+        }
+
+        scopes.push(parameters);
+        lower(method.getBody());
+        scopes.pop();
+
+        return finish();
+    }
+
+    // the statements of the program outside of the functions, then main
+    private Function lowerEntry(Block ast) {
+        start();
+
+        for (Statement statement : ast.getStatements()) {
+            if (!(statement instanceof Method) && !(statement instanceof RecordDefinition)) {
+                lower(statement);
+            }
+        }
+
+        emit(new Instruction(Opcode.CALL, ReturnType.VOID, "main", List.of()));
+
+        return finish();
+    }
+
+    private void start() {
+        current = function.newBlock();
+        seal(current);
+    }
+
+    private Function finish() {
+        if (function.getReturnType().getName() == TypeName.VOID) {
+            emit(Instruction.ret(null));
+        } else {
+            // the end of a function returning a value is only reached when some path misses its return
+            emit(Instruction.ret(Constant.defaultOf(function.getReturnType())));
+        }
+
+        function.removeUnreachableBlocks();
+
+        // phis that only became trivial once the unreachable predecessors were dropped
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            for (BasicBlock block : function.getBlocks()) {
+                for (Instruction phi : block.getPhis()) {
+                    if (tryRemoveTrivialPhi(phi) != phi) {
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return function;
+    }
+
+    private Instruction emit(Instruction instruction) {
+        return current.append(instruction);
+    }
+
+    private VarType type(Type type) {
+        if (type == null) return ReturnType.VOID;
+
+        return switch (type.getCategory()) {
+            case PRIMITIVE -> switch (type.getIdentifier().toLowerCase()) {
+                case "int", "integer" -> PrimitiveType.INT;
+                case "float" -> PrimitiveType.FLOAT;
+                case "bool", "boolean" -> PrimitiveType.BOOL;
+                case "string" -> PrimitiveType.STRING;
+                default -> throw new TypeError("Illegal type " + type.getIdentifier(), type.getLineNumber());
+            };
+            case ARRAY -> new ArrayType(type(type.getArrayElementType()), -1);
+            case RECORD -> globalTable.lookup(type.getIdentifier());
+        };
+    }
+
+    private Variable lookup(String name) {
+        for (Map<String, Variable> scope : scopes) {
+            if (scope.containsKey(name)) return scope.get(name);
+        }
+
+        throw new IllegalStateException("No variable " + name + " in " + function);
+    }
+
+    // statements
+    private void lower(Statement statement) {
+        switch (statement) {
+            case Block block -> {
+                scopes.push(new HashMap<>());
+
+                for (Statement element : block.getStatements()) {
+                    lower(element);
+                }
+
+                scopes.pop();
+            }
+            case VariableDeclaration declaration -> {
+                Variable variable = scopes.peek().get(declaration.getIdentifier());
+                VarType type = type(declaration.getType());
+                Value value = declaration.getValue() == null ? Constant.defaultOf(type) : lower(declaration.getValue());
+
+                // only the globals are declared in the scope before they are reached
+                if (variable == null || variable.global == null) {
+                    variable = new Variable(type, null);
+                    scopes.peek().put(declaration.getIdentifier(), variable);
+                }
+
+                write(variable, value);
+            }
+            case Assignment assignment -> lower(assignment);
+            case FunctionCall call -> call(call.getFunctionName(), call.getArguments(), call.getLineNumber());
+            case ReturnStatement ret -> {
+                emit(Instruction.ret(ret.getReturnValue() == null ? null : lower(ret.getReturnValue())));
+
+                // what follows is unreachable, it goes to a block without predecessors
+                current = function.newBlock();
+                seal(current);
+            }
+            case IfStatement ifStatement -> lower(ifStatement);
+            case WhileLoop loop -> lower(loop);
+            case DoWhileLoop loop -> lower(loop);
+            case ForLoop loop -> lower(loop);
+            default -> {
+                // records are classes of their own, the functions are lowered apart, and free does nothing
+            }
+        }
+    }
+
+    private void lower(Assignment assignment) {
+        switch (assignment.getTarget()) {
+            case VarReference reference -> write(lookup(reference.getName()), lower(assignment.getValue()));
+            case ArrayAccess access -> {
+                Value array = lower(access.getArrayExpr());
+                Value index = lower(access.getIndex());
+                Value value = lower(assignment.getValue());
+
+                emit(new Instruction(Opcode.ARRAY_STORE, ReturnType.VOID, List.of(array, index, value)));
+            }
+            case RecordFieldAccess access -> {
+                Value record = lower(access.getRecord());
+                Value value = lower(assignment.getValue());
+
+                emit(new Instruction(Opcode.PUT_FIELD, ReturnType.VOID, access.getFieldName(), List.of(record, value)));
+            }
+            default -> throw new TypeError("Invalid assignment target", assignment.getLineNumber());
+        }
+    }
+
+    private void lower(IfStatement ifStatement) {
+        Value condition = lower(ifStatement.getCondition());
+
+        BasicBlock then = function.newBlock();
+        BasicBlock otherwise = ifStatement.getElseBlock() == null ? null : function.newBlock();
+        BasicBlock join = function.newBlock();
+
+        emit(Instruction.branch(condition, then, otherwise == null ? join : otherwise));
+
+        seal(then);
+        current = then;
+        lower(ifStatement.getThenBlock());
+        emit(Instruction.jump(join));
+
+        if (otherwise != null) {
+            seal(otherwise);
+            current = otherwise;
+            lower(ifStatement.getElseBlock());
+            emit(Instruction.jump(join));
+        }
+
+        seal(join);
+        current = join;
+    }
+
+    private void lower(WhileLoop loop) {
+        BasicBlock header = function.newBlock();
+        BasicBlock body = function.newBlock();
+        BasicBlock exit = function.newBlock();
+
+        emit(Instruction.jump(header));
+        current = header;
+
+        emit(Instruction.branch(lower(loop.getCondition()), body, exit));
+
+        seal(body);
+        current = body;
+        lower(loop.getBody());
+        emit(Instruction.jump(header));
+
+        seal(header);
+        seal(exit);
+        current = exit;
+    }
+
+    private void lower(DoWhileLoop loop) {
+        BasicBlock body = function.newBlock();
+        BasicBlock exit = function.newBlock();
+
+        emit(Instruction.jump(body));
+        current = body;
+
+        lower(loop.getBody());
+        emit(Instruction.branch(lower(loop.getCondition()), body, exit));
+
+        seal(body);
+        seal(exit);
+        current = exit;
+    }
+
+    // the variable is a new one from the loop on, the limit and the step are evaluated at every iteration
+    private void lower(ForLoop loop) {
+        Value start = lower(loop.getStart());
+        Variable variable = new Variable(start.getType(), null);
+
+        scopes.peek().put(loop.getVariable(), variable);
+        write(variable, start);
+
+        BasicBlock header = function.newBlock();
+        BasicBlock body = function.newBlock();
+        BasicBlock exit = function.newBlock();
+
+        emit(Instruction.jump(header));
+        current = header;
+
+        Value value = read(variable);
+        Value limit = lower(loop.getMaxValue());
+        Instruction condition = emit(new Instruction(Opcode.LT, PrimitiveType.BOOL, List.of(value, limit)));
+
+        emit(Instruction.branch(condition, body, exit));
+
+        seal(body);
+        current = body;
+        lower(loop.getBody());
+
+        Value previous = read(variable);
+        Value step = lower(loop.getStep());
+
+        write(variable, emit(new Instruction(Opcode.ADD, variable.type, List.of(previous, step))));
+        emit(Instruction.jump(header));
+
+        seal(header);
+        seal(exit);
+        current = exit;
+    }
+
+    // expressions
+    private Value lower(Expression expression) {
+        return switch (expression) {
+            case Literal literal -> switch (literal.getType().toLowerCase()) {
+                case "integer" -> Constant.of(Integer.parseInt(literal.getValue()));
+                case "float" -> Constant.of(Float.parseFloat(literal.getValue()));
+                case "boolean" -> Constant.of(Boolean.parseBoolean(literal.getValue()));
+                default -> Constant.of(literal.getValue());
+            };
+            case VarReference reference -> read(lookup(reference.getName()));
+            case BinaryExpression binary -> lower(binary);
+            case UnaryExpression unary -> {
+                Value operand = lower(unary.getOperand());
+
+                if (unary.getOperator() != Token.SUBTRACT) yield operand;
+
+                if (!Types.isNumeric(operand.getType())) {
+                    throw new TypeError("Operator '-' requires an integer or float operand", unary.getLineNumber());
+                }
+
+                yield emit(new Instruction(Opcode.NEG, operand.getType(), List.of(operand)));
+            }
+            case ArrayCreation creation -> {
+                if (creation.getElementType().getCategory() == TypeCategory.ARRAY) {
+                    throw new TypeError("Illegal type when creating an array. Nested arrays are not supported", creation.getLineNumber());
+                }
+
+                Value size = lower(creation.getSize());
+
+                yield emit(new Instruction(Opcode.NEW_ARRAY, new ArrayType(type(creation.getElementType()), -1), List.of(size)));
+            }
+            case ArrayAccess access -> {
+                Value array = lower(access.getArrayExpr());
+                Value index = lower(access.getIndex());
+
+                yield emit(new Instruction(Opcode.ARRAY_LOAD, ((ArrayType) array.getType()).getElementType(), List.of(array, index)));
+            }
+            case RecordFieldAccess access -> {
+                Value record = lower(access.getRecord());
+                VarType type = ((RecordType) record.getType()).getFieldValue(access.getFieldName());
+
+                yield emit(new Instruction(Opcode.GET_FIELD, type, access.getFieldName(), List.of(record)));
+            }
+            case CallExpression call -> call(call.getType(), call.getArguments(), call.getLineNumber());
+            case FunctionCall call -> call(call.getFunctionName(), call.getArguments(), call.getLineNumber());
+            default -> throw new TypeError("Unknown expression type " + expression.getClass().getSimpleName(), expression.getLineNumber());
+        };
+    }
+
+    private Value lower(BinaryExpression binary) {
+        Token operator = binary.getOperator();
+
+        if (operator == Token.LOGICAL_OR || operator == Token.LOGICAL_AND) {
+            return shortCircuit(binary);
+        }
+
+        Value left = lower(binary.getLeft());
+        Value right = lower(binary.getRight());
+        VarType type = left.getType();
+
+        // the analyzer doesn't look into every expression, the arguments of writeln among them
+        if (!type.equals(right.getType())) {
+            throw new OperatorError("Mismatched operand types for operator " + operator, binary.getLineNumber());
+        }
+
+        Opcode opcode = switch (operator) {
+            case ADD -> type.equals(PrimitiveType.STRING) ? Opcode.CONCAT : Opcode.ADD;
+            case SUBTRACT -> Opcode.SUB;
+            case MULTIPLY -> Opcode.MUL;
+            case DIVIDE -> Opcode.DIV;
+            case MODULO -> Opcode.REM;
+            case EQUAL -> Opcode.EQ;
+            case NOT_EQUAL -> Opcode.NE;
+            case LESS -> Opcode.LT;
+            case LESS_OR_EQUAL -> Opcode.LE;
+            case GREATER -> Opcode.GT;
+            case GREATER_OR_EQUAL -> Opcode.GE;
+            default -> throw new OperatorError("Unknown operator " + operator, binary.getLineNumber());
+        };
+
+        boolean supported = switch (opcode) {
+            case EQ, NE, CONCAT -> true;
+            default -> Types.isNumeric(type);
+        };
+
+        if (!supported) {
+            throw new OperatorError("Unsupported " + Types.name(type) + " operator: " + operator, binary.getLineNumber());
+        }
+
+        VarType result = opcode.isComparison() ? PrimitiveType.BOOL : type;
+
+        return emit(new Instruction(opcode, result, List.of(left, right)));
+    }
+
+    // the right operand is only evaluated when the left one doesn't decide
+    private Value shortCircuit(BinaryExpression binary) {
+        boolean or = binary.getOperator() == Token.LOGICAL_OR;
+        Value left = lower(binary.getLeft());
+
+        if (!left.getType().equals(PrimitiveType.BOOL)) {
+            throw new OperatorError("Unsupported " + Types.name(left.getType()) + " operator: " + binary.getOperator(), binary.getLineNumber());
+        }
+
+        BasicBlock decided = current;
+        BasicBlock right = function.newBlock();
+        BasicBlock join = function.newBlock();
+
+        emit(or ? Instruction.branch(left, join, right) : Instruction.branch(left, right, join));
+
+        seal(right);
+        current = right;
+        Value value = lower(binary.getRight());
+
+        if (!value.getType().equals(PrimitiveType.BOOL)) {
+            throw new OperatorError("Mismatched operand types for operator " + binary.getOperator(), binary.getLineNumber());
+        }
+
+        emit(Instruction.jump(join));
+
+        seal(join);
+        current = join;
+
+        Instruction phi = join.insertPhi(new Instruction(Opcode.PHI, PrimitiveType.BOOL, List.of()));
+
+        for (BasicBlock predecessor : join.getPredecessors()) {
+            phi.addOperand(predecessor == decided ? Constant.of(or) : value);
+        }
+
+        return phi;
+    }
+
+    // the built-in functions, the records and the functions of the program
+    private Value call(String name, List<Expression> arguments, int lineNumber) {
+        List<Value> values = new ArrayList<>();
+
+        for (Expression argument : arguments) {
+            values.add(lower(argument));
+        }
+
+        Instruction instruction = switch (name) {
+            case "len" -> new Instruction(Opcode.LENGTH, PrimitiveType.INT, values);
+            case "chr" -> new Instruction(Opcode.CHR, PrimitiveType.STRING, values);
+            case "floor" -> new Instruction(Opcode.FLOOR, PrimitiveType.INT, values);
+            case "!" -> new Instruction(Opcode.NOT, PrimitiveType.BOOL, values);
+            case "readInt" -> new Instruction(Opcode.READ, PrimitiveType.INT, name, values);
+            case "readFloat" -> new Instruction(Opcode.READ, PrimitiveType.FLOAT, name, values);
+            case "readString" -> new Instruction(Opcode.READ, PrimitiveType.STRING, name, values);
+            case "write", "writeln" -> new Instruction(Opcode.WRITE, ReturnType.VOID, name, values);
+            default -> switch (globalTable.lookup(name)) {
+                case RecordType record -> new Instruction(Opcode.NEW_RECORD, record, name, values);
+                case FunctionType signature -> new Instruction(Opcode.CALL, signature.getReturnType(), name, values);
+                case null, default -> throw new TypeError(name + " is not a function or record", lineNumber);
+            };
+        };
+
+        return emit(instruction);
+    }
+
+    // SSA construction
+    private Value read(Variable variable) {
+        if (variable.global != null) {
+            return emit(new Instruction(Opcode.GET_GLOBAL, variable.type, variable.global.name(), List.of()));
+        }
+
+        return readVariable(variable, current);
+    }
+
+    private void write(Variable variable, Value value) {
+        if (variable.global != null) {
+            emit(new Instruction(Opcode.PUT_GLOBAL, ReturnType.VOID, variable.global.name(), List.of(value)));
+            return;
+        }
+
+        writeVariable(variable, current, value);
+    }
+
+    private void writeVariable(Variable variable, BasicBlock block, Value value) {
+        definitions.computeIfAbsent(variable, key -> new HashMap<>()).put(block, value);
+    }
+
+    private Value readVariable(Variable variable, BasicBlock block) {
+        Value value = definitions.getOrDefault(variable, Map.of()).get(block);
+
+        if (value != null) return resolve(value);
+
+        if (!sealed.contains(block)) {
+            // completed once the block is sealed
+            Instruction phi = block.insertPhi(new Instruction(Opcode.PHI, variable.type, List.of()));
+            incompletePhis.computeIfAbsent(block, key -> new LinkedHashMap<>()).put(variable, phi);
+            value = phi;
+        } else if (block.getPredecessors().isEmpty()) {
+            // only in unreachable code, or for a variable read before it is set
+            value = Constant.defaultOf(variable.type);
+        } else if (block.getPredecessors().size() == 1) {
+            value = readVariable(variable, block.getPredecessors().getFirst());
+        } else {
+            // recorded first, so a loop reading it back finds it
+            Instruction phi = block.insertPhi(new Instruction(Opcode.PHI, variable.type, List.of()));
+            writeVariable(variable, block, phi);
+            value = addPhiOperands(variable, phi);
+        }
+
+        writeVariable(variable, block, value);
+
+        return value;
+    }
+
+    private Value addPhiOperands(Variable variable, Instruction phi) {
+        for (BasicBlock predecessor : phi.getBlock().getPredecessors()) {
+            phi.addOperand(readVariable(variable, predecessor));
+        }
+
+        return tryRemoveTrivialPhi(phi);
+    }
+
+    // a phi of a single value, itself aside, is that value
+    private Value tryRemoveTrivialPhi(Instruction phi) {
+        Value same = null;
+
+        for (Value operand : phi.getOperands()) {
+            if (operand == phi || operand == same) continue;
+            if (same instanceof Constant constant && operand instanceof Constant other && constant.sameAs(other)) continue;
+            if (same != null) return phi;
+
+            same = operand;
+        }
+
+        if (same == null) same = Constant.defaultOf(phi.getType());
+
+        List<Instruction> users = phi.getUsers().stream().filter(user -> user != phi && user.isPhi()).distinct().toList();
+
+        phi.replaceAllUsesWith(same);
+        phi.remove();
+        replaced.put(phi, same);
+
+        for (Instruction user : users) {
+            if (user.getBlock() != null) tryRemoveTrivialPhi(user);
+        }
+
+        return same;
+    }
+
+    private void seal(BasicBlock block) {
+        sealed.add(block);
+
+        Map<Variable, Instruction> phis = incompletePhis.remove(block);
+
+        if (phis == null) return;
+
+        for (Map.Entry<Variable, Instruction> phi : phis.entrySet()) {
+            addPhiOperands(phi.getKey(), phi.getValue());
+        }
+    }
+
+    private Value resolve(Value value) {
+        while (value instanceof Instruction instruction && replaced.containsKey(instruction)) {
+            value = replaced.get(instruction);
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,584 @@
+package compiler;
+
+import compiler.Components.IR.*;
+import compiler.Components.IR.Function;
+import compiler.Components.Semantic.*;
+import compiler.Exceptions.GeneratorException;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.*;
+
+// the bytecode of a function of the IR, its frames and maxs left to be computed
+// the blocks are laid out in reverse post order, each phi and each value used away from its definition gets a local,
+// and a value used once right after it is computed stays on the stack, a comparison feeding a branch becomes the jump itself,
+// a constant added to a phi and going back to it at the end of the block is an iinc of its local
+public class IRGenerator {
+    private final String className;
+    private final Program program;
+    private final Function function;
+    private final MethodNode method;
+
+    private final Map<Value, Integer> slots = new HashMap<>();
+    // left on the stack for their user
+    private final Set<Instruction> stacked = new HashSet<>();
+    // comparisons emitted by the branch they feed
+    private final Set<Instruction> fused = new HashSet<>();
+    // the increments done in the local of their phi
+    private final Map<Instruction, Instruction> increments = new HashMap<>();
+    private final Map<BasicBlock, Label> labels = new HashMap<>();
+    // the edges to blocks with phis leaving a branch, where the copies are made
+    private final List<Runnable> edges = new ArrayList<>();
+    private int nextSlot;
+
+    private IRGenerator(String className, Program program, Function function) {
+        this.className = className;
+        this.program = program;
+        this.function = function;
+
+        boolean entry = function == program.getEntry();
+        String name = entry ? "main" : function.getName();
+        String descriptor = entry ? "([Ljava/lang/String;)V" : descriptor(function);
+
+        method = new MethodNode(Opcodes.ASM9, Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, name, descriptor, null, null);
+        nextSlot = entry ? 1 : function.getParameters().size();
+    }
+
+    public static MethodNode generate(String className, Program program, Function function) {
+        return new IRGenerator(className, program, function).generate();
+    }
+
+    public static String descriptor(Function function) {
+        StringBuilder descriptor = new StringBuilder("(");
+
+        for (Parameter parameter : function.getParameters()) {
+            descriptor.append(Types.descriptor(parameter.getType()));
+        }
+
+        return descriptor.append(')').append(Types.descriptor(function.getReturnType())).toString();
+    }
+
+    private MethodNode generate() {
+        List<BasicBlock> order = function.reversePostOrder();
+
+        for (Parameter parameter : function.getParameters()) {
+            slots.put(parameter, parameter.getIndex());
+        }
+
+        for (BasicBlock block : order) {
+            labels.put(block, new Label());
+            plan(block);
+            findIncrements(block);
+        }
+
+        for (BasicBlock block : order) {
+            for (Instruction instruction : block.getInstructions()) {
+                boolean kept = instruction.isPhi() || !instruction.getUsers().isEmpty();
+
+                if (!instruction.isVoid() && kept && !stacked.contains(instruction) && !fused.contains(instruction) && !increments.containsKey(instruction)) {
+                    slots.put(instruction, nextSlot++);
+                }
+            }
+        }
+
+        increments.forEach((increment, phi) -> slots.put(increment, slots.get(phi)));
+
+        method.visitCode();
+
+        for (int i = 0; i < order.size(); i++) {
+            emit(order.get(i), i + 1 < order.size() ? order.get(i + 1) : null);
+        }
+
+        for (Runnable edge : edges) {
+            edge.run();
+        }
+
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        return method;
+    }
+
+    // which values of the block stay on the stack, found by running the block over a stack of them:
+    // a user takes its first operands from the top of the stack, any other operand meant to be there gets a local,
+    // and the block is run again until none has to
+    private void plan(BasicBlock block) {
+        Instruction terminator = block.getTerminator();
+        List<Instruction> instructions = block.getInstructions();
+        Set<Instruction> candidates = new HashSet<>();
+
+        if (terminator.getOpcode() == Opcode.BRANCH && terminator.getOperand(0) instanceof Instruction condition
+                && condition.getOpcode().isComparison() && condition.getUsers().size() == 1 && condition.getBlock() == block
+                && instructions.indexOf(condition) == instructions.size() - 2) {
+            fused.add(condition);
+        }
+
+        for (Instruction instruction : instructions) {
+            if (instruction.isPhi() || instruction.isVoid() || fused.contains(instruction) || instruction.getUsers().size() != 1) continue;
+
+            Instruction user = instruction.getUsers().getFirst();
+
+            if (user.getBlock() == block && !user.isPhi() && user.getOpcode() != Opcode.NEW_RECORD) {
+                candidates.add(instruction);
+            }
+        }
+
+        boolean demoted = true;
+
+        while (demoted) {
+            demoted = false;
+
+            List<Instruction> pending = new ArrayList<>();
+
+            for (Instruction instruction : instructions) {
+                if (instruction.isPhi()) continue;
+
+                List<Value> operands = instruction.getOperands();
+                int taken = 0;
+
+                for (int count = Math.min(operands.size(), pending.size()); count > 0 && taken == 0; count--) {
+                    boolean matches = true;
+
+                    for (int i = 0; i < count && matches; i++) {
+                        matches = operands.get(i) == pending.get(pending.size() - count + i);
+                    }
+
+                    if (matches) taken = count;
+                }
+
+                for (int i = taken; i < operands.size(); i++) {
+                    if (operands.get(i) instanceof Instruction operand && candidates.remove(operand)) demoted = true;
+                }
+
+                pending.subList(pending.size() - taken, pending.size()).clear();
+
+                if (candidates.contains(instruction)) pending.add(instruction);
+            }
+
+            // left over at the end of the block
+            if (candidates.removeAll(pending)) demoted = true;
+        }
+
+        stacked.addAll(candidates);
+    }
+
+    // the phi is no longer read once the block incremented it, as the block then jumps to the phi, setting it to the increment
+    private void findIncrements(BasicBlock block) {
+        Instruction terminator = block.getTerminator();
+
+        if (terminator.getOpcode() != Opcode.JUMP) return;
+
+        BasicBlock target = terminator.getTargets().getFirst();
+        int index = target.getPredecessors().indexOf(block);
+        List<Instruction> instructions = block.getInstructions();
+
+        for (Instruction phi : target.getPhis()) {
+            if (!(phi.getOperand(index) instanceof Instruction increment) || increment.getBlock() != block || increment.getUsers().size() != 1) continue;
+            if (constantAdded(increment, phi) == null) continue;
+
+            int position = instructions.indexOf(increment);
+            boolean readAfter = phi.getUsers().stream()
+                    .anyMatch(user -> user.isPhi() ? user.getBlock() == target && user.getOperand(index) == phi : user.getBlock() == block && instructions.indexOf(user) > position);
+
+            if (!readAfter) increments.put(increment, phi);
+        }
+    }
+
+    // the constant an iinc adds to the phi, null when the instruction isn't one
+    private static Integer constantAdded(Instruction instruction, Instruction phi) {
+        List<Value> operands = instruction.getOperands();
+
+        if (instruction.getType().getName() != TypeName.INTEGER) return null;
+
+        Integer added = switch (instruction.getOpcode()) {
+            case ADD -> operands.get(0) == phi && operands.get(1) instanceof Constant constant ? Integer.valueOf(constant.intValue())
+                    : operands.get(1) == phi && operands.get(0) instanceof Constant constant ? Integer.valueOf(constant.intValue()) : null;
+            case SUB -> operands.get(0) == phi && operands.get(1) instanceof Constant constant && constant.intValue() != Integer.MIN_VALUE ? Integer.valueOf(-constant.intValue()) : null;
+            default -> null;
+        };
+
+        return added != null && added >= Short.MIN_VALUE && added <= Short.MAX_VALUE ? added : null;
+    }
+
+    private Label label(BasicBlock block) {
+        return labels.get(block);
+    }
+
+    private void emit(BasicBlock block, BasicBlock next) {
+        method.visitLabel(label(block));
+
+        for (Instruction instruction : block.getInstructions()) {
+            if (instruction.isPhi()) continue;
+
+            switch (instruction.getOpcode()) {
+                case JUMP -> {
+                    BasicBlock target = instruction.getTargets().getFirst();
+
+                    copyPhis(block, target);
+
+                    if (target != next) method.visitJumpInsn(Opcodes.GOTO, label(target));
+                }
+                case BRANCH -> {
+                    Value condition = instruction.getOperand(0);
+                    BasicBlock whenTrue = instruction.getTargets().get(0);
+                    BasicBlock whenFalse = instruction.getTargets().get(1);
+                    Label trueLabel = edge(block, whenTrue);
+                    Label falseLabel = edge(block, whenFalse);
+
+                    if (trueLabel == label(next)) {
+                        // falls through to the true block
+                        jump(condition, true, falseLabel);
+                    } else {
+                        jump(condition, false, trueLabel);
+
+                        if (falseLabel != label(next)) method.visitJumpInsn(Opcodes.GOTO, falseLabel);
+                    }
+                }
+                case RETURN -> {
+                    if (instruction.getOperands().isEmpty()) {
+                        method.visitInsn(Opcodes.RETURN);
+                    } else {
+                        load(instruction.getOperand(0));
+                        method.visitInsn(switch (instruction.getOperand(0).getType().getName()) {
+                            case INTEGER, BOOLEAN -> Opcodes.IRETURN;
+                            case FLOAT -> Opcodes.FRETURN;
+                            default -> Opcodes.ARETURN;
+                        });
+                    }
+                }
+                default -> emit(instruction);
+            }
+        }
+    }
+
+    // the label the branch jumps to, a block of its own setting the phis of the target when it has some
+    private Label edge(BasicBlock block, BasicBlock target) {
+        if (target.getPhis().isEmpty()) return label(target);
+
+        Label label = new Label();
+
+        edges.add(() -> {
+            method.visitLabel(label);
+            copyPhis(block, target);
+            method.visitJumpInsn(Opcodes.GOTO, label(target));
+        });
+
+        return label;
+    }
+
+    // all the operands are loaded before any phi is stored, as the phis may read each other
+    private void copyPhis(BasicBlock block, BasicBlock target) {
+        int index = target.getPredecessors().indexOf(block);
+        // already in their local
+        List<Instruction> phis = target.getPhis().stream().filter(phi -> increments.get(phi.getOperand(index)) != phi).toList();
+
+        for (Instruction phi : phis) {
+            load(phi.getOperand(index));
+        }
+
+        for (Instruction phi : phis.reversed()) {
+            store(phi);
+        }
+    }
+
+    private void jump(Value condition, boolean negated, Label target) {
+        if (condition instanceof Instruction comparison && fused.contains(comparison)) {
+            // its operands are already on the stack
+            compare(comparison, negated, target);
+            return;
+        }
+
+        load(condition);
+        method.visitJumpInsn(negated ? Opcodes.IFEQ : Opcodes.IFNE, target);
+    }
+
+    // jumps when the comparison holds, or when it doesn't once negated
+    private void compare(Instruction comparison, boolean negated, Label target) {
+        Opcode opcode = comparison.getOpcode();
+        Opcode tested = negated ? complement(opcode) : opcode;
+
+        switch (comparison.getOperand(0).getType().getName()) {
+            case INTEGER, BOOLEAN -> method.visitJumpInsn(switch (tested) {
+                case EQ -> Opcodes.IF_ICMPEQ;
+                case NE -> Opcodes.IF_ICMPNE;
+                case LT -> Opcodes.IF_ICMPLT;
+                case LE -> Opcodes.IF_ICMPLE;
+                case GT -> Opcodes.IF_ICMPGT;
+                default -> Opcodes.IF_ICMPGE;
+            }, target);
+            case FLOAT -> {
+                // NaN makes every comparison but != false
+                method.visitInsn(opcode == Opcode.LT || opcode == Opcode.LE ? Opcodes.FCMPG : Opcodes.FCMPL);
+                method.visitJumpInsn(switch (tested) {
+                    case EQ -> Opcodes.IFEQ;
+                    case NE -> Opcodes.IFNE;
+                    case LT -> Opcodes.IFLT;
+                    case LE -> Opcodes.IFLE;
+                    case GT -> Opcodes.IFGT;
+                    default -> Opcodes.IFGE;
+                }, target);
+            }
+            case STRING -> {
+                method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z", false);
+                method.visitJumpInsn(tested == Opcode.EQ ? Opcodes.IFNE : Opcodes.IFEQ, target);
+            }
+            default -> method.visitJumpInsn(tested == Opcode.EQ ? Opcodes.IF_ACMPEQ : Opcodes.IF_ACMPNE, target);
+        }
+    }
+
+    private static Opcode complement(Opcode opcode) {
+        return switch (opcode) {
+            case EQ -> Opcode.NE;
+            case NE -> Opcode.EQ;
+            case LT -> Opcode.GE;
+            case LE -> Opcode.GT;
+            case GT -> Opcode.LE;
+            case GE -> Opcode.LT;
+            default -> throw new IllegalArgumentException(opcode + " is not a comparison");
+        };
+    }
+
+    private void emit(Instruction instruction) {
+        List<Value> operands = instruction.getOperands();
+        VarType type = instruction.getType();
+
+        if (increments.containsKey(instruction)) {
+            method.visitIincInsn(slot(instruction), constantAdded(instruction, increments.get(instruction)));
+            return;
+        }
+
+        // the operands already on the stack come first
+        int onStack = 0;
+
+        while (onStack < operands.size() && operands.get(onStack) instanceof Instruction operand && stacked.contains(operand)) {
+            onStack++;
+        }
+
+        if (instruction.getOpcode() != Opcode.NEW_RECORD && instruction.getOpcode() != Opcode.WRITE) {
+            for (Value operand : operands.subList(onStack, operands.size())) {
+                load(operand);
+            }
+        }
+
+        switch (instruction.getOpcode()) {
+            case ADD, SUB, MUL, DIV, REM, NEG, SHL, SHR, AND -> method.visitInsn(arithmetic(instruction.getOpcode(), type));
+            case EQ, NE, LT, LE, GT, GE -> {
+                if (fused.contains(instruction)) return;
+
+                Label trueLabel = new Label();
+                Label endLabel = new Label();
+
+                compare(instruction, false, trueLabel);
+                method.visitInsn(Opcodes.ICONST_0);
+                method.visitJumpInsn(Opcodes.GOTO, endLabel);
+                method.visitLabel(trueLabel);
+                method.visitInsn(Opcodes.ICONST_1);
+                method.visitLabel(endLabel);
+            }
+            case NOT -> {
+                method.visitInsn(Opcodes.ICONST_1);
+                method.visitInsn(Opcodes.IXOR);
+            }
+            case CONCAT -> method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;", false);
+            case LENGTH -> {
+                if (operands.getFirst().getType().equals(PrimitiveType.STRING)) {
+                    method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "length", "()I", false);
+                } else {
+                    method.visitInsn(Opcodes.ARRAYLENGTH);
+                }
+            }
+            case CHR -> {
+                method.visitInsn(Opcodes.I2C);
+                method.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Character", "toString", "(C)Ljava/lang/String;", false);
+            }
+            case FLOOR -> {
+                method.visitInsn(Opcodes.F2D);
+                method.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Math", "floor", "(D)D", false);
+                method.visitInsn(Opcodes.D2I);
+            }
+            case NEW_ARRAY -> {
+                VarType element = ((ArrayType) type).getElementType();
+
+                switch (element.getName()) {
+                    case INTEGER -> method.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_INT);
+                    case FLOAT -> method.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_FLOAT);
+                    case BOOLEAN -> method.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_BOOLEAN);
+                    case STRING -> method.visitTypeInsn(Opcodes.ANEWARRAY, "java/lang/String");
+                    case RECORD -> method.visitTypeInsn(Opcodes.ANEWARRAY, ((RecordType) element).getRecordName());
+                    default -> throw new GeneratorException("Illegal type when creating an array. Nested arrays are not supported");
+                }
+            }
+            case ARRAY_LOAD -> method.visitInsn(switch (type.getName()) {
+                case INTEGER -> Opcodes.IALOAD;
+                case FLOAT -> Opcodes.FALOAD;
+                case BOOLEAN -> Opcodes.BALOAD;
+                default -> Opcodes.AALOAD;
+            });
+            case ARRAY_STORE -> method.visitInsn(switch (operands.get(2).getType().getName()) {
+                case INTEGER -> Opcodes.IASTORE;
+                case FLOAT -> Opcodes.FASTORE;
+                case BOOLEAN -> Opcodes.BASTORE;
+                default -> Opcodes.AASTORE;
+            });
+            case NEW_RECORD -> {
+                RecordType record = (RecordType) type;
+                String owner = record.getRecordName();
+                List<String> fields = record.getFieldNames();
+
+                method.visitTypeInsn(Opcodes.NEW, owner);
+                method.visitInsn(Opcodes.DUP);
+                method.visitMethodInsn(Opcodes.INVOKESPECIAL, owner, "<init>", "()V", false);
+
+                for (int i = 0; i < fields.size(); i++) {
+                    method.visitInsn(Opcodes.DUP);
+                    load(operands.get(i));
+                    method.visitFieldInsn(Opcodes.PUTFIELD, owner, fields.get(i), Types.descriptor(record.getFieldValue(fields.get(i))));
+                }
+            }
+            case GET_FIELD, PUT_FIELD -> {
+                RecordType record = (RecordType) operands.getFirst().getType();
+                String descriptor = Types.descriptor(record.getFieldValue(instruction.getName()));
+                int opcode = instruction.getOpcode() == Opcode.GET_FIELD ? Opcodes.GETFIELD : Opcodes.PUTFIELD;
+
+                method.visitFieldInsn(opcode, record.getRecordName(), instruction.getName(), descriptor);
+            }
+            case GET_GLOBAL, PUT_GLOBAL -> {
+                String descriptor = Types.descriptor(program.getGlobal(instruction.getName()).type());
+                int opcode = instruction.getOpcode() == Opcode.GET_GLOBAL ? Opcodes.GETSTATIC : Opcodes.PUTSTATIC;
+
+                method.visitFieldInsn(opcode, className, instruction.getName(), descriptor);
+            }
+            case CALL -> {
+                Function callee = program.getFunction(instruction.getName());
+                String descriptor;
+
+                if (callee != null) {
+                    descriptor = descriptor(callee);
+                } else {
+                    // writeInt and writeFloat
+                    StringBuilder built = new StringBuilder("(");
+                    operands.forEach(operand -> built.append(Types.descriptor(operand.getType())));
+                    descriptor = built.append(')').append(Types.descriptor(type)).toString();
+                }
+
+                method.visitMethodInsn(Opcodes.INVOKESTATIC, className, instruction.getName(), descriptor, false);
+            }
+            case READ -> method.visitMethodInsn(Opcodes.INVOKESTATIC, className, instruction.getName(), "()" + Types.descriptor(type), false);
+            case WRITE -> {
+                Value value = operands.getFirst();
+
+                method.visitFieldInsn(Opcodes.GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+
+                if (onStack > 0) {
+                    method.visitInsn(Opcodes.SWAP);
+                } else {
+                    load(value);
+                }
+
+                String descriptor = switch (value.getType().getName()) {
+                    case INTEGER -> "(I)V";
+                    case FLOAT -> "(F)V";
+                    case BOOLEAN -> "(Z)V";
+                    case STRING -> "(Ljava/lang/String;)V";
+                    default -> "(Ljava/lang/Object;)V";
+                };
+
+                method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/io/PrintStream", instruction.getName().equals("writeln") ? "println" : "print", descriptor, false);
+            }
+            default -> throw new GeneratorException("Unexpected instruction " + IRPrinter.print(instruction));
+        }
+
+        if (instruction.isVoid() || stacked.contains(instruction)) return;
+
+        if (slots.containsKey(instruction)) {
+            store(instruction);
+        } else {
+            // computed for what it may throw, its value unused
+            method.visitInsn(Opcodes.POP);
+        }
+    }
+
+    private static int arithmetic(Opcode opcode, VarType type) {
+        boolean isFloat = type.getName() == TypeName.FLOAT;
+
+        return switch (opcode) {
+            case ADD -> isFloat ? Opcodes.FADD : Opcodes.IADD;
+            case SUB -> isFloat ? Opcodes.FSUB : Opcodes.ISUB;
+            case MUL -> isFloat ? Opcodes.FMUL : Opcodes.IMUL;
+            case DIV -> isFloat ? Opcodes.FDIV : Opcodes.IDIV;
+            case REM -> isFloat ? Opcodes.FREM : Opcodes.IREM;
+            case SHL -> Opcodes.ISHL;
+            case SHR -> Opcodes.ISHR;
+            case AND -> Opcodes.IAND;
+            default -> isFloat ? Opcodes.FNEG : Opcodes.INEG;
+        };
+    }
+
+    // a value already on the stack is left there
+    private void load(Value value) {
+        switch (value) {
+            case Constant constant -> push(constant);
+            case Instruction instruction when stacked.contains(instruction) -> {}
+            default -> method.visitVarInsn(switch (value.getType().getName()) {
+                case INTEGER, BOOLEAN -> Opcodes.ILOAD;
+                case FLOAT -> Opcodes.FLOAD;
+                default -> Opcodes.ALOAD;
+            }, slot(value));
+        }
+    }
+
+    private void store(Instruction instruction) {
+        method.visitVarInsn(switch (instruction.getType().getName()) {
+            case INTEGER, BOOLEAN -> Opcodes.ISTORE;
+            case FLOAT -> Opcodes.FSTORE;
+            default -> Opcodes.ASTORE;
+        }, slot(instruction));
+    }
+
+    private int slot(Value value) {
+        Integer slot = slots.get(value);
+
+        if (slot == null) throw new GeneratorException("No local for " + value + " in " + function);
+
+        return slot;
+    }
+
+    private void push(Constant constant) {
+        if (constant.isNull()) {
+            method.visitInsn(Opcodes.ACONST_NULL);
+            return;
+        }
+
+        switch (constant.getType().getName()) {
+            case INTEGER -> {
+                int value = constant.intValue();
+
+                if (value >= -1 && value <= 5) {
+                    method.visitInsn(Opcodes.ICONST_0 + value);
+                } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                    method.visitIntInsn(Opcodes.BIPUSH, value);
+                } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                    method.visitIntInsn(Opcodes.SIPUSH, value);
+                } else {
+                    method.visitLdcInsn(value);
+                }
+            }
+            case FLOAT -> {
+                int bits = Float.floatToRawIntBits(constant.floatValue());
+
+                if (bits == Float.floatToRawIntBits(0f)) {
+                    method.visitInsn(Opcodes.FCONST_0);
+                } else if (bits == Float.floatToRawIntBits(1f)) {
+                    method.visitInsn(Opcodes.FCONST_1);
+                } else if (bits == Float.floatToRawIntBits(2f)) {
+                    method.visitInsn(Opcodes.FCONST_2);
+                } else {
+                    method.visitLdcInsn(constant.floatValue());
+                }
+            }
+            case BOOLEAN -> method.visitInsn(constant.boolValue() ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+            default -> method.visitLdcInsn(constant.stringValue());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package compiler;
+
+import org.objectweb.asm.*;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// compiles to class files in memory and runs them in this JVM
+// every run gets its own class loader, where the generated code reads System.in and System.out
+// from the fields of a class of that loader, so that runs next to each other don't share their streams
+public class InMemoryCompiler {
+    private static final String STREAMS_CLASS = "$Streams";
+
+    private InMemoryCompiler() {}
+
+    public static Map<String, byte[]> compile(String content, String className, int parallelism) {
+        return Compiler.generate(content, className, null, parallelism);
+    }
+
+    public static Map<String, byte[]> compile(String content, String className, CompilerOptions options) {
+        return Compiler.generate(content, className, null, options, new PhaseProfile());
+    }
+
+    // the output of the program given its input
+    public static String run(String content, String input) {
+        CompilerOptions options = new CompilerOptions();
+        options.setParallelism(1);
+
+        return run(content, input, options);
+    }
+
+    public static String run(String content, String input, CompilerOptions options) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8)) {
+            run(compile(content, "test", options), "test", new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+        }
+
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    // what the program throws is rethrown as is
+    public static void run(Map<String, byte[]> classes, String className, InputStream in, PrintStream out) {
+        try {
+            load(classes, className, in, out).getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            if (e.getCause() instanceof Error error) throw error;
+
+            throw new RuntimeException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new InternalError("Failed to run " + className, e);
+        } finally {
+            out.flush();
+        }
+    }
+
+    // the main class of the program, in a class loader of its own, to run it many times with the same streams
+    public static Class<?> load(Map<String, byte[]> classes, String className, InputStream in, PrintStream out) throws ReflectiveOperationException {
+        ProgramClassLoader loader = new ProgramClassLoader(classes);
+
+        Class<?> streams = loader.loadClass(STREAMS_CLASS);
+        streams.getField("in").set(null, in);
+        streams.getField("out").set(null, out);
+
+        return loader.loadClass(className);
+    }
+
+    private static class ProgramClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        ProgramClassLoader(Map<String, byte[]> classes) {
+            super(InMemoryCompiler.class.getClassLoader());
+            this.classes = classes;
+        }
+
+        // the program classes first, a test.class on the class path must not shadow them
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(STREAMS_CLASS) && !classes.containsKey(name)) {
+                return super.loadClass(name, resolve);
+            }
+
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+
+                return loaded != null ? loaded : findClass(name);
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytecode = name.equals(STREAMS_CLASS) ? streamsClass() : classes.get(name);
+
+            if (bytecode == null) throw new ClassNotFoundException(name);
+
+            if (!name.equals(STREAMS_CLASS)) {
+                bytecode = redirectStreams(bytecode);
+            }
+
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+
+    private static byte[] streamsClass() {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, STREAMS_CLASS, null, "java/lang/Object", null);
+        cw.visitField(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, "in", "Ljava/io/InputStream;", null, null).visitEnd();
+        cw.visitField(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, "out", "Ljava/io/PrintStream;", null, null).visitEnd();
+        cw.visitEnd();
+
+        return cw.toByteArray();
+    }
+
+    private static byte[] redirectStreams(byte[] bytecode) {
+        ClassReader reader = new ClassReader(bytecode);
+        ClassWriter writer = new ClassWriter(reader, 0);
+
+        reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM9, super.visitMethod(access, name, descriptor, signature, exceptions)) {
+                    @Override
+                    public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+                        boolean isStream = owner.equals("java/lang/System") && (name.equals("in") || name.equals("out"));
+
+                        super.visitFieldInsn(opcode, isStream ? STREAMS_CLASS : owner, name, descriptor);
+                    }
+                };
+            }
+        }, 0);
+
+        return writer.toByteArray();
+    }
+}
@@ -0,0 +1,316 @@
+package compiler;
+
+import compiler.Components.Blocks.*;
+import compiler.Components.Symbol;
+import compiler.Components.Token;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+// recompiles one target again and again, rebuilding only the functions that changed
+// the source is split into top-level chunks, each function being a chunk of its own, and only new chunks are parsed
+// a function is fingerprinted by its text and the signatures of the top-level names it mentions,
+// when the fingerprint is unchanged its analysis is skipped and its bytecode is reused
+public class IncrementalCompiler {
+    private record Chunk(String text, int line, boolean isFunction) {}
+
+    private record ParsedChunk(int line, List<Statement> statements, Set<String> references) {}
+
+    private record CompiledFunction(ParsedChunk parsed, String fingerprint, MethodNode node) {}
+
+    // only the chunks of the last successful compilation are kept
+    private Map<String, ParsedChunk> parsedChunks = new HashMap<>(); // by line and text
+    private Map<String, CompiledFunction> compiledFunctions = new HashMap<>(); // by text
+
+    private int reusedCount;
+    private int rebuiltCount;
+
+    // returns true when the classes came from the cache
+    public synchronized boolean compile(String content, File targetFile, CompilerOptions options) {
+        String className = targetFile.getName().split("\\.")[0];
+
+        CompileCache cache = options.getCache();
+        String key = cache == null ? null : cache.key(content, className, options.fingerprint());
+
+        if (cache != null && Compiler.restore(cache, key, targetFile)) {
+            return true;
+        }
+
+        // the functions of the IR are only lowered from the whole program
+        if (options.isUsingIR()) {
+            return Compiler.compile(content, targetFile, options);
+        }
+
+        List<Chunk> chunks = split(content);
+        List<ParsedChunk> parsed = new ArrayList<>();
+        List<CompiledFunction> previous = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+
+        try {
+            for (Chunk chunk : chunks) {
+                CompiledFunction compiled = chunk.isFunction() && seen.add(chunk.text()) ? compiledFunctions.get(chunk.text()) : null;
+                ParsedChunk parsedChunk = compiled != null ? compiled.parsed() : parsedChunks.get(chunk.line() + ":" + chunk.text());
+
+                previous.add(compiled);
+                parsed.add(parsedChunk != null && (compiled != null || !chunk.isFunction()) ? parsedChunk : parse(chunk));
+            }
+        } catch (RuntimeException e) {
+            // reported the same way as by a full compilation
+            return Compiler.compile(content, targetFile, options);
+        }
+
+        Set<String> globals = new HashSet<>();
+        Map<String, String> signatures = signatures(parsed, globals);
+
+        List<Statement> statements = new ArrayList<>();
+        List<String> fingerprints = new ArrayList<>();
+        Map<Method, MethodNode> reused = new HashMap<>();
+        int globalsBefore = 0;
+
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            ParsedChunk parsedChunk = parsed.get(i);
+
+            if (!chunk.isFunction()) {
+                statements.addAll(parsedChunk.statements());
+                globalsBefore += parsedChunk.statements().size();
+                fingerprints.add(null);
+                continue;
+            }
+
+            String fingerprint = fingerprint(className, chunk, parsedChunk.references(), signatures, globals, globalsBefore);
+            CompiledFunction compiled = previous.get(i);
+
+            fingerprints.add(fingerprint);
+
+            if (compiled != null && compiled.fingerprint().equals(fingerprint)) {
+                reused.put((Method) parsedChunk.statements().getFirst(), compiled.node());
+            } else if (parsedChunk.line() != chunk.line()) {
+                // checked again, so parsed again for up to date line numbers
+                parsedChunk = parse(chunk);
+                parsed.set(i, parsedChunk);
+            }
+
+            statements.addAll(parsedChunk.statements());
+        }
+
+        Block ast = new Block(statements);
+
+        Analyzer analyzer = Analyzer.newInstance();
+        analyzer.setParallelism(options.getParallelism());
+        analyzer.setCheckedMethods(reused.keySet());
+
+        analyzer.analyze(ast);
+
+        Generator generator = Compiler.writeTo(targetFile, output -> {
+            Generator current = new Generator(className, output, analyzer);
+            current.setParallelism(options.getParallelism());
+            current.setReusedMethods(reused);
+            current.generate(ast);
+
+            return current;
+        });
+
+        if (cache != null) {
+            cache.store(key, generator.getClasses());
+        }
+
+        // only a successful compilation becomes the base of the next one
+        Map<String, ParsedChunk> nextParsedChunks = new HashMap<>();
+        Map<String, CompiledFunction> nextCompiledFunctions = new HashMap<>();
+
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            List<Statement> chunkStatements = parsed.get(i).statements();
+
+            if (!chunk.isFunction()) {
+                nextParsedChunks.put(chunk.line() + ":" + chunk.text(), parsed.get(i));
+            } else if (chunkStatements.size() == 1 && chunkStatements.getFirst() instanceof Method method) {
+                nextCompiledFunctions.putIfAbsent(chunk.text(), new CompiledFunction(parsed.get(i), fingerprints.get(i), generator.getMethods().get(method)));
+            }
+        }
+
+        parsedChunks = nextParsedChunks;
+        compiledFunctions = nextCompiledFunctions;
+        reusedCount = reused.size();
+        rebuiltCount = generator.getMethods().size() - reused.size();
+
+        return false;
+    }
+
+    // functions taken as they were in the last compilation
+    public synchronized int getReusedCount() {
+        return reusedCount;
+    }
+
+    // functions analyzed and generated again in the last compilation
+    public synchronized int getRebuiltCount() {
+        return rebuiltCount;
+    }
+
+    private static ParsedChunk parse(Chunk chunk) {
+        Set<String> references = new HashSet<>();
+
+        Lexer lexer = new Lexer(new StringReader(chunk.text()), chunk.line()) {
+            @Override
+            public Symbol getNextSymbol() {
+                Symbol symbol = super.getNextSymbol();
+
+                if (symbol.getToken() == Token.IDENTIFIER) {
+                    references.add(symbol.getValue());
+                }
+
+                return symbol;
+            }
+        };
+
+        return new ParsedChunk(chunk.line(), new Parser(lexer).getAST().getStatements(), references);
+    }
+
+    // the same statements as the parser reads from the whole file, functions split at their closing brace
+    private static List<Chunk> split(String content) {
+        List<Chunk> chunks = new ArrayList<>();
+
+        int start = 0;
+        int startLine = 1;
+        int line = 1;
+        int depth = 0;
+        boolean inFunction = false;
+
+        for (int i = 0; i < content.length(); i++) {
+            char character = content.charAt(i);
+
+            if (character == '\n') {
+                line++;
+            } else if (character == '$') {
+                // comment, up to the end of the line
+                while (i + 1 < content.length() && content.charAt(i + 1) != '\n') i++;
+            } else if (character == '"') {
+                while (i + 1 < content.length() && content.charAt(i + 1) != '"') {
+                    if (content.charAt(++i) == '\n') line++;
+                }
+                i++;
+            } else if (character == '{') {
+                depth++;
+            } else if (character == '}') {
+                depth--;
+
+                if (inFunction && depth == 0) {
+                    chunks.add(new Chunk(content.substring(start, i + 1), startLine, true));
+                    start = i + 1;
+                    startLine = line;
+                    inFunction = false;
+                }
+            } else if (depth == 0 && !inFunction && isKeyword(content, i, "fun")) {
+                addChunk(chunks, content.substring(start, i), startLine, false);
+                start = i;
+                startLine = line;
+                inFunction = true;
+            }
+        }
+
+        addChunk(chunks, content.substring(start), startLine, inFunction);
+
+        return chunks;
+    }
+
+    private static void addChunk(List<Chunk> chunks, String text, int line, boolean isFunction) {
+        if (!text.isBlank()) {
+            chunks.add(new Chunk(text, line, isFunction));
+        }
+    }
+
+    private static boolean isKeyword(String content, int index, String keyword) {
+        int end = index + keyword.length();
+
+        return content.startsWith(keyword, index)
+                && (index == 0 || !isIdentifierPart(content.charAt(index - 1)))
+                && (end == content.length() || !isIdentifierPart(content.charAt(end)));
+    }
+
+    private static boolean isIdentifierPart(char character) {
+        return Character.isLetterOrDigit(character) || character == '_';
+    }
+
+    // what the functions can see of each top-level name, the global variables are collected on the side
+    private static Map<String, String> signatures(List<ParsedChunk> parsed, Set<String> globals) {
+        Map<String, String> signatures = new HashMap<>();
+        int position = 0;
+
+        for (ParsedChunk chunk : parsed) {
+            for (Statement statement : chunk.statements()) {
+                switch (statement) {
+                    case Method method -> {
+                        StringBuilder signature = new StringBuilder("fun(");
+                        for (Param param : method.getParameters()) {
+                            signature.append(param.getType().getIdentifier()).append(',');
+                        }
+                        signature.append(')').append(method.getReturnType() == null ? "void" : method.getReturnType().getIdentifier());
+
+                        addSignature(signatures, method.getName(), signature.toString());
+                    }
+                    case RecordDefinition record -> {
+                        StringBuilder signature = new StringBuilder("rec{");
+                        for (RecordField field : record.getFields()) {
+                            signature.append(field.getName()).append(' ').append(field.getType().getIdentifier()).append(';');
+                        }
+                        signature.append('}');
+
+                        addSignature(signatures, record.getName(), signature.toString());
+                    }
+                    case VariableDeclaration declaration -> {
+                        // the position decides the slot in main
+                        addSignature(signatures, declaration.getIdentifier(), "var " + declaration.getType().getIdentifier() + (declaration.isFinal() ? " final" : "") + " #" + position);
+                        globals.add(declaration.getIdentifier());
+                    }
+                    default -> {}
+                }
+
+                if (!(statement instanceof Method)) position++;
+            }
+        }
+
+        return signatures;
+    }
+
+    private static void addSignature(Map<String, String> signatures, String name, String signature) {
+        signatures.merge(name, signature, (first, second) -> first + "|" + second);
+    }
+
+    private static String fingerprint(String className, Chunk chunk, Set<String> references, Map<String, String> signatures, Set<String> globals, int globalsBefore) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            digest.update(className.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(chunk.text().getBytes(StandardCharsets.UTF_8));
+
+            boolean usesGlobals = false;
+
+            for (String name : new TreeSet<>(references)) {
+                String signature = signatures.get(name);
+
+                if (signature != null) {
+                    digest.update((byte) 0);
+                    digest.update((name + "=" + signature).getBytes(StandardCharsets.UTF_8));
+                    usesGlobals |= globals.contains(name);
+                }
+            }
+
+            // the globals visible at the declaration
+            if (usesGlobals) {
+                digest.update((byte) 0);
+                digest.update(("globals " + globalsBefore).getBytes(StandardCharsets.UTF_8));
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalError("SHA-256 is not available", e);
+        }
+    }
+}
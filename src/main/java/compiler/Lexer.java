@@ -56,7 +56,13 @@ public class Lexer {
     private static final List<Regex> expressions = new ArrayList<>(patternsSymbol.keySet());
 
     public Lexer(Reader source) {
+        this(source, 1);
+    }
+
+    // for a part of a file, the line numbers continue from where it starts
+    public Lexer(Reader source, int firstLine) {
         input = new PushbackReader(source, 100);
+        currentLine = firstLine;
 
         readChar();
     }
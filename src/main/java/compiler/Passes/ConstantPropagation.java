@@ -0,0 +1,345 @@
+package compiler.Passes;
+
+import compiler.Components.IR.*;
+import compiler.Components.Semantic.TypeName;
+
+import java.util.*;
+
+// sparse conditional constant propagation: the values known at compile time replace the instructions computing them,
+// the branches on them keep the way taken, and the globals stored once with a constant are propagated to the program
+public class ConstantPropagation implements Pass {
+    // the longest string built at compile time, the constants of a class file are limited
+    private static final int MAX_STRING = 4096;
+
+    // a value known not to be a single constant, unknown ones aren't in the map
+    private static final Object VARYING = new Object();
+
+    private record Edge(BasicBlock from, BasicBlock to) {}
+
+    private long folded;
+    private long branches;
+    private long globals;
+
+    @Override
+    public String getName() {
+        return "const-prop";
+    }
+
+    @Override
+    public int run(Program program) {
+        Set<Function> changed = new HashSet<>();
+        boolean propagating = true;
+
+        while (propagating) {
+            for (Function function : program.getAllFunctions()) {
+                if (run(function)) changed.add(function);
+            }
+
+            propagating = false;
+
+            for (Map.Entry<Instruction, Constant> read : propagateGlobals(program).entrySet()) {
+                changed.add(read.getKey().getBlock().getFunction());
+
+                read.getKey().replaceAllUsesWith(read.getValue());
+                read.getKey().remove();
+
+                globals++;
+                propagating = true;
+            }
+        }
+
+        return changed.size();
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        return Map.of("folded", folded, "branches", branches, "globals", globals);
+    }
+
+    // the reads of a global stored once with a constant that surely happen after the store, with the constant
+    private Map<Instruction, Constant> propagateGlobals(Program program) {
+        Map<String, List<Instruction>> stores = new HashMap<>();
+        Map<String, List<Instruction>> reads = new HashMap<>();
+        List<Instruction> calls = new ArrayList<>();
+
+        for (Function function : program.getAllFunctions()) {
+            for (BasicBlock block : function.getBlocks()) {
+                for (Instruction instruction : block.getInstructions()) {
+                    switch (instruction.getOpcode()) {
+                        case PUT_GLOBAL -> stores.computeIfAbsent(instruction.getName(), name -> new ArrayList<>()).add(instruction);
+                        case GET_GLOBAL -> reads.computeIfAbsent(instruction.getName(), name -> new ArrayList<>()).add(instruction);
+                        case CALL -> {
+                            if (function == program.getEntry() && program.getFunction(instruction.getName()) != null) {
+                                calls.add(instruction);
+                            }
+                        }
+                        default -> {}
+                    }
+                }
+            }
+        }
+
+        Dominators dominators = new Dominators(program.getEntry());
+        Map<Instruction, Constant> propagated = new LinkedHashMap<>();
+
+        for (Map.Entry<String, List<Instruction>> store : stores.entrySet()) {
+            Instruction put = store.getValue().getFirst();
+
+            if (store.getValue().size() != 1 || put.getBlock().getFunction() != program.getEntry()) continue;
+            if (!(put.getOperand(0) instanceof Constant constant)) continue;
+
+            // the functions may only read it once nothing can call them before the store
+            boolean stored = calls.stream().allMatch(call -> runsAfter(put, call, dominators));
+
+            for (Instruction get : reads.getOrDefault(store.getKey(), List.of())) {
+                boolean inEntry = get.getBlock().getFunction() == program.getEntry();
+
+                if (inEntry ? runsAfter(put, get, dominators) : stored) {
+                    propagated.put(get, constant);
+                }
+            }
+        }
+
+        return propagated;
+    }
+
+    private static boolean runsAfter(Instruction first, Instruction then, Dominators dominators) {
+        BasicBlock block = first.getBlock();
+
+        if (block == then.getBlock()) {
+            return block.getInstructions().indexOf(first) < block.getInstructions().indexOf(then);
+        }
+
+        return dominators.dominates(block, then.getBlock());
+    }
+
+    private boolean run(Function function) {
+        Map<Value, Object> values = new HashMap<>();
+        Set<Edge> edges = new HashSet<>();
+        Set<BasicBlock> executable = new HashSet<>();
+        Deque<Edge> flow = new ArrayDeque<>(List.of(new Edge(null, function.getEntry())));
+        Deque<Instruction> uses = new ArrayDeque<>();
+
+        while (!flow.isEmpty() || !uses.isEmpty()) {
+            if (!flow.isEmpty()) {
+                Edge edge = flow.pop();
+
+                if (!edges.add(edge)) continue;
+
+                BasicBlock block = edge.to();
+
+                for (Instruction phi : block.getPhis()) {
+                    visit(phi, values, edges, flow, uses);
+                }
+
+                if (executable.add(block)) {
+                    for (Instruction instruction : block.getInstructions()) {
+                        if (!instruction.isPhi()) visit(instruction, values, edges, flow, uses);
+                    }
+                }
+            } else {
+                Instruction instruction = uses.pop();
+
+                if (executable.contains(instruction.getBlock())) visit(instruction, values, edges, flow, uses);
+            }
+        }
+
+        boolean changed = false;
+
+        for (BasicBlock block : function.getBlocks()) {
+            if (!executable.contains(block)) continue;
+
+            for (Instruction instruction : new ArrayList<>(block.getInstructions())) {
+                if (values.get(instruction) instanceof Constant constant) {
+                    instruction.replaceAllUsesWith(constant);
+                    instruction.remove();
+                    folded++;
+                    changed = true;
+                }
+            }
+
+            Instruction terminator = block.getTerminator();
+
+            if (terminator.getOpcode() == Opcode.BRANCH) {
+                List<BasicBlock> taken = terminator.getTargets().stream().filter(target -> edges.contains(new Edge(block, target))).toList();
+
+                if (taken.size() == 1) {
+                    block.foldBranch(taken.getFirst());
+                    branches++;
+                    changed = true;
+                }
+            }
+        }
+
+        return function.removeUnreachableBlocks() | changed;
+    }
+
+    private void visit(Instruction instruction, Map<Value, Object> values, Set<Edge> edges, Deque<Edge> flow, Deque<Instruction> uses) {
+        BasicBlock block = instruction.getBlock();
+
+        switch (instruction.getOpcode()) {
+            case JUMP -> flow.add(new Edge(block, instruction.getTargets().getFirst()));
+            case BRANCH -> {
+                Object condition = valueOf(instruction.getOperand(0), values);
+
+                if (condition instanceof Constant constant) {
+                    flow.add(new Edge(block, instruction.getTargets().get(constant.boolValue() ? 0 : 1)));
+                } else if (condition == VARYING) {
+                    instruction.getTargets().forEach(target -> flow.add(new Edge(block, target)));
+                }
+            }
+            default -> {
+                if (instruction.isVoid()) return;
+
+                Object value = evaluate(instruction, values, edges);
+                Object previous = values.get(instruction);
+                Object next = meet(previous, value);
+
+                if (next == previous) return;
+
+                values.put(instruction, next);
+                uses.addAll(instruction.getUsers());
+            }
+        }
+    }
+
+    // null while it is unknown
+    private static Object evaluate(Instruction instruction, Map<Value, Object> values, Set<Edge> edges) {
+        if (instruction.isPhi()) {
+            Object value = null;
+            List<BasicBlock> predecessors = instruction.getBlock().getPredecessors();
+
+            for (int i = 0; i < predecessors.size(); i++) {
+                if (edges.contains(new Edge(predecessors.get(i), instruction.getBlock()))) {
+                    value = meet(value, valueOf(instruction.getOperand(i), values));
+                }
+            }
+
+            return value;
+        }
+
+        switch (instruction.getOpcode()) {
+            case ADD, SUB, MUL, DIV, REM, NEG, SHL, SHR, AND, EQ, NE, LT, LE, GT, GE, NOT, CONCAT, CHR, FLOOR -> {}
+            case LENGTH -> {
+                // the length of an array created here is its size
+                if (instruction.getOperand(0) instanceof Instruction array && array.getOpcode() == Opcode.NEW_ARRAY) {
+                    return valueOf(array.getOperand(0), values);
+                }
+
+                if (instruction.getOperand(0).getType().getName() != TypeName.STRING) return VARYING;
+            }
+            default -> {
+                return VARYING;
+            }
+        }
+
+        List<Constant> operands = new ArrayList<>();
+
+        for (Value operand : instruction.getOperands()) {
+            Object value = valueOf(operand, values);
+
+            if (value == VARYING) return VARYING;
+            if (value == null) return null;
+
+            operands.add((Constant) value);
+        }
+
+        Constant constant = fold(instruction.getOpcode(), operands);
+
+        return constant == null ? VARYING : constant;
+    }
+
+    private static Object valueOf(Value value, Map<Value, Object> values) {
+        return switch (value) {
+            case Constant constant -> constant;
+            case Instruction instruction -> values.get(instruction);
+            default -> VARYING;
+        };
+    }
+
+    private static Object meet(Object value, Object other) {
+        if (value == null) return other;
+        if (other == null || value == VARYING) return value;
+        if (other == VARYING) return other;
+
+        return ((Constant) value).sameAs((Constant) other) ? value : VARYING;
+    }
+
+    // the result of an instruction on constants, null when it has to be left to the run, like a division by zero
+    static Constant fold(Opcode opcode, List<Constant> operands) {
+        Constant left = operands.getFirst();
+        Constant right = operands.size() > 1 ? operands.get(1) : null;
+        TypeName type = left.getType().getName();
+
+        return switch (opcode) {
+            case ADD, SUB, MUL, DIV, REM -> switch (type) {
+                case INTEGER -> fold(opcode, left.intValue(), right.intValue());
+                case FLOAT -> Constant.of(fold(opcode, left.floatValue(), right.floatValue()));
+                default -> null;
+            };
+            case SHL -> Constant.of(left.intValue() << right.intValue());
+            case SHR -> Constant.of(left.intValue() >> right.intValue());
+            case AND -> Constant.of(left.intValue() & right.intValue());
+            case NEG -> type == TypeName.FLOAT ? Constant.of(-left.floatValue()) : Constant.of(-left.intValue());
+            case EQ, NE -> Constant.of(equal(left, right) == (opcode == Opcode.EQ));
+            case LT, LE, GT, GE -> switch (type) {
+                case INTEGER -> Constant.of(compare(opcode, Integer.compare(left.intValue(), right.intValue())));
+                case FLOAT -> Constant.of(compare(opcode, left.floatValue(), right.floatValue()));
+                default -> null;
+            };
+            case NOT -> Constant.of(!left.boolValue());
+            case CONCAT -> left.stringValue().length() + right.stringValue().length() > MAX_STRING ? null : Constant.of(left.stringValue().concat(right.stringValue()));
+            case LENGTH -> Constant.of(left.stringValue().length());
+            case CHR -> Constant.of(Character.toString((char) left.intValue()));
+            case FLOOR -> Constant.of((int) Math.floor(left.floatValue()));
+            default -> null;
+        };
+    }
+
+    private static Constant fold(Opcode opcode, int left, int right) {
+        if ((opcode == Opcode.DIV || opcode == Opcode.REM) && right == 0) return null;
+
+        return Constant.of(switch (opcode) {
+            case ADD -> left + right;
+            case SUB -> left - right;
+            case MUL -> left * right;
+            case DIV -> left / right;
+            default -> left % right;
+        });
+    }
+
+    private static float fold(Opcode opcode, float left, float right) {
+        return switch (opcode) {
+            case ADD -> left + right;
+            case SUB -> left - right;
+            case MUL -> left * right;
+            case DIV -> left / right;
+            default -> left % right;
+        };
+    }
+
+    // as the generated code compares them, NaN equal to nothing and strings by their content
+    private static boolean equal(Constant left, Constant right) {
+        if (left.isNull() || right.isNull()) return left.isNull() && right.isNull();
+
+        return left.getType().getName() == TypeName.FLOAT ? left.floatValue() == right.floatValue() : left.getValue().equals(right.getValue());
+    }
+
+    private static boolean compare(Opcode opcode, int comparison) {
+        return switch (opcode) {
+            case LT -> comparison < 0;
+            case LE -> comparison <= 0;
+            case GT -> comparison > 0;
+            default -> comparison >= 0;
+        };
+    }
+
+    private static boolean compare(Opcode opcode, float left, float right) {
+        return switch (opcode) {
+            case LT -> left < right;
+            case LE -> left <= right;
+            case GT -> left > right;
+            default -> left >= right;
+        };
+    }
+}
@@ -0,0 +1,152 @@
+package compiler.Passes;
+
+import compiler.Components.IR.*;
+import compiler.IRGenerator;
+import org.objectweb.asm.commons.CodeSizeEvaluator;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.*;
+
+// drops the blocks the entry can't reach and the instructions nothing observable depends on,
+// which are kept when they write, read, call, jump or may throw
+public class DeadCodeElimination implements Pass {
+    private long instructions;
+    private long blocks;
+    private long bytes;
+
+    @Override
+    public String getName() {
+        return "dce";
+    }
+
+    @Override
+    public int run(Program program) {
+        Set<String> read = new HashSet<>();
+
+        for (Function function : program.getAllFunctions()) {
+            for (BasicBlock block : function.getBlocks()) {
+                for (Instruction instruction : block.getInstructions()) {
+                    if (instruction.getOpcode() == Opcode.GET_GLOBAL) read.add(instruction.getName());
+                }
+            }
+        }
+
+        int changed = 0;
+
+        for (Function function : program.getAllFunctions()) {
+            if (run(program, function, read)) changed++;
+        }
+
+        return changed;
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        return Map.of("instructions", instructions, "blocks", blocks, "bytes", bytes);
+    }
+
+    private boolean run(Program program, Function function, Set<String> read) {
+        int reachable = function.reversePostOrder().size();
+        Set<Instruction> live = mark(function, read);
+        List<Instruction> dead = new ArrayList<>();
+
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction instruction : block.getInstructions()) {
+                if (!live.contains(instruction)) dead.add(instruction);
+            }
+        }
+
+        if (dead.isEmpty() && reachable == function.getBlocks().size()) return false;
+
+        int size = codeSize(program, function);
+
+        blocks += function.getBlocks().size() - reachable;
+        function.removeUnreachableBlocks();
+
+        for (Instruction instruction : dead) {
+            // gone with its block
+            if (instruction.getBlock() == null) continue;
+
+            instruction.remove();
+            instructions++;
+        }
+
+        bytes += size - codeSize(program, function);
+
+        return true;
+    }
+
+    private Set<Instruction> mark(Function function, Set<String> read) {
+        Set<Instruction> live = new HashSet<>();
+        Deque<Instruction> pending = new ArrayDeque<>();
+        Set<Instruction> unobserved = unobservedAllocations(function);
+
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction instruction : block.getInstructions()) {
+                if (isObservable(instruction, read, unobserved)) pending.add(instruction);
+            }
+        }
+
+        while (!pending.isEmpty()) {
+            Instruction instruction = pending.pop();
+
+            if (!live.add(instruction)) continue;
+
+            for (Value operand : instruction.getOperands()) {
+                if (operand instanceof Instruction definition) pending.add(definition);
+            }
+        }
+
+        return live;
+    }
+
+    private static boolean isObservable(Instruction instruction, Set<String> read, Set<Instruction> unobserved) {
+        List<Value> operands = instruction.getOperands();
+
+        return switch (instruction.getOpcode()) {
+            case CALL, READ, WRITE, JUMP, BRANCH, RETURN -> true;
+            case PUT_GLOBAL -> read.contains(instruction.getName());
+            case PUT_FIELD, ARRAY_STORE -> !unobserved.contains(operands.getFirst());
+            case ARRAY_LOAD -> !inBounds(operands.getFirst(), operands.get(1));
+            default -> Effects.mayThrow(instruction, Effects::isNonNull);
+        };
+    }
+
+    // the records and arrays only created to be stored into, which nothing reads
+    private static Set<Instruction> unobservedAllocations(Function function) {
+        Set<Instruction> unobserved = new HashSet<>();
+
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction instruction : block.getInstructions()) {
+                boolean stored = switch (instruction.getOpcode()) {
+                    case NEW_RECORD -> instruction.getUsers().stream()
+                            .allMatch(user -> user.getOpcode() == Opcode.PUT_FIELD && user.getOperand(0) == instruction && user.getOperand(1) != instruction);
+                    case NEW_ARRAY -> instruction.getUsers().stream()
+                            .allMatch(user -> user.getOpcode() == Opcode.ARRAY_STORE && user.getOperand(2) != instruction && inBounds(instruction, user.getOperand(1)));
+                    default -> false;
+                };
+
+                if (stored) unobserved.add(instruction);
+            }
+        }
+
+        return unobserved;
+    }
+
+    // an index into an array created here with a known size
+    private static boolean inBounds(Value array, Value index) {
+        return array instanceof Instruction creation && creation.getOpcode() == Opcode.NEW_ARRAY
+                && creation.getOperand(0) instanceof Constant size && index instanceof Constant position
+                && position.intValue() >= 0 && position.intValue() < size.intValue();
+    }
+
+    // the bytes of the code generated for the function, which doesn't depend on the name of its class
+    private static int codeSize(Program program, Function function) {
+        MethodNode method = IRGenerator.generate("Size", program, function);
+        CodeSizeEvaluator evaluator = new CodeSizeEvaluator(null);
+
+        method.accept(evaluator);
+
+        return evaluator.getMaxSize();
+    }
+}
@@ -0,0 +1,72 @@
+package compiler.Passes;
+
+import compiler.Components.IR.*;
+import compiler.Components.Semantic.ArrayType;
+import compiler.Components.Semantic.TypeName;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+// what the passes need to know of an instruction beside its value: whether it may throw, and which locations it reads or writes
+// the locations are told apart by kind only, the fields of the same name whatever the record,
+// as records of the same fields are the same type, and the elements of the arrays of the same type
+final class Effects {
+    // the locations a call may write, that is all of them
+    static final String ANY = "";
+
+    private Effects() {}
+
+    // the location read by a load or written by a store, null for the other instructions
+    static String location(Instruction instruction) {
+        return switch (instruction.getOpcode()) {
+            case GET_FIELD, PUT_FIELD -> field(instruction.getName());
+            case ARRAY_LOAD, ARRAY_STORE -> "array " + ((ArrayType) instruction.getOperand(0).getType()).getElementType().getName();
+            case GET_GLOBAL, PUT_GLOBAL -> "global " + instruction.getName();
+            default -> null;
+        };
+    }
+
+    static String field(String name) {
+        return "field " + name;
+    }
+
+    static boolean isStore(Instruction instruction) {
+        return switch (instruction.getOpcode()) {
+            case PUT_FIELD, ARRAY_STORE, PUT_GLOBAL -> true;
+            default -> false;
+        };
+    }
+
+    // a call to a function of the program, which may store anywhere, the built-in ones only write to the output
+    static boolean isCall(Program program, Instruction instruction) {
+        return instruction.getOpcode() == Opcode.CALL && program.getFunction(instruction.getName()) != null;
+    }
+
+    // with the values known not to be null
+    static boolean mayThrow(Instruction instruction, Predicate<Value> nonNull) {
+        List<Value> operands = instruction.getOperands();
+
+        return switch (instruction.getOpcode()) {
+            case CALL, READ, ARRAY_LOAD, ARRAY_STORE -> true;
+            case DIV, REM -> operands.getFirst().getType().getName() == TypeName.INTEGER
+                    && !(operands.get(1) instanceof Constant divisor && divisor.intValue() != 0);
+            case NEW_ARRAY -> !(operands.getFirst() instanceof Constant size && size.intValue() >= 0);
+            case GET_FIELD, PUT_FIELD, LENGTH -> !nonNull.test(operands.getFirst());
+            case CONCAT -> !nonNull.test(operands.getFirst()) || !nonNull.test(operands.get(1));
+            // strings are compared by equals on the first one
+            case EQ, NE -> operands.getFirst().getType().getName() == TypeName.STRING && !nonNull.test(operands.getFirst());
+            default -> false;
+        };
+    }
+
+    static boolean isNonNull(Value value) {
+        return switch (value) {
+            case Constant constant -> !constant.isNull();
+            case Instruction instruction -> switch (instruction.getOpcode()) {
+                case CONCAT, CHR, NEW_ARRAY, NEW_RECORD -> true;
+                default -> false;
+            };
+            default -> false;
+        };
+    }
+}
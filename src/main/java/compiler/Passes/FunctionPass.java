@@ -0,0 +1,21 @@
+package compiler.Passes;
+
+import compiler.Components.IR.Function;
+import compiler.Components.IR.Program;
+
+// a pass changing one function at a time, the others only read
+public abstract class FunctionPass implements Pass {
+    @Override
+    public int run(Program program) {
+        int changed = 0;
+
+        for (Function function : program.getAllFunctions()) {
+            if (run(program, function)) changed++;
+        }
+
+        return changed;
+    }
+
+    // true when the function changed
+    protected abstract boolean run(Program program, Function function);
+}
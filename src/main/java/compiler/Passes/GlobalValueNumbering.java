@@ -0,0 +1,170 @@
+package compiler.Passes;
+
+import compiler.Components.IR.*;
+import compiler.Components.Semantic.RecordType;
+
+import java.util.*;
+
+// an expression computed again in a block its first computation dominates reuses it, loads included
+// a load is only reused, or a store forwarded to it, while no store of the same kind of location may come between them,
+// which is only followed from a block to the next one when it is its single predecessor
+public class GlobalValueNumbering extends FunctionPass {
+    private record Key(Opcode opcode, String name, List<Object> operands) {}
+
+    // a block of the dominator tree being walked, with its locations as they are at its end
+    private record Scope(BasicBlock block, Map<String, Integer> memory, List<Key> keys, Iterator<BasicBlock> children) {}
+
+    private final Map<Key, Value> values = new HashMap<>();
+    private int nextVersion;
+    private long eliminated;
+
+    @Override
+    public String getName() {
+        return "gvn";
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        return Map.of("eliminated", eliminated);
+    }
+
+    @Override
+    protected boolean run(Program program, Function function) {
+        Dominators dominators = new Dominators(function);
+        Deque<Scope> scopes = new ArrayDeque<>();
+        long before = eliminated;
+
+        values.clear();
+        scopes.push(number(program, function.getEntry(), fresh(), dominators));
+
+        while (!scopes.isEmpty()) {
+            Scope scope = scopes.peek();
+
+            if (scope.children().hasNext()) {
+                BasicBlock child = scope.children().next();
+                boolean follows = child.getPredecessors().equals(List.of(scope.block()));
+
+                scopes.push(number(program, child, follows ? new HashMap<>(scope.memory()) : fresh(), dominators));
+            } else {
+                scopes.pop();
+                scope.keys().forEach(values::remove);
+            }
+        }
+
+        return eliminated > before;
+    }
+
+    private Map<String, Integer> fresh() {
+        return new HashMap<>(Map.of(Effects.ANY, ++nextVersion));
+    }
+
+    private Scope number(Program program, BasicBlock block, Map<String, Integer> memory, Dominators dominators) {
+        List<Key> keys = new ArrayList<>();
+
+        for (Instruction instruction : new ArrayList<>(block.getInstructions())) {
+            List<Value> operands = instruction.getOperands();
+
+            switch (instruction.getOpcode()) {
+                case PUT_FIELD -> forward(new Key(Opcode.GET_FIELD, instruction.getName(), load(operands.subList(0, 1), memory, store(memory, instruction))), operands.get(1), keys);
+                case ARRAY_STORE -> forward(new Key(Opcode.ARRAY_LOAD, null, load(operands.subList(0, 2), memory, store(memory, instruction))), operands.get(2), keys);
+                case PUT_GLOBAL -> forward(new Key(Opcode.GET_GLOBAL, instruction.getName(), load(List.of(), memory, store(memory, instruction))), operands.getFirst(), keys);
+                // a new record holds the values it was created with
+                case NEW_RECORD -> {
+                    List<String> fields = ((RecordType) instruction.getType()).getFieldNames();
+
+                    for (int i = 0; i < fields.size(); i++) {
+                        forward(new Key(Opcode.GET_FIELD, fields.get(i), load(List.of(instruction), memory, Effects.field(fields.get(i)))), operands.get(i), keys);
+                    }
+                }
+                case CALL -> {
+                    if (Effects.isCall(program, instruction)) {
+                        memory.clear();
+                        memory.put(Effects.ANY, ++nextVersion);
+                    }
+                }
+                default -> {
+                    Key key = key(instruction, memory);
+
+                    if (key == null) continue;
+
+                    Value existing = values.get(key);
+
+                    if (existing == null && isCommutative(instruction)) {
+                        existing = values.get(new Key(key.opcode(), key.name(), List.of(key.operands().get(1), key.operands().get(0))));
+                    }
+
+                    if (existing != null) {
+                        instruction.replaceAllUsesWith(existing);
+                        instruction.remove();
+                        eliminated++;
+                    } else {
+                        values.put(key, instruction);
+                        keys.add(key);
+                    }
+                }
+            }
+        }
+
+        return new Scope(block, memory, keys, dominators.getChildren(block).iterator());
+    }
+
+    // the location stored to is known to hold the value until it is stored to again
+    private void forward(Key key, Value value, List<Key> keys) {
+        values.put(key, value);
+        keys.add(key);
+    }
+
+    // null when it can't be reused
+    private static Key key(Instruction instruction, Map<String, Integer> memory) {
+        List<Value> operands = instruction.getOperands();
+
+        return switch (instruction.getOpcode()) {
+            case ADD, SUB, MUL, DIV, REM, NEG, SHL, SHR, AND, EQ, NE, LT, LE, GT, GE, NOT, CONCAT, CHR, FLOOR, LENGTH ->
+                    new Key(instruction.getOpcode(), null, normalize(operands));
+            case PHI -> {
+                List<Object> key = new ArrayList<>(normalize(operands));
+                key.add(instruction.getBlock());
+
+                yield new Key(Opcode.PHI, null, key);
+            }
+            case GET_FIELD, ARRAY_LOAD, GET_GLOBAL -> new Key(instruction.getOpcode(), instruction.getName(), load(operands, memory, Effects.location(instruction)));
+            default -> null;
+        };
+    }
+
+    private static boolean isCommutative(Instruction instruction) {
+        return switch (instruction.getOpcode()) {
+            case ADD, MUL, AND, EQ, NE -> true;
+            default -> false;
+        };
+    }
+
+    // the constants by value, the other values by identity
+    private static List<Object> normalize(List<Value> operands) {
+        List<Object> normalized = new ArrayList<>();
+
+        for (Value operand : operands) {
+            normalized.add(operand instanceof Constant constant ? Arrays.asList(constant.getType().getName(), constant.getValue()) : operand);
+        }
+
+        return normalized;
+    }
+
+    // a load is the same one as long as nothing stored to its kind of location
+    private static List<Object> load(List<Value> operands, Map<String, Integer> memory, String location) {
+        List<Object> key = new ArrayList<>(normalize(operands));
+        key.add(memory.get(Effects.ANY));
+        key.add(memory.getOrDefault(location, 0));
+
+        return key;
+    }
+
+    // the location of the store, from then on holding something else
+    private String store(Map<String, Integer> memory, Instruction store) {
+        String location = Effects.location(store);
+        memory.put(location, ++nextVersion);
+
+        return location;
+    }
+
+}
@@ -0,0 +1,275 @@
+package compiler.Passes;
+
+import compiler.Components.IR.*;
+import compiler.Components.Semantic.TypeName;
+
+import java.util.*;
+
+// replaces the calls to small functions, or to functions called once, by a copy of their body
+// the callees are done before their callers, and the calls within a cycle of the call graph are kept,
+// so that a recursive function is unrolled once at most where it is called from outside its cycle
+public class Inliner implements Pass {
+    // the instructions of a function always worth inlining, about what the call and its arguments take
+    private static final int SMALL = 24;
+    // of a function called once, its copy replacing the original
+    private static final int CALLED_ONCE = 400;
+    // the largest caller, so that its method stays far below the limit of the class file
+    private static final int LARGEST_CALLER = 3000;
+
+    private final Map<String, Long> inlined = new TreeMap<>();
+
+    @Override
+    public String getName() {
+        return "inline";
+    }
+
+    // the calls inlined by callee
+    @Override
+    public Map<String, Long> getCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put("calls", inlined.values().stream().mapToLong(Long::longValue).sum());
+        inlined.forEach((callee, count) -> counts.put("calls." + callee, count));
+
+        return counts;
+    }
+
+    @Override
+    public int run(Program program) {
+        Map<Function, List<Function>> callees = new HashMap<>();
+        Map<Function, Integer> callSites = new HashMap<>();
+
+        for (Function function : program.getAllFunctions()) {
+            List<Function> called = new ArrayList<>();
+
+            for (Instruction call : calls(program, function)) {
+                Function callee = program.getFunction(call.getName());
+
+                called.add(callee);
+                callSites.merge(callee, 1, Integer::sum);
+            }
+
+            callees.put(function, called);
+        }
+
+        Map<Function, Integer> cycles = new HashMap<>();
+        List<Function> order = bottomUp(program, callees, cycles);
+        int changed = 0;
+
+        for (Function caller : order) {
+            boolean inlining = false;
+
+            for (Instruction call : calls(program, caller)) {
+                Function callee = program.getFunction(call.getName());
+
+                // dropped with what followed a call that never returns
+                if (call.getBlock() == null) {
+                    callSites.merge(callee, -1, Integer::sum);
+                    continue;
+                }
+
+                int size = callee.countInstructions();
+
+                // its entry can't be jumped to from the caller when its loops go back to it
+                if (cycles.get(callee).equals(cycles.get(caller)) || !callee.getEntry().getPredecessors().isEmpty()) continue;
+                if (size > SMALL && (callSites.get(callee) > 1 || size > CALLED_ONCE)) continue;
+                if (caller.countInstructions() + size > LARGEST_CALLER) continue;
+
+                for (Instruction copied : inline(call, callee)) {
+                    callSites.merge(program.getFunction(copied.getName()), 1, Integer::sum);
+                }
+
+                callSites.merge(callee, -1, Integer::sum);
+                inlined.merge(callee.getName(), 1L, Long::sum);
+                inlining = true;
+            }
+
+            if (inlining) changed++;
+        }
+
+        return changed;
+    }
+
+    // the calls to the functions of the program, not to the built-in ones
+    private static List<Instruction> calls(Program program, Function function) {
+        List<Instruction> calls = new ArrayList<>();
+
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction instruction : block.getInstructions()) {
+                if (instruction.getOpcode() == Opcode.CALL && program.getFunction(instruction.getName()) != null) {
+                    calls.add(instruction);
+                }
+            }
+        }
+
+        return calls;
+    }
+
+    // the functions with the ones they call first, by Tarjan's algorithm, each one numbered by the cycle it belongs to
+    private static List<Function> bottomUp(Program program, Map<Function, List<Function>> callees, Map<Function, Integer> cycles) {
+        List<Function> order = new ArrayList<>();
+        Map<Function, Integer> indexes = new HashMap<>();
+        Map<Function, Integer> lowest = new HashMap<>();
+        Deque<Function> stack = new ArrayDeque<>();
+        Set<Function> onStack = new HashSet<>();
+
+        for (Function root : program.getAllFunctions()) {
+            if (indexes.containsKey(root)) continue;
+
+            Deque<Function> path = new ArrayDeque<>();
+            Deque<Iterator<Function>> pending = new ArrayDeque<>();
+
+            path.push(root);
+            pending.push(callees.get(root).iterator());
+            indexes.put(root, indexes.size());
+            lowest.put(root, indexes.get(root));
+            stack.push(root);
+            onStack.add(root);
+
+            while (!path.isEmpty()) {
+                Function function = path.peek();
+
+                if (pending.peek().hasNext()) {
+                    Function callee = pending.peek().next();
+
+                    if (!indexes.containsKey(callee)) {
+                        path.push(callee);
+                        pending.push(callees.get(callee).iterator());
+                        indexes.put(callee, indexes.size());
+                        lowest.put(callee, indexes.get(callee));
+                        stack.push(callee);
+                        onStack.add(callee);
+                    } else if (onStack.contains(callee)) {
+                        lowest.put(function, Math.min(lowest.get(function), indexes.get(callee)));
+                    }
+
+                    continue;
+                }
+
+                path.pop();
+                pending.pop();
+
+                if (!path.isEmpty()) {
+                    lowest.put(path.peek(), Math.min(lowest.get(path.peek()), lowest.get(function)));
+                }
+
+                if (lowest.get(function).equals(indexes.get(function))) {
+                    int cycle = cycles.size();
+                    Function member;
+
+                    do {
+                        member = stack.pop();
+                        onStack.remove(member);
+                        cycles.put(member, cycle);
+                        order.add(member);
+                    } while (member != function);
+                }
+            }
+        }
+
+        return order;
+    }
+
+    // the calls of the copy
+    private static List<Instruction> inline(Instruction call, Function callee) {
+        BasicBlock block = call.getBlock();
+        Function caller = block.getFunction();
+
+        // what follows the call goes to a block of its own, where the copy returns to
+        BasicBlock rest = caller.newBlockAfter(block);
+        List<Instruction> following = block.getInstructions().subList(block.getInstructions().indexOf(call) + 1, block.getInstructions().size());
+
+        for (Instruction instruction : new ArrayList<>(following)) {
+            block.moveTo(instruction, rest);
+        }
+
+        for (BasicBlock successor : rest.getSuccessors()) {
+            successor.replacePredecessor(block, rest);
+        }
+
+        Map<Value, Value> values = new HashMap<>();
+        Map<BasicBlock, BasicBlock> blocks = new LinkedHashMap<>();
+        Map<BasicBlock, Value> returns = new LinkedHashMap<>();
+        List<Instruction> calls = new ArrayList<>();
+
+        // the parameters are copies of the arguments, SSA values that the body never changes
+        for (Parameter parameter : callee.getParameters()) {
+            values.put(parameter, call.getOperand(parameter.getIndex()));
+        }
+
+        BasicBlock position = block;
+
+        for (BasicBlock original : callee.reversePostOrder()) {
+            position = caller.newBlockAfter(position);
+            blocks.put(original, position);
+        }
+
+        // in reverse post order every value is copied before its uses, but for the phis
+        for (Map.Entry<BasicBlock, BasicBlock> copy : blocks.entrySet()) {
+            for (Instruction instruction : copy.getKey().getInstructions()) {
+                Instruction copied = switch (instruction.getOpcode()) {
+                    case PHI -> new Instruction(Opcode.PHI, instruction.getType(), List.of());
+                    case JUMP -> Instruction.jump(blocks.get(instruction.getTargets().getFirst()));
+                    case BRANCH -> Instruction.branch(map(instruction.getOperand(0), values), blocks.get(instruction.getTargets().get(0)), blocks.get(instruction.getTargets().get(1)));
+                    case RETURN -> {
+                        returns.put(copy.getValue(), instruction.getOperands().isEmpty() ? null : map(instruction.getOperand(0), values));
+
+                        yield Instruction.jump(rest);
+                    }
+                    default -> new Instruction(instruction.getOpcode(), instruction.getType(), instruction.getName(),
+                            instruction.getOperands().stream().map(operand -> map(operand, values)).toList());
+                };
+
+                copy.getValue().append(copied);
+                values.put(instruction, copied);
+
+                if (copied.getOpcode() == Opcode.CALL) calls.add(copied);
+            }
+        }
+
+        Map<BasicBlock, BasicBlock> originals = new HashMap<>();
+        blocks.forEach((original, copy) -> originals.put(copy, original));
+
+        // the predecessors of the copies are in the order their blocks were copied
+        for (Map.Entry<BasicBlock, BasicBlock> copy : blocks.entrySet()) {
+            for (Instruction phi : copy.getKey().getPhis()) {
+                Instruction copied = (Instruction) values.get(phi);
+
+                for (BasicBlock predecessor : copy.getValue().getPredecessors()) {
+                    copied.addOperand(map(phi.getOperand(copy.getKey().getPredecessors().indexOf(originals.get(predecessor))), values));
+                }
+            }
+        }
+
+        if (call.getType().getName() != TypeName.VOID) {
+            Value result;
+
+            if (returns.isEmpty()) {
+                // the callee never returns, so its users, all after the call, can't be reached either
+                result = Constant.defaultOf(call.getType());
+            } else if (returns.size() == 1) {
+                result = returns.values().iterator().next();
+            } else {
+                Instruction phi = rest.insertPhi(new Instruction(Opcode.PHI, call.getType(), List.of()));
+
+                for (BasicBlock predecessor : rest.getPredecessors()) {
+                    phi.addOperand(returns.get(predecessor));
+                }
+
+                result = phi;
+            }
+
+            call.replaceAllUsesWith(result);
+        }
+
+        call.remove();
+        block.append(Instruction.jump(blocks.get(callee.getEntry())));
+
+        if (returns.isEmpty()) caller.removeUnreachableBlocks();
+
+        return calls;
+    }
+
+    private static Value map(Value value, Map<Value, Value> values) {
+        return value instanceof Constant ? value : values.get(value);
+    }
+}
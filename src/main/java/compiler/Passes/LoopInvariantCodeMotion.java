@@ -0,0 +1,174 @@
+package compiler.Passes;
+
+import compiler.Components.IR.*;
+
+import java.util.*;
+
+// moves the computations giving the same value on every iteration of a loop to a block run once before it, its preheader
+// a load only moves when the loop stores nothing of its kind, and what may throw only when the loop would surely run it first,
+// that is from its header before anything observable, unless the values it needs are known not to be null
+public class LoopInvariantCodeMotion extends FunctionPass {
+    record Loop(BasicBlock header, Set<BasicBlock> blocks) {}
+
+    private long hoisted;
+    private long preheaders;
+
+    @Override
+    public String getName() {
+        return "licm";
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        return Map.of("hoisted", hoisted, "preheaders", preheaders);
+    }
+
+    @Override
+    protected boolean run(Program program, Function function) {
+        List<Loop> loops = findLoops(function, new Dominators(function));
+
+        if (loops.isEmpty()) return false;
+
+        Map<BasicBlock, BasicBlock> preheaders = new HashMap<>();
+        long before = hoisted + this.preheaders;
+
+        for (Loop loop : loops) {
+            preheaders.put(loop.header(), preheader(function, loop));
+        }
+
+        // the preheaders changed the tree, and are part of the loops around theirs
+        Dominators dominators = new Dominators(function);
+
+        for (Loop loop : findLoops(function, dominators)) {
+            hoist(program, loop, preheaders.get(loop.header()), dominators);
+        }
+
+        return hoisted + this.preheaders > before;
+    }
+
+    // by the back edges to the blocks dominating their sources, the inner loops first
+    static List<Loop> findLoops(Function function, Dominators dominators) {
+        Map<BasicBlock, Set<BasicBlock>> loops = new LinkedHashMap<>();
+
+        for (BasicBlock block : dominators.getOrder()) {
+            for (BasicBlock header : block.getSuccessors()) {
+                if (!dominators.dominates(header, block)) continue;
+
+                Set<BasicBlock> blocks = loops.computeIfAbsent(header, key -> new HashSet<>(List.of(header)));
+                Deque<BasicBlock> pending = new ArrayDeque<>(List.of(block));
+
+                while (!pending.isEmpty()) {
+                    BasicBlock member = pending.pop();
+
+                    if (blocks.add(member)) pending.addAll(member.getPredecessors());
+                }
+            }
+        }
+
+        List<Loop> found = new ArrayList<>();
+        loops.forEach((header, blocks) -> found.add(new Loop(header, blocks)));
+        found.sort(Comparator.comparingInt(loop -> loop.blocks().size()));
+
+        return found;
+    }
+
+    // the single block entering the loop, made when there is none
+    private BasicBlock preheader(Function function, Loop loop) {
+        BasicBlock header = loop.header();
+        List<BasicBlock> outside = header.getPredecessors().stream().filter(block -> !loop.blocks().contains(block)).toList();
+
+        if (outside.size() == 1 && outside.getFirst().getTerminator().getOpcode() == Opcode.JUMP) return outside.getFirst();
+
+        BasicBlock preheader = function.newBlockAfter(outside.getLast());
+        List<Value> entering = new ArrayList<>();
+
+        // the values entering the loop, merged in the preheader when it comes from several blocks
+        for (Instruction phi : header.getPhis()) {
+            List<Value> values = outside.stream().map(block -> phi.getOperand(header.getPredecessors().indexOf(block))).toList();
+
+            entering.add(outside.size() == 1 ? values.getFirst() : preheader.insertPhi(new Instruction(Opcode.PHI, phi.getType(), values)));
+        }
+
+        for (BasicBlock block : outside) {
+            Instruction terminator = block.getTerminator();
+
+            terminator.setTarget(terminator.getTargets().indexOf(header), preheader);
+            preheader.addPredecessor(block);
+        }
+
+        preheader.append(Instruction.jump(header));
+
+        for (int i = 0; i < entering.size(); i++) {
+            header.getPhis().get(i).addOperand(entering.get(i));
+        }
+
+        for (BasicBlock block : outside) {
+            header.removePredecessor(block);
+        }
+
+        preheaders++;
+
+        return preheader;
+    }
+
+    private void hoist(Program program, Loop loop, BasicBlock preheader, Dominators dominators) {
+        Set<String> stored = new HashSet<>();
+
+        for (BasicBlock block : loop.blocks()) {
+            for (Instruction instruction : block.getInstructions()) {
+                if (Effects.isStore(instruction)) stored.add(Effects.location(instruction));
+                if (Effects.isCall(program, instruction)) stored.add(Effects.ANY);
+            }
+        }
+
+        for (BasicBlock block : dominators.getOrder()) {
+            if (!loop.blocks().contains(block)) continue;
+
+            // in the header, until something observable stays in the loop
+            boolean first = block == loop.header();
+
+            for (Instruction instruction : new ArrayList<>(block.getInstructions())) {
+                if (instruction.isPhi()) continue;
+
+                boolean movable = isInvariant(instruction, loop) && switch (instruction.getOpcode()) {
+                    case ADD, SUB, MUL, DIV, REM, NEG, SHL, SHR, AND, EQ, NE, LT, LE, GT, GE, NOT, CONCAT, CHR, FLOOR, LENGTH -> true;
+                    case GET_FIELD, ARRAY_LOAD, GET_GLOBAL -> !stored.contains(Effects.ANY) && !stored.contains(Effects.location(instruction));
+                    default -> false;
+                };
+                boolean throwing = Effects.mayThrow(instruction, value -> isNonNull(value, loop, preheader, dominators));
+
+                if (movable && (!throwing || first)) {
+                    block.moveTo(instruction, preheader);
+                    hoisted++;
+                } else if (throwing || instruction.isVoid()) {
+                    first = false;
+                }
+            }
+        }
+    }
+
+    // its operands are computed before the loop, or are constants
+    private static boolean isInvariant(Instruction instruction, Loop loop) {
+        for (Value operand : instruction.getOperands()) {
+            if (operand instanceof Instruction definition && loop.blocks().contains(definition.getBlock())) return false;
+        }
+
+        return true;
+    }
+
+    // created not null, or already used as a record, an array or a string before the loop
+    private static boolean isNonNull(Value value, Loop loop, BasicBlock preheader, Dominators dominators) {
+        if (Effects.isNonNull(value)) return true;
+
+        for (Instruction user : value.getUsers()) {
+            boolean dereferences = switch (user.getOpcode()) {
+                case GET_FIELD, PUT_FIELD, ARRAY_LOAD, ARRAY_STORE, LENGTH -> user.getOperand(0) == value;
+                default -> false;
+            };
+
+            if (dereferences && !loop.blocks().contains(user.getBlock()) && dominators.dominates(user.getBlock(), preheader)) return true;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,18 @@
+package compiler.Passes;
+
+import compiler.Components.IR.Program;
+
+import java.util.Map;
+
+// a transformation of the IR, keeping it valid and the program doing the same
+public interface Pass {
+    String getName();
+
+    // the number of functions it changed
+    int run(Program program);
+
+    // what else it did in its last run, like the instructions it folded
+    default Map<String, Long> getCounts() {
+        return Map.of();
+    }
+}
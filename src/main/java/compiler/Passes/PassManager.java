@@ -0,0 +1,119 @@
+package compiler.Passes;
+
+import compiler.CompilerOptions;
+import compiler.Components.IR.Program;
+import compiler.Components.IR.Verifier;
+import compiler.Exceptions.IRException;
+import compiler.PhaseProfile;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+// runs the passes of an optimization level in order, with the ones turned on or off by name
+public class PassManager {
+    private record Stage(String name, int level) {}
+
+    private static final Map<String, Supplier<Pass>> PASSES = new LinkedHashMap<>();
+
+    // a pass may run more than once, to clean up after the later ones
+    private static final List<Stage> PIPELINE = List.of(
+            new Stage("const-prop", 1),
+            new Stage("tail-call", 1),
+            new Stage("inline", 2),
+            new Stage("const-prop", 2),
+            new Stage("gvn", 2),
+            new Stage("licm", 2),
+            new Stage("strength-reduce", 1),
+            new Stage("dce", 1),
+            new Stage("simplify-cfg", 1)
+    );
+
+    static {
+        PASSES.put("const-prop", ConstantPropagation::new);
+        PASSES.put("dce", DeadCodeElimination::new);
+        PASSES.put("gvn", GlobalValueNumbering::new);
+        PASSES.put("inline", Inliner::new);
+        PASSES.put("licm", LoopInvariantCodeMotion::new);
+        PASSES.put("simplify-cfg", SimplifyCFG::new);
+        PASSES.put("strength-reduce", StrengthReduction::new);
+        PASSES.put("tail-call", TailCallElimination::new);
+    }
+
+    private final List<Pass> passes = new ArrayList<>();
+    private final boolean verifying;
+
+    public PassManager(CompilerOptions options) {
+        Map<String, Boolean> toggles = options.getPasses();
+
+        for (String name : toggles.keySet()) {
+            if (!PASSES.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown pass - " + name + ", the passes are " + String.join(", ", PASSES.keySet()));
+            }
+        }
+
+        for (Stage stage : PIPELINE) {
+            if (toggles.getOrDefault(stage.name(), stage.level() <= options.getOptimizationLevel())) {
+                passes.add(PASSES.get(stage.name()).get());
+            }
+        }
+
+        verifying = options.isVerifyingIR();
+    }
+
+    public static Set<String> getPassNames() {
+        return Collections.unmodifiableSet(PASSES.keySet());
+    }
+
+    public List<String> getPipeline() {
+        return passes.stream().map(Pass::getName).toList();
+    }
+
+    // the time and the changes of each pass go to the profile
+    public void run(Program program, PhaseProfile profile) {
+        for (Pass pass : passes) {
+            long start = System.nanoTime();
+            int changed = pass.run(program);
+            long elapsed = System.nanoTime() - start;
+
+            profile.count("pass." + pass.getName() + ".runs", 1);
+            profile.count("pass." + pass.getName() + ".nanos", elapsed);
+            profile.count("pass." + pass.getName() + ".changed", changed);
+            pass.getCounts().forEach((name, count) -> profile.count("pass." + pass.getName() + "." + name, count));
+
+            if (verifying) {
+                try {
+                    Verifier.verify(program);
+                } catch (IRException e) {
+                    throw new IRException(e.getMessage() + " | after the pass " + pass.getName());
+                }
+            }
+        }
+    }
+
+    // one line per pass that ran, with the functions it changed, followed by what else it counted
+    public static List<String> report(PhaseProfile profile) {
+        List<String> lines = new ArrayList<>();
+        Map<String, Long> counts = profile.getCounts();
+
+        lines.add(String.format("%-16s %6s %10s %8s", "pass", "runs", "ms", "changed"));
+
+        for (String name : PIPELINE.stream().map(Stage::name).distinct().toList()) {
+            String prefix = "pass." + name + ".";
+            long runs = counts.getOrDefault(prefix + "runs", 0L);
+
+            if (runs == 0) continue;
+
+            lines.add(String.format("%-16s %6d %10.2f %8d", name, runs, counts.get(prefix + "nanos") / 1e6, counts.get(prefix + "changed")));
+
+            counts.forEach((count, value) -> {
+                String detail = count.startsWith(prefix) ? count.substring(prefix.length()) : null;
+
+                if (detail != null && !detail.equals("runs") && !detail.equals("nanos") && !detail.equals("changed")) {
+                    lines.add(String.format("  %-14s %6d", detail, value));
+                }
+            });
+        }
+
+        return lines;
+    }
+}
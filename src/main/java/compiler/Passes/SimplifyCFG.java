@@ -0,0 +1,135 @@
+package compiler.Passes;
+
+import compiler.Components.IR.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// drops the unreachable blocks and the phis of a single value, merges a block into its only predecessor
+// and skips the blocks doing nothing but jumping, until none is left
+public class SimplifyCFG extends FunctionPass {
+    @Override
+    public String getName() {
+        return "simplify-cfg";
+    }
+
+    @Override
+    protected boolean run(Program program, Function function) {
+        boolean changed = false;
+        boolean changing = true;
+
+        while (changing) {
+            changing = function.removeUnreachableBlocks();
+            changing |= removeTrivialPhis(function);
+            changing |= mergeBlocks(function);
+            changing |= skipJumps(function);
+
+            changed |= changing;
+        }
+
+        return changed;
+    }
+
+    // the value of a phi whose operands are all the same, itself aside, null when there are others
+    static Value trivialValue(Instruction phi) {
+        Value same = null;
+
+        for (Value operand : phi.getOperands()) {
+            if (operand == phi || operand == same) continue;
+            if (same instanceof Constant constant && operand instanceof Constant other && constant.sameAs(other)) continue;
+            if (same != null) return null;
+
+            same = operand;
+        }
+
+        return same;
+    }
+
+    private static boolean removeTrivialPhis(Function function) {
+        boolean changed = false;
+
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction phi : List.copyOf(block.getPhis())) {
+                Value same = trivialValue(phi);
+
+                if (same == null) continue;
+
+                phi.replaceAllUsesWith(same);
+                phi.remove();
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    // a block only reached by a jump from its predecessor continues it
+    private static boolean mergeBlocks(Function function) {
+        boolean changed = false;
+
+        for (BasicBlock block : new ArrayList<>(function.getBlocks())) {
+            if (block == function.getEntry() || block.getPredecessors().size() != 1) continue;
+
+            BasicBlock predecessor = block.getPredecessors().getFirst();
+            Instruction jump = predecessor.getTerminator();
+
+            if (predecessor == block || jump.getOpcode() != Opcode.JUMP) continue;
+
+            for (Instruction phi : List.copyOf(block.getPhis())) {
+                phi.replaceAllUsesWith(phi.getOperand(0));
+                phi.remove();
+            }
+
+            jump.remove();
+
+            for (Instruction instruction : new ArrayList<>(block.getInstructions())) {
+                block.moveTo(instruction, predecessor);
+            }
+
+            for (BasicBlock successor : predecessor.getSuccessors()) {
+                successor.replacePredecessor(block, predecessor);
+            }
+
+            function.removeBlock(block);
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    // the predecessors of a block holding a single jump go straight to its target, when that needs no phi
+    private static boolean skipJumps(Function function) {
+        boolean changed = false;
+
+        for (BasicBlock block : new ArrayList<>(function.getBlocks())) {
+            if (block == function.getEntry() || block.getInstructions().size() != 1) continue;
+
+            Instruction jump = block.getTerminator();
+
+            if (jump.getOpcode() != Opcode.JUMP) continue;
+
+            BasicBlock target = jump.getTargets().getFirst();
+
+            if (target == block || !target.getPhis().isEmpty()) continue;
+
+            for (BasicBlock predecessor : List.copyOf(block.getPredecessors())) {
+                Instruction terminator = predecessor.getTerminator();
+
+                // a branch can't go to the same block both ways
+                if (terminator.getTargets().contains(target)) continue;
+
+                terminator.setTarget(terminator.getTargets().indexOf(block), target);
+                block.removePredecessor(predecessor);
+                target.addPredecessor(predecessor);
+                changed = true;
+            }
+
+            if (block.getPredecessors().isEmpty()) {
+                target.removePredecessor(block);
+                function.removeBlock(block);
+            }
+        }
+
+        return changed;
+    }
+}
@@ -0,0 +1,283 @@
+package compiler.Passes;
+
+import compiler.Components.IR.*;
+import compiler.Components.Semantic.PrimitiveType;
+import compiler.Components.Semantic.TypeName;
+
+import java.util.*;
+
+// rewrites arithmetic into cheaper instructions giving the same value: the identities go away,
+// an int multiplied by a power of two is shifted, and so is one divided by it or masked for the remainder when it can't be negative,
+// as the shifts round down where the division rounds toward zero,
+// and in a loop, the product of its counter by a value the loop doesn't change is a counter of its own, added to at each step
+public class StrengthReduction extends FunctionPass {
+    private long simplified;
+    private long shifts;
+    private long inductions;
+
+    @Override
+    public String getName() {
+        return "strength-reduce";
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        return Map.of("simplified", simplified, "shifts", shifts, "inductions", inductions);
+    }
+
+    @Override
+    protected boolean run(Program program, Function function) {
+        long before = simplified + shifts + inductions;
+        Dominators dominators = new Dominators(function);
+
+        // in reverse post order, the operands are simplified before their users, but for the phis
+        for (BasicBlock block : dominators.getOrder()) {
+            for (Instruction instruction : new ArrayList<>(block.getInstructions())) {
+                Value simpler = simplify(instruction);
+
+                if (simpler != null) {
+                    instruction.replaceAllUsesWith(simpler);
+                    instruction.remove();
+                    simplified++;
+                }
+            }
+        }
+
+        Set<Value> nonNegative = nonNegative(function, dominators);
+
+        for (BasicBlock block : dominators.getOrder()) {
+            for (Instruction instruction : new ArrayList<>(block.getInstructions())) {
+                Instruction shift = shift(instruction, nonNegative);
+
+                if (shift == null) continue;
+
+                block.insertBefore(instruction, shift);
+                instruction.replaceAllUsesWith(shift);
+                instruction.remove();
+                shifts++;
+
+                if (nonNegative.contains(instruction)) nonNegative.add(shift);
+            }
+        }
+
+        for (LoopInvariantCodeMotion.Loop loop : LoopInvariantCodeMotion.findLoops(function, dominators)) {
+            reduceInductions(loop);
+        }
+
+        return simplified + shifts + inductions > before;
+    }
+
+    // the value the instruction always gives, null when there is none
+    private static Value simplify(Instruction instruction) {
+        List<Value> operands = instruction.getOperands();
+        boolean isInteger = instruction.getType().getName() == TypeName.INTEGER;
+
+        return switch (instruction.getOpcode()) {
+            case ADD -> !isInteger ? null : is(operands.get(1), 0) ? operands.get(0) : is(operands.get(0), 0) ? operands.get(1) : null;
+            case SUB -> {
+                if (!isInteger) yield null;
+                if (operands.get(0) == operands.get(1)) yield Constant.of(0);
+
+                yield is(operands.get(1), 0) ? operands.get(0) : null;
+            }
+            // multiplying a float by one changes nothing either, not even NaN or -0.0
+            case MUL -> {
+                if (is(operands.get(1), 1)) yield operands.get(0);
+                if (is(operands.get(0), 1)) yield operands.get(1);
+
+                yield isInteger && (is(operands.get(0), 0) || is(operands.get(1), 0)) ? Constant.of(0) : null;
+            }
+            case DIV -> is(operands.get(1), 1) ? operands.get(0) : null;
+            case REM -> isInteger && is(operands.get(1), 1) ? Constant.of(0) : null;
+            case NEG, NOT -> operands.getFirst() instanceof Instruction inner && inner.getOpcode() == instruction.getOpcode() ? inner.getOperand(0) : null;
+            default -> null;
+        };
+    }
+
+    private static boolean is(Value value, int number) {
+        return value instanceof Constant constant && switch (constant.getType().getName()) {
+            case INTEGER -> constant.intValue() == number;
+            case FLOAT -> constant.floatValue() == number;
+            default -> false;
+        };
+    }
+
+    // the shift or the mask computing the same int, null when there is none
+    private static Instruction shift(Instruction instruction, Set<Value> nonNegative) {
+        if (instruction.getType().getName() != TypeName.INTEGER || instruction.getOperands().size() != 2) return null;
+
+        Value left = instruction.getOperand(0);
+        Value right = instruction.getOperand(1);
+
+        return switch (instruction.getOpcode()) {
+            case MUL -> {
+                if (log2(right) > 0) yield new Instruction(Opcode.SHL, PrimitiveType.INT, List.of(left, Constant.of(log2(right))));
+
+                yield log2(left) > 0 ? new Instruction(Opcode.SHL, PrimitiveType.INT, List.of(right, Constant.of(log2(left)))) : null;
+            }
+            case DIV -> log2(right) > 0 && isNonNegative(left, nonNegative)
+                    ? new Instruction(Opcode.SHR, PrimitiveType.INT, List.of(left, Constant.of(log2(right)))) : null;
+            case REM -> log2(right) > 0 && isNonNegative(left, nonNegative)
+                    ? new Instruction(Opcode.AND, PrimitiveType.INT, List.of(left, Constant.of(((Constant) right).intValue() - 1))) : null;
+            default -> null;
+        };
+    }
+
+    // of a positive power of two, -1 for any other value
+    private static int log2(Value value) {
+        if (!(value instanceof Constant constant) || constant.getType().getName() != TypeName.INTEGER) return -1;
+
+        int number = constant.intValue();
+
+        return number > 0 && (number & (number - 1)) == 0 ? Integer.numberOfTrailingZeros(number) : -1;
+    }
+
+    // the int instructions that can't give a negative value, assumed of all of them at first and taken back until what is left holds,
+    // so that a counter starting at zero and only incremented while below a limit is one of them
+    private static Set<Value> nonNegative(Function function, Dominators dominators) {
+        Set<Value> values = new HashSet<>();
+
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction instruction : block.getInstructions()) {
+                if (instruction.getType().getName() == TypeName.INTEGER) values.add(instruction);
+            }
+        }
+
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            for (BasicBlock block : function.getBlocks()) {
+                for (Instruction instruction : block.getInstructions()) {
+                    if (values.contains(instruction) && !holds(instruction, values, dominators)) {
+                        values.remove(instruction);
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        return values;
+    }
+
+    private static boolean holds(Instruction instruction, Set<Value> values, Dominators dominators) {
+        List<Value> operands = instruction.getOperands();
+
+        return switch (instruction.getOpcode()) {
+            case LENGTH -> true;
+            case PHI -> operands.stream().allMatch(operand -> isNonNegative(operand, values));
+            case AND -> isNonNegative(operands.get(0), values) || isNonNegative(operands.get(1), values);
+            case SHR, REM -> isNonNegative(operands.get(0), values);
+            case DIV -> isNonNegative(operands.get(0), values) && isNonNegative(operands.get(1), values);
+            // one more than a value below an int is an int too
+            case ADD -> {
+                Value other = is(operands.get(1), 1) ? operands.get(0) : is(operands.get(0), 1) ? operands.get(1) : null;
+
+                yield other != null && isNonNegative(other, values) && isBelowLimit(other, instruction.getBlock(), dominators);
+            }
+            default -> false;
+        };
+    }
+
+    private static boolean isNonNegative(Value value, Set<Value> values) {
+        return value instanceof Constant constant ? constant.getType().getName() == TypeName.INTEGER && constant.intValue() >= 0 : values.contains(value);
+    }
+
+    // the block is only run once the value was found lower than another one
+    private static boolean isBelowLimit(Value value, BasicBlock block, Dominators dominators) {
+        for (Instruction comparison : value.getUsers()) {
+            boolean below = comparison.getOpcode() == Opcode.LT && comparison.getOperand(0) == value
+                    || comparison.getOpcode() == Opcode.GT && comparison.getOperand(1) == value;
+
+            if (!below) continue;
+
+            for (Instruction branch : comparison.getUsers()) {
+                if (branch.getOpcode() != Opcode.BRANCH) continue;
+
+                BasicBlock taken = branch.getTargets().getFirst();
+
+                if (taken.getPredecessors().size() == 1 && dominators.dominates(taken, block)) return true;
+            }
+        }
+
+        return false;
+    }
+
+    // the counters are the phis of the header stepped by a constant, the products are by constants or values from before the loop
+    private void reduceInductions(LoopInvariantCodeMotion.Loop loop) {
+        BasicBlock header = loop.header();
+        List<BasicBlock> predecessors = header.getPredecessors();
+
+        if (predecessors.size() != 2) return;
+
+        int entering = loop.blocks().contains(predecessors.get(0)) ? 1 : 0;
+        BasicBlock preheader = predecessors.get(entering);
+        BasicBlock latch = predecessors.get(1 - entering);
+
+        if (loop.blocks().contains(preheader) || preheader.getTerminator().getOpcode() != Opcode.JUMP) return;
+
+        for (Instruction counter : List.copyOf(header.getPhis())) {
+            if (counter.getType().getName() != TypeName.INTEGER) continue;
+
+            Value start = counter.getOperand(entering);
+            Instruction next = counter.getOperand(1 - entering) instanceof Instruction instruction ? instruction : null;
+            Integer step = next == null ? null : step(counter, next);
+
+            if (step == null) continue;
+
+            Map<Object, Instruction> products = new HashMap<>();
+
+            for (Instruction product : List.copyOf(counter.getUsers())) {
+                if (product.getOpcode() != Opcode.MUL || !loop.blocks().contains(product.getBlock())) continue;
+
+                Value factor = product.getOperand(0) == counter ? product.getOperand(1) : product.getOperand(0);
+
+                if (factor == counter || factor instanceof Instruction definition && loop.blocks().contains(definition.getBlock())) continue;
+
+                Instruction reduced = products.computeIfAbsent(key(factor), key -> {
+                    Instruction phi = header.insertPhi(new Instruction(Opcode.PHI, PrimitiveType.INT, List.of()));
+                    Value increment = multiply(preheader, factor, Constant.of(step));
+                    BasicBlock stepping = next.getBlock();
+                    Instruction added = new Instruction(Opcode.ADD, PrimitiveType.INT, List.of(phi, increment));
+
+                    stepping.insertBefore(stepping.getInstructions().get(stepping.getInstructions().indexOf(next) + 1), added);
+
+                    for (BasicBlock predecessor : predecessors) {
+                        phi.addOperand(predecessor == latch ? added : multiply(preheader, start, factor));
+                    }
+
+                    return phi;
+                });
+
+                product.replaceAllUsesWith(reduced);
+                product.remove();
+                inductions++;
+            }
+        }
+    }
+
+    // by how much the counter changes at each step, null when it isn't a counter
+    private static Integer step(Instruction counter, Instruction next) {
+        List<Value> operands = next.getOperands();
+
+        return switch (next.getOpcode()) {
+            case ADD -> operands.get(0) == counter && operands.get(1) instanceof Constant step ? Integer.valueOf(step.intValue())
+                    : operands.get(1) == counter && operands.get(0) instanceof Constant step ? Integer.valueOf(step.intValue()) : null;
+            case SUB -> operands.get(0) == counter && operands.get(1) instanceof Constant step ? Integer.valueOf(-step.intValue()) : null;
+            default -> null;
+        };
+    }
+
+    // the constants by value, the other values by identity
+    private static Object key(Value factor) {
+        return factor instanceof Constant constant ? constant.intValue() : factor;
+    }
+
+    // the product computed before the loop, folded when both are constants
+    private static Value multiply(BasicBlock preheader, Value left, Value right) {
+        if (left instanceof Constant first && right instanceof Constant second) return Constant.of(first.intValue() * second.intValue());
+
+        return preheader.insertBeforeTerminator(new Instruction(Opcode.MUL, PrimitiveType.INT, List.of(left, right)));
+    }
+}
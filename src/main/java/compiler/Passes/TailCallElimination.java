@@ -0,0 +1,115 @@
+package compiler.Passes;
+
+import compiler.Components.IR.*;
+
+import java.util.*;
+
+// turns the calls of a function to itself whose value it returns right away into a jump back to its start,
+// the parameters becoming phis of its first block taking the arguments, so that the recursion runs in one frame
+public class TailCallElimination extends FunctionPass {
+    // the tail calls replaced by function
+    private final Map<String, Long> converted = new TreeMap<>();
+
+    @Override
+    public String getName() {
+        return "tail-call";
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put("functions", (long) converted.size());
+        converted.forEach((function, count) -> counts.put("calls." + function, count));
+
+        return counts;
+    }
+
+    @Override
+    protected boolean run(Program program, Function function) {
+        BasicBlock entry = function.getEntry();
+        List<Instruction> calls = new ArrayList<>();
+
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction instruction : block.getInstructions()) {
+                if (instruction.getOpcode() == Opcode.CALL && instruction.getName().equals(function.getName()) && isTailCall(instruction)) {
+                    calls.add(instruction);
+                }
+            }
+        }
+
+        // the values of its phis on the way in would be unknown
+        if (calls.isEmpty() || !entry.getPhis().isEmpty()) return false;
+
+        List<Instruction> phis = new ArrayList<>();
+
+        for (Parameter parameter : function.getParameters()) {
+            Instruction phi = entry.insertPhi(new Instruction(Opcode.PHI, parameter.getType(), List.of()));
+
+            parameter.replaceAllUsesWith(phi);
+            phis.add(phi);
+        }
+
+        BasicBlock start = function.newBlockBefore(entry);
+        start.append(Instruction.jump(entry));
+
+        Map<BasicBlock, List<Value>> arguments = new HashMap<>();
+
+        for (Instruction call : calls) {
+            BasicBlock block = call.getBlock();
+            Instruction terminator = block.getTerminator();
+
+            arguments.put(block, List.copyOf(call.getOperands()));
+
+            for (BasicBlock target : terminator.getTargets()) {
+                target.removePredecessor(block);
+            }
+
+            terminator.remove();
+            call.remove();
+            block.append(Instruction.jump(entry));
+        }
+
+        // the loops already going back to it leave the parameters as they are
+        for (BasicBlock predecessor : entry.getPredecessors()) {
+            for (int i = 0; i < phis.size(); i++) {
+                Value value = predecessor == start ? function.getParameters().get(i) : arguments.containsKey(predecessor) ? arguments.get(predecessor).get(i) : phis.get(i);
+
+                phis.get(i).addOperand(value);
+            }
+        }
+
+        function.removeUnreachableBlocks();
+        converted.merge(function.getName(), (long) calls.size(), Long::sum);
+
+        return true;
+    }
+
+    // followed by the return of its value, in its block or in the next one doing nothing else
+    private static boolean isTailCall(Instruction call) {
+        BasicBlock block = call.getBlock();
+        List<Instruction> instructions = block.getInstructions();
+        Instruction terminator = block.getTerminator();
+
+        if (instructions.indexOf(call) != instructions.size() - 2) return false;
+
+        if (terminator.getOpcode() == Opcode.RETURN) return returns(terminator, call);
+        if (terminator.getOpcode() != Opcode.JUMP) return false;
+
+        BasicBlock next = terminator.getTargets().getFirst();
+        Instruction ret = next.getTerminator();
+        List<Instruction> phis = next.getPhis();
+
+        if (ret.getOpcode() != Opcode.RETURN || next.getInstructions().size() != phis.size() + 1) return false;
+
+        // the phi returned, taking the value of the call from this block
+        if (phis.isEmpty()) return returns(ret, call);
+
+        return phis.size() == 1 && phis.getFirst().getUsers().equals(List.of(ret)) && returns(ret, phis.getFirst())
+                && phis.getFirst().getOperand(next.getPredecessors().indexOf(block)) == call;
+    }
+
+    // the value, or nothing when the function returns nothing, as its calls have no users then
+    private static boolean returns(Instruction ret, Value value) {
+        return ret.getOperands().isEmpty() ? value.getUsers().isEmpty() : ret.getOperand(0) == value;
+    }
+}
@@ -0,0 +1,291 @@
+package compiler;
+
+import compiler.Components.ThreadUsage;
+import compiler.Events.PhaseEvent;
+import compiler.Events.WriteEvent;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.CodeSizeEvaluator;
+
+import java.io.IOException;
+import java.util.*;
+
+// the time, CPU time and allocations of each phase of a compilation and what it produced
+// every phase is also a flight recorder event, which costs next to nothing while no recording is running
+public class PhaseProfile {
+    public enum Phase {
+        LEX("tokens"),
+        PARSE("nodes"),
+        ANALYZE("functions"),
+        GENERATE("bytes"),
+        WRITE("bytes");
+
+        private final String unit;
+
+        Phase(String unit) {
+            this.unit = unit;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase();
+        }
+    }
+
+    // a phase being measured, ended on the thread it was started on
+    public final class Measurement {
+        private final PhaseEvent event;
+        private final ThreadUsage usage;
+        private final long start;
+        private final long[] writing;
+
+        private Measurement(PhaseEvent event) {
+            this.event = event;
+            writing = snapshot(Phase.WRITE);
+            usage = ThreadUsage.start();
+            event.begin();
+            start = System.nanoTime();
+        }
+    }
+
+    private String className;
+    private boolean cached;
+
+    private final long[] nanos = new long[Phase.values().length];
+    private final long[] cpuNanos = new long[Phase.values().length];
+    private final long[] allocatedBytes = new long[Phase.values().length];
+    private final long[] counts = new long[Phase.values().length];
+
+    private final Map<String, Long> totals = new LinkedHashMap<>();
+    private Map<String, byte[]> classes = Map.of();
+
+    public synchronized void setClassName(String className) {
+        this.className = className;
+    }
+
+    // the classes came from the cache, nothing was compiled
+    public synchronized void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    // what was generated, the sizes of its methods are only computed for the report
+    public synchronized void setClasses(Map<String, byte[]> classes) {
+        this.classes = classes;
+    }
+
+    public Measurement start(PhaseEvent event) {
+        return new Measurement(event);
+    }
+
+    // the write phase happens within the generation, it is only counted once
+    public void end(Phase phase, Measurement measurement, long count) {
+        long elapsed = System.nanoTime() - measurement.start;
+        measurement.usage.stop();
+
+        long[] nested = new long[3];
+
+        if (phase != Phase.WRITE) {
+            long[] writing = snapshot(Phase.WRITE);
+
+            for (int i = 0; i < nested.length; i++) {
+                nested[i] = writing[i] - measurement.writing[i];
+            }
+        }
+
+        add(phase, elapsed - nested[0], measurement.usage.getCpuNanos() - nested[1], measurement.usage.getAllocatedBytes() - nested[2], count);
+
+        PhaseEvent event = measurement.event;
+
+        if (event.className == null) event.className = className;
+        event.setCount(count);
+        event.commit();
+    }
+
+    private synchronized void add(Phase phase, long elapsedNanos, long cpu, long allocated, long count) {
+        nanos[phase.ordinal()] += elapsedNanos;
+        cpuNanos[phase.ordinal()] += cpu;
+        allocatedBytes[phase.ordinal()] += allocated;
+        counts[phase.ordinal()] += count;
+    }
+
+    private synchronized long[] snapshot(Phase phase) {
+        return new long[] { nanos[phase.ordinal()], cpuNanos[phase.ordinal()], allocatedBytes[phase.ordinal()] };
+    }
+
+    // a count beside the ones of the phases, like the symbols or the classes written
+    public synchronized void count(String name, long count) {
+        totals.merge(name, count, Long::sum);
+    }
+
+    public synchronized long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public synchronized long getCpuNanos(Phase phase) {
+        return cpuNanos[phase.ordinal()];
+    }
+
+    public synchronized long getAllocatedBytes(Phase phase) {
+        return allocatedBytes[phase.ordinal()];
+    }
+
+    public synchronized long getCount(Phase phase) {
+        return counts[phase.ordinal()];
+    }
+
+    public synchronized long getCount(String name) {
+        return totals.getOrDefault(name, 0L);
+    }
+
+    public synchronized Map<String, Long> getCounts() {
+        return new LinkedHashMap<>(totals);
+    }
+
+    public synchronized long getTotalNanos() {
+        long total = 0;
+
+        for (long elapsed : nanos) {
+            total += elapsed;
+        }
+
+        return total;
+    }
+
+    // the writes to the output and its completion are the write phase
+    public ClassOutput track(ClassOutput output) {
+        return new ClassOutput() {
+            @Override
+            public void write(String className, byte[] bytecode) throws IOException {
+                WriteEvent event = new WriteEvent();
+                event.className = className;
+                Measurement measurement = start(event);
+
+                output.write(className, bytecode);
+
+                end(Phase.WRITE, measurement, bytecode.length);
+                count("classes", 1);
+            }
+
+            @Override
+            public void close() throws IOException {
+                long start = System.nanoTime();
+                output.close();
+                add(Phase.WRITE, System.nanoTime() - start, 0, 0, 0);
+            }
+
+            @Override
+            public void discard() throws IOException {
+                output.discard();
+            }
+        };
+    }
+
+    // one line per phase, with its share of the total
+    public synchronized List<String> breakdown() {
+        List<String> lines = new ArrayList<>();
+        long total = getTotalNanos();
+
+        lines.add(String.format("%-10s %10s %7s %12s", "phase", "ms", "%", "count"));
+
+        for (Phase phase : Phase.values()) {
+            long elapsed = nanos[phase.ordinal()];
+
+            lines.add(String.format("%-10s %10.2f %7.1f %12d %s", phase, elapsed / 1e6, total == 0 ? 0.0 : 100.0 * elapsed / total, counts[phase.ordinal()], phase.getUnit()));
+        }
+
+        lines.add(String.format("%-10s %10.2f %7.1f", "total", total / 1e6, total == 0 ? 0.0 : 100.0));
+
+        return lines;
+    }
+
+    // the whole profile on one line, the same keys from one release to the next
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{");
+
+        json.append("\"compiler\":").append(quote(Compiler.VERSION));
+        json.append(",\"class\":").append(className == null ? "null" : quote(className));
+        json.append(",\"cached\":").append(cached);
+        json.append(",\"wallNanos\":").append(getTotalNanos());
+
+        json.append(",\"phases\":{");
+        for (Phase phase : Phase.values()) {
+            int i = phase.ordinal();
+
+            if (i > 0) json.append(',');
+            json.append(quote(phase.toString())).append(":{")
+                    .append("\"wallNanos\":").append(nanos[i])
+                    .append(",\"cpuNanos\":").append(cpuNanos[i])
+                    .append(",\"allocatedBytes\":").append(allocatedBytes[i])
+                    .append(',').append(quote(phase.getUnit())).append(':').append(counts[i])
+                    .append('}');
+        }
+        json.append('}');
+
+        json.append(",\"counts\":{");
+        appendEntries(json, totals);
+        json.append('}');
+
+        json.append(",\"methodBytecodeSizes\":{");
+        appendEntries(json, methodSizes());
+        json.append("}}");
+
+        return json.toString();
+    }
+
+    // the code size of every method, by class and method name
+    private Map<String, Long> methodSizes() {
+        Map<String, Long> sizes = new LinkedHashMap<>();
+
+        for (Map.Entry<String, byte[]> element : classes.entrySet()) {
+            new ClassReader(element.getValue()).accept(new ClassVisitor(Opcodes.ASM9) {
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                    return new CodeSizeEvaluator(null) {
+                        @Override
+                        public void visitEnd() {
+                            sizes.put(element.getKey() + "." + name + descriptor, (long) getMaxSize());
+                        }
+                    };
+                }
+            }, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        }
+
+        return sizes;
+    }
+
+    private static void appendEntries(StringBuilder json, Map<String, Long> entries) {
+        boolean first = true;
+
+        for (Map.Entry<String, Long> entry : entries.entrySet()) {
+            if (!first) json.append(',');
+            json.append(quote(entry.getKey())).append(':').append(entry.getValue());
+            first = false;
+        }
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+
+        for (char character : value.toCharArray()) {
+            switch (character) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                default -> {
+                    if (character < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) character));
+                    } else {
+                        quoted.append(character);
+                    }
+                }
+            }
+        }
+
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,396 @@
+package compiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// random programs that compile, of a chosen size and shape, the same seed always giving the same program
+// only what the compiler supports everywhere is used, the records only have int fields, the functions read their
+// parameters and locals only,
+// and a function calls at most one earlier function, never from a loop, so that every program also terminates quickly
+public class ProgramGenerator {
+    private static final String[] WORDS = {"alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta"};
+
+    private long seed = 1;
+    private int functions = 100;
+    private long lines; // when set, functions are added until the program is that long
+    private int statements = 12; // per function, nested ones included
+    private int records = 4;
+    private int expressionDepth = 3;
+    private int loopNesting = 2;
+    private double stringDensity = 0.1;
+    private double commentDensity = 0.1;
+
+    private Random random;
+    private StringBuilder program;
+    private long lineCount;
+
+    private final List<Integer> recordFields = new ArrayList<>(); // int fields of each record
+    private final List<Integer> parameterRecords = new ArrayList<>(); // record of the parameter of each function
+
+    // the names visible in the function being generated
+    private final List<List<String>> integers = new ArrayList<>();
+    private final List<List<String>> arrays = new ArrayList<>();
+    private final List<List<String>> strings = new ArrayList<>();
+    private int nextVariable;
+    private int loopDepth;
+    private int budget;
+    private boolean called;
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setFunctions(int functions) {
+        this.functions = functions;
+    }
+
+    public void setLines(long lines) {
+        this.lines = lines;
+    }
+
+    public void setStatements(int statements) {
+        this.statements = statements;
+    }
+
+    public void setRecords(int records) {
+        this.records = records;
+    }
+
+    public void setExpressionDepth(int expressionDepth) {
+        this.expressionDepth = expressionDepth;
+    }
+
+    public void setLoopNesting(int loopNesting) {
+        this.loopNesting = loopNesting;
+    }
+
+    public void setStringDensity(double stringDensity) {
+        this.stringDensity = stringDensity;
+    }
+
+    public void setCommentDensity(double commentDensity) {
+        this.commentDensity = commentDensity;
+    }
+
+    // Compiler --generate [--seed n] [--functions n | --lines n] [--statements n] [--records n]
+    //                     [--depth n] [--nesting n] [--strings p] [--comments p] [-o file]
+    public static int run(String[] args) throws IOException {
+        ProgramGenerator generator = new ProgramGenerator();
+        String target = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed" -> generator.setSeed(Long.parseLong(args[++i]));
+                case "--functions" -> generator.setFunctions(Integer.parseInt(args[++i]));
+                case "--lines" -> generator.setLines(Long.parseLong(args[++i]));
+                case "--statements" -> generator.setStatements(Integer.parseInt(args[++i]));
+                case "--records" -> generator.setRecords(Integer.parseInt(args[++i]));
+                case "--depth" -> generator.setExpressionDepth(Integer.parseInt(args[++i]));
+                case "--nesting" -> generator.setLoopNesting(Integer.parseInt(args[++i]));
+                case "--strings" -> generator.setStringDensity(Double.parseDouble(args[++i]));
+                case "--comments" -> generator.setCommentDensity(Double.parseDouble(args[++i]));
+                case "-o" -> target = args[++i];
+                default -> {
+                    System.err.println("Unknown option " + args[i]);
+                    return 1;
+                }
+            }
+        }
+
+        String generated = generator.generate();
+
+        if (target == null) {
+            System.out.print(generated);
+        } else {
+            Files.writeString(Paths.get(target), generated);
+        }
+
+        return 0;
+    }
+
+    public String generate() {
+        random = new Random(seed);
+        program = new StringBuilder();
+        lineCount = 0;
+        recordFields.clear();
+        parameterRecords.clear();
+
+        line(0, "$ generated with seed " + seed);
+
+        for (int i = 0; i < Math.max(1, records); i++) {
+            int fields = 2 + random.nextInt(3);
+            StringBuilder record = new StringBuilder("R" + i + " rec {");
+
+            for (int field = 0; field < fields; field++) {
+                record.append(" f").append(field).append(" int;");
+            }
+
+            record.append(" }");
+            recordFields.add(fields);
+            line(0, record.toString());
+        }
+
+        line(0, "");
+
+        // the main function takes a few lines
+        for (int i = 0; lines > 0 ? lineCount + 4 < lines : i < functions; i++) {
+            function(i);
+        }
+
+        int last = parameterRecords.size() - 1;
+
+        line(0, "fun main() {");
+        if (last >= 0) {
+            line(1, "p R" + parameterRecords.get(last) + " = " + construct(parameterRecords.get(last)) + ";");
+            line(1, "writeInt(f" + last + "(3, 4, p));");
+        }
+        line(1, "writeln(\"\");");
+        line(0, "}");
+
+        return program.toString();
+    }
+
+    private void function(int index) {
+        int record = random.nextInt(recordFields.size());
+        parameterRecords.add(record);
+
+        integers.clear();
+        arrays.clear();
+        strings.clear();
+        enterScope();
+        integers.getLast().addAll(List.of("a", "b"));
+        nextVariable = 0;
+        loopDepth = 0;
+        budget = statements;
+        called = false;
+
+        line(0, "fun f" + index + "(a int, b int, p R" + record + ") int {");
+
+        while (budget > 0) {
+            statement(1, index);
+        }
+
+        line(1, "return " + expression(expressionDepth, record) + ";");
+        line(0, "}");
+        line(0, "");
+    }
+
+    private void statement(int indent, int function) {
+        budget--;
+
+        int record = parameterRecords.get(function);
+
+        if (random.nextDouble() < commentDensity) {
+            line(indent, "$ " + word() + " " + word() + " " + word());
+        }
+
+        if (random.nextDouble() < stringDensity) {
+            String name = variable("s");
+            line(indent, name + " string = \"" + word() + " " + word() + "\";");
+            strings.getLast().add(name);
+            return;
+        }
+
+        switch (random.nextInt(function > 0 && !called && loopDepth == 0 ? 9 : 8)) {
+            case 0, 1 -> {
+                String name = variable("v");
+                line(indent, name + " int = " + expression(expressionDepth, record) + ";");
+                integers.getLast().add(name);
+            }
+            case 2 -> {
+                String name = assignable();
+
+                if (name == null) {
+                    budget++;
+                    statement(indent, function);
+                    return;
+                }
+
+                line(indent, name + " = " + expression(expressionDepth, record) + ";");
+            }
+            case 3 -> {
+                line(indent, "if (" + condition(record) + ") {");
+                block(indent + 1, function);
+
+                if (random.nextBoolean()) {
+                    line(indent, "} else {");
+                    block(indent + 1, function);
+                }
+
+                line(indent, "}");
+            }
+            case 4 -> {
+                if (loopDepth >= loopNesting) {
+                    budget++;
+                    statement(indent, function);
+                    return;
+                }
+
+                String counter = variable("i");
+                line(indent, counter + " int;");
+                line(indent, "for (" + counter + ", 0, " + (2 + random.nextInt(9)) + ", 1) {");
+
+                loopDepth++;
+                enterScope();
+                // read, never assigned
+                integers.getLast().add(counter);
+                block(indent + 1, function);
+                leaveScope();
+                loopDepth--;
+
+                line(indent, "}");
+            }
+            case 5 -> {
+                String name = assignable();
+
+                if (name == null) {
+                    budget++;
+                    statement(indent, function);
+                    return;
+                }
+
+                // halving a positive value ends
+                line(indent, "while (" + name + " > " + (1 + random.nextInt(50)) + ") {");
+                line(indent + 1, name + " = " + name + " / 2;");
+                line(indent, "}");
+            }
+            case 6 -> {
+                String name = variable("arr");
+                line(indent, name + " int[] = array [8] of int;");
+                line(indent, name + "[" + random.nextInt(8) + "] = " + expression(expressionDepth, record) + ";");
+                arrays.getLast().add(name);
+            }
+            case 7 -> {
+                String name = variable("x");
+                line(indent, name + " float = " + random.nextInt(10) + "." + random.nextInt(10) + " * " + (1 + random.nextInt(9)) + ".5;");
+                String target = variable("v");
+                line(indent, target + " int = floor(" + name + ") + " + expression(1, record) + ";");
+                integers.getLast().add(target);
+            }
+            default -> {
+                int callee = random.nextInt(function);
+                int calleeRecord = parameterRecords.get(callee);
+                String argument = calleeRecord == record ? "p" : construct(calleeRecord);
+                String name = variable("v");
+
+                line(indent, name + " int = f" + callee + "(" + expression(1, record) + ", " + expression(1, record) + ", " + argument + ");");
+                integers.getLast().add(name);
+                called = true;
+            }
+        }
+    }
+
+    private void block(int indent, int function) {
+        enterScope();
+
+        int count = Math.min(budget, 1 + random.nextInt(3));
+
+        for (int i = 0; i < count || i == 0; i++) {
+            statement(indent, function);
+        }
+
+        leaveScope();
+    }
+
+    private String expression(int depth, int record) {
+        int choice = depth <= 0 ? random.nextInt(4) : random.nextInt(9);
+
+        return switch (choice) {
+            case 0 -> String.valueOf(random.nextInt(100));
+            case 1, 2 -> pick(integers);
+            case 3 -> {
+                String array = pick(arrays);
+                if (array != null) yield array + "[" + random.nextInt(8) + "]";
+
+                String string = pick(strings);
+                if (string != null) yield "len(" + string + ")";
+
+                yield "p.f" + random.nextInt(recordFields.get(record));
+            }
+            case 4 -> "(" + expression(depth - 1, record) + " + " + expression(depth - 1, record) + ")";
+            case 5 -> "(" + expression(depth - 1, record) + " - " + expression(depth - 1, record) + ")";
+            case 6 -> expression(depth - 1, record) + " * " + expression(depth - 1, record);
+            case 7 -> "(" + expression(depth - 1, record) + (random.nextBoolean() ? " / " : " % ") + (1 + random.nextInt(9)) + ")";
+            default -> "p.f" + random.nextInt(recordFields.get(record));
+        };
+    }
+
+    private String condition(int record) {
+        String[] operators = {"<", ">", "<=", ">=", "==", "!="};
+
+        return expression(1, record) + " " + operators[random.nextInt(operators.length)] + " " + expression(1, record);
+    }
+
+    private String construct(int record) {
+        StringBuilder construction = new StringBuilder("R" + record + "(");
+
+        for (int field = 0; field < recordFields.get(record); field++) {
+            if (field > 0) construction.append(", ");
+            construction.append(random.nextInt(100));
+        }
+
+        return construction.append(')').toString();
+    }
+
+    // a local declared by the function, the parameters and counters are kept as they are
+    private String assignable() {
+        List<String> candidates = new ArrayList<>();
+
+        for (List<String> scope : integers) {
+            for (String name : scope) {
+                if (name.startsWith("v")) candidates.add(name);
+            }
+        }
+
+        return candidates.isEmpty() ? null : candidates.get(random.nextInt(candidates.size()));
+    }
+
+    private String pick(List<List<String>> scopes) {
+        int count = 0;
+
+        for (List<String> scope : scopes) {
+            count += scope.size();
+        }
+
+        if (count == 0) return null;
+
+        int index = random.nextInt(count);
+
+        for (List<String> scope : scopes) {
+            if (index < scope.size()) return scope.get(index);
+            index -= scope.size();
+        }
+
+        return null;
+    }
+
+    private void enterScope() {
+        integers.add(new ArrayList<>());
+        arrays.add(new ArrayList<>());
+        strings.add(new ArrayList<>());
+    }
+
+    private void leaveScope() {
+        integers.removeLast();
+        arrays.removeLast();
+        strings.removeLast();
+    }
+
+    // unique in the function, so nested scopes never shadow each other
+    private String variable(String prefix) {
+        return prefix + nextVariable++;
+    }
+
+    private String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private void line(int indent, String text) {
+        program.append("    ".repeat(indent)).append(text).append('\n');
+        lineCount++;
+    }
+}
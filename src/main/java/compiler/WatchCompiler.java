@@ -0,0 +1,188 @@
+package compiler;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+// rebuilds the sources of a directory as they are saved: Compiler --watch [-d outputDirectory] [--debounce ms] [-j workers] [--cache-dir directory] <directory>
+// the targets are laid out as in a batch, each source keeps its own incremental compiler
+public class WatchCompiler implements AutoCloseable {
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 50;
+
+    private static final String TARGET_NAME = "test.class";
+
+    private final Path directory;
+    private final Path outputDirectory;
+    private final CompilerOptions options;
+    private final long debounceMillis;
+    private final WatchService watchService;
+    private final Map<Path, IncrementalCompiler> compilers = new HashMap<>();
+    private Consumer<BatchCompiler.Result> listener = WatchCompiler::print;
+
+    public WatchCompiler(Path directory, Path outputDirectory, CompilerOptions options, long debounceMillis) throws IOException {
+        this.directory = directory;
+        this.outputDirectory = outputDirectory;
+        this.options = options.copy();
+        this.debounceMillis = debounceMillis;
+
+        watchService = directory.getFileSystem().newWatchService();
+    }
+
+    public static int run(String[] args) throws IOException {
+        CompilerOptions options = CompilerOptions.parse(args);
+        List<String> arguments = options.getArguments();
+
+        Path outputDirectory = Paths.get("out");
+        long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+        Path directory = null;
+
+        for (int i = 0; i < arguments.size(); i++) {
+            switch (arguments.get(i)) {
+                case "-d" -> outputDirectory = Paths.get(arguments.get(++i));
+                case "--debounce" -> debounceMillis = Long.parseLong(arguments.get(++i));
+                case String option when option.startsWith("-") -> {
+                    System.err.println("Unknown option " + option);
+                    return 1;
+                }
+                default -> directory = Paths.get(arguments.get(i));
+            }
+        }
+
+        if (directory == null || !Files.isDirectory(directory)) {
+            System.err.println("Usage: Compiler --watch [-d outputDirectory] [--debounce ms] [-j workers] [--cache-dir directory] <directory>");
+            return 1;
+        }
+
+        try (WatchCompiler watcher = new WatchCompiler(directory, outputDirectory, options, debounceMillis)) {
+            watcher.watch();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return 0;
+    }
+
+    public void setListener(Consumer<BatchCompiler.Result> listener) {
+        this.listener = listener;
+    }
+
+    // builds everything once, then every burst of changes, until closed or interrupted
+    public void watch() throws IOException, InterruptedException {
+        List<Path> sources = new ArrayList<>();
+
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted().toList()) {
+                if (Files.isDirectory(path)) {
+                    register(path);
+                } else if (isSource(path)) {
+                    sources.add(path);
+                }
+            }
+        }
+
+        sources.forEach(this::build);
+
+        System.out.println("Watching " + directory);
+
+        try {
+            while (true) {
+                Set<Path> changed = new TreeSet<>();
+                WatchKey key = watchService.take();
+
+                // the editors save in several steps, so the changes are collected until it is quiet
+                while (key != null) {
+                    collect(key, changed);
+                    key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                }
+
+                for (Path source : changed) {
+                    if (Files.exists(source)) {
+                        build(source);
+                    } else {
+                        compilers.remove(source);
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changed) throws IOException {
+        Path watched = (Path) key.watchable();
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // events were lost, everything is looked at again
+                try (Stream<Path> paths = Files.walk(directory)) {
+                    paths.filter(WatchCompiler::isSource).forEach(changed::add);
+                }
+                continue;
+            }
+
+            Path path = watched.resolve((Path) event.context());
+
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                try (Stream<Path> paths = Files.walk(path)) {
+                    for (Path created : paths.toList()) {
+                        if (Files.isDirectory(created)) {
+                            register(created);
+                        } else if (isSource(created)) {
+                            changed.add(created);
+                        }
+                    }
+                }
+            } else if (isSource(path)) {
+                changed.add(path);
+            }
+        }
+
+        key.reset();
+    }
+
+    private void register(Path path) throws IOException {
+        path.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+    }
+
+    private static boolean isSource(Path path) {
+        return path.toString().endsWith(".lang");
+    }
+
+    public BatchCompiler.Result build(Path source) {
+        Path targetDirectory = outputDirectory.resolve(BatchCompiler.stripExtension(directory.relativize(source)));
+        IncrementalCompiler compiler = compilers.computeIfAbsent(source, path -> new IncrementalCompiler());
+
+        long start = System.nanoTime();
+        String error = null;
+
+        try {
+            compiler.compile(Compiler.readSource(source.toString()), targetDirectory.resolve(TARGET_NAME).toFile(), options);
+        } catch (IOException | RuntimeException | Error e) {
+            // a stack overflow on a deeply nested program fails this build, the session goes on
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+
+        BatchCompiler.Result result = new BatchCompiler.Result(source, targetDirectory, (System.nanoTime() - start) / 1e6, error);
+        listener.accept(result);
+
+        return result;
+    }
+
+    private static void print(BatchCompiler.Result result) {
+        if (result.isSuccess()) {
+            System.out.printf("OK   %10.1f ms  %s -> %s%n", result.millis(), result.source(), result.targetDirectory());
+        } else {
+            System.out.printf("FAIL %10.1f ms  %s: %s%n", result.millis(), result.source(), result.error());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
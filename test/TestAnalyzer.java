@@ -242,6 +242,60 @@ public class TestAnalyzer {
         """);
     }
 
+    @Test
+    public void testRecordDefinedAfterFunction() {
+        analyze("""
+            fun origin(offset int) Point {
+                return Point(offset, offset);
+            }
+
+            fun sum(p Point) int {
+                return p.x + p.y;
+            }
+
+            Point rec {
+                x int;
+                y int;
+            }
+        """);
+    }
+
+    @Test
+    public void testRecordReferencingLaterRecord() {
+        analyze("""
+            Line rec {
+                from Point;
+                to Point;
+            }
+
+            Point rec {
+                x int;
+                y int;
+            }
+
+            fun length(l Line) int {
+                return l.to.x - l.from.x + l.to.y - l.from.y;
+            }
+
+            fun main() {
+                writeInt(length(Line(Point(1, 2), Point(4, 6))));
+            }
+        """);
+    }
+
+    @Test
+    public void testRecordContainingItself() {
+        analyzeExpecting(RecordError.class, """
+            Node rec {
+                next Edge;
+            }
+
+            Edge rec {
+                to Node[];
+            }
+        """);
+    }
+
     // Functions
 
     @Test
@@ -309,6 +363,40 @@ public class TestAnalyzer {
         """);
     }
 
+    @Test
+    public void testForwardFunctionReference() {
+        analyze("""
+            total int = twice(4);
+
+            fun twice(x int) int {
+                return add(x, x);
+            }
+
+            fun add(a int, b int) int {
+                return a + b;
+            }
+        """);
+    }
+
+    @Test
+    public void testFunctionBodyErrorWithSequentialWorkers() {
+        Analyzer.getInstance().setParallelism(1);
+
+        try {
+            analyzeExpecting(ReturnError.class, """
+                fun first() int {
+                    return 1;
+                }
+
+                fun second() int {
+                    return "str";
+                }
+            """);
+        } finally {
+            Analyzer.getInstance().setParallelism(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
     // Arrays
 
     @Test
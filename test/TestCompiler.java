@@ -0,0 +1,389 @@
+import compiler.BatchCompiler;
+import compiler.CompileCache;
+import compiler.CompileClient;
+import compiler.CompileDaemon;
+import compiler.Compiler;
+import compiler.CompilerOptions;
+import compiler.IncrementalCompiler;
+import compiler.PhaseProfile;
+import compiler.PhaseProfile.Phase;
+import compiler.WatchCompiler;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+
+import static org.junit.Assert.*;
+
+public class TestCompiler {
+    private static final Path FILES_DIR = Path.of("./test/examples");
+
+    @Test
+    public void testBatchCompilation() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("batch");
+
+        List<BatchCompiler.Result> results = new BatchCompiler(4, outputDirectory).compile(List.of(
+                FILES_DIR.resolve("factorial.lang"),
+                FILES_DIR.resolve("record.lang"),
+                FILES_DIR.resolve("error_return_type.lang")
+        ));
+
+        assertEquals(3, results.size());
+
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(Files.exists(outputDirectory.resolve("factorial").resolve("test.class")));
+
+        assertTrue(results.get(1).isSuccess());
+        assertTrue(Files.exists(outputDirectory.resolve("record").resolve("Point.class")));
+
+        assertFalse(results.get(2).isSuccess());
+        assertTrue(results.get(2).error().contains("ReturnError: Return value and return type don't match"));
+    }
+
+    @Test
+    public void testBatchCompilationSurvivesStackOverflow() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("batch");
+        Path deep = deepSource(Files.createTempDirectory("deep"));
+
+        List<BatchCompiler.Result> results = new BatchCompiler(2, outputDirectory).compile(List.of(deep, FILES_DIR.resolve("factorial.lang")));
+
+        assertFalse(results.get(0).isSuccess());
+        assertEquals("StackOverflowError", results.get(0).error());
+        assertTrue(results.get(1).isSuccess());
+    }
+
+    @Test
+    public void testBatchCompilationOfDirectory() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("batch");
+
+        List<BatchCompiler.Result> results = new BatchCompiler(2, outputDirectory).compile(List.of(FILES_DIR));
+
+        long failures = results.stream().filter(result -> !result.isSuccess()).count();
+        long expectedFailures;
+
+        try (var files = Files.list(FILES_DIR)) {
+            expectedFailures = files.filter(file -> file.getFileName().toString().startsWith("error_")).count();
+        }
+
+        assertEquals(expectedFailures, failures);
+        assertTrue(Files.exists(outputDirectory.resolve("forLoop").resolve("test.class")));
+    }
+
+    // parsing it overflows the stack
+    private Path deepSource(Path directory) throws Exception {
+        Path source = directory.resolve("deep.lang");
+        Files.writeString(source, "fun main() {\n    a int = " + "(".repeat(100000) + "1" + ")".repeat(100000) + ";\n}\n");
+
+        return source;
+    }
+
+    private int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Test
+    public void testDaemonCompilation() throws Exception {
+        int port = freePort();
+        CompileDaemon daemon = new CompileDaemon(port);
+
+        Thread server = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        server.start();
+
+        CompileClient client = new CompileClient(port);
+        Path outputDirectory = Files.createTempDirectory("daemon");
+
+        // wait for the daemon to listen
+        for (int attempt = 0; attempt < 50; attempt++) {
+            try {
+                client.send("status");
+                break;
+            } catch (ConnectException e) {
+                Thread.sleep(100);
+            }
+        }
+
+        assertNull(client.compile(FILES_DIR.resolve("record.lang").toFile(), outputDirectory.resolve("test.class").toFile(), 1));
+        assertTrue(Files.exists(outputDirectory.resolve("Point.class")));
+
+        String error = client.compile(FILES_DIR.resolve("error_return_type.lang").toFile(), outputDirectory.resolve("test.class").toFile(), 1);
+        assertTrue(error.contains("ReturnError"));
+
+        // the compile options reach the daemon, which rejects the bad ones
+        CompilerOptions options = CompilerOptions.parse(new String[] {"-O2", "--pass=unknown"});
+        error = client.compile(FILES_DIR.resolve("record.lang").toFile(), outputDirectory.resolve("test.class").toFile(), options);
+        assertTrue(error, error.contains("Unknown pass - unknown"));
+
+        String response = client.send(String.join("\t", "compile", FILES_DIR.resolve("record.lang").toString(), outputDirectory.resolve("test.class").toString(), "-j", "x")).getFirst();
+        assertTrue(response, response.startsWith("ERROR"));
+
+        error = client.compile(deepSource(outputDirectory).toFile(), outputDirectory.resolve("test.class").toFile(), 1);
+        assertEquals("StackOverflowError", error);
+
+        List<String> status = client.send("status");
+        assertTrue(status.contains("requests=5"));
+        assertTrue(status.contains("failures=4"));
+
+        // the functions of only so many targets are kept
+        for (int i = 0; i <= CompileDaemon.MAX_TARGETS; i++) {
+            Path directory = Files.createDirectories(outputDirectory.resolve("target" + i));
+            assertNull(client.compile(FILES_DIR.resolve("factorial.lang").toFile(), directory.resolve("test.class").toFile(), 1));
+        }
+
+        assertTrue(client.send("status").contains("targets=" + CompileDaemon.MAX_TARGETS));
+
+        client.send("stop");
+        server.join(5000);
+        assertFalse(server.isAlive());
+    }
+
+    @Test
+    public void testClientFallsBackToInProcessCompilation() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("client");
+        File target = outputDirectory.resolve("test.class").toFile();
+
+        assertNull(new CompileClient(freePort()).compile(FILES_DIR.resolve("factorial.lang").toFile(), target, 1));
+        assertTrue(target.exists());
+    }
+
+    @Test
+    public void testCacheHitMaterializesClasses() throws Exception {
+        Path cacheDirectory = Files.createTempDirectory("cache");
+        Path first = Files.createTempDirectory("first");
+        Path second = Files.createTempDirectory("second");
+
+        CompilerOptions options = CompilerOptions.parse(new String[] {"--cache-dir", cacheDirectory.toString()});
+        String content = Compiler.readSource(FILES_DIR.resolve("record.lang").toString());
+
+        assertFalse(Compiler.compile(content, first.resolve("test.class").toFile(), options));
+        assertTrue(Compiler.compile(content, second.resolve("test.class").toFile(), options));
+
+        for (String name : List.of("test.class", "Point.class", "Person.class")) {
+            assertArrayEquals(Files.readAllBytes(first.resolve(name)), Files.readAllBytes(second.resolve(name)));
+        }
+
+        // the main class name is part of the key
+        assertFalse(Compiler.compile(content, second.resolve("other.class").toFile(), options));
+
+        assertEquals(1, options.getCache().getHits());
+        assertEquals(2, options.getCache().getMisses());
+    }
+
+    @Test
+    public void testCacheEvictsLeastRecentlyUsed() throws Exception {
+        Path cacheDirectory = Files.createTempDirectory("cache");
+        CompileCache cache = new CompileCache(cacheDirectory, 20);
+
+        cache.store("a", Map.of("test", new byte[8]));
+        cache.store("b", Map.of("test", new byte[8]));
+        Files.setLastModifiedTime(cacheDirectory.resolve("a"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(cacheDirectory.resolve("b"), FileTime.fromMillis(2000));
+
+        // a hit makes "a" the most recently used entry
+        assertNotNull(cache.load("a"));
+        cache.store("c", Map.of("test", new byte[8]));
+
+        assertTrue(Files.exists(cacheDirectory.resolve("a")));
+        assertFalse(Files.exists(cacheDirectory.resolve("b")));
+        assertTrue(Files.exists(cacheDirectory.resolve("c")));
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.load("b"));
+    }
+
+    private static final String INCREMENTAL_PROGRAM = """
+            fun f(v int) int {
+                return v + 1;
+            }
+
+            fun g() int {
+                f(2);
+                return 1;
+            }
+
+            fun h() int {
+                return 3;
+            }
+
+            fun main() {
+                writeInt(g() + h());
+            }
+            """;
+
+    private void assertSameAsFullCompilation(String content, Path incrementalTarget) throws Exception {
+        Path fullDirectory = Files.createTempDirectory("full");
+        Compiler.compile(content, fullDirectory.resolve("test.class").toFile(), 1);
+
+        assertArrayEquals(Files.readAllBytes(fullDirectory.resolve("test.class")), Files.readAllBytes(incrementalTarget));
+    }
+
+    @Test
+    public void testIncrementalRecompilation() throws Exception {
+        Path target = Files.createTempDirectory("incremental").resolve("test.class");
+        IncrementalCompiler compiler = new IncrementalCompiler();
+        CompilerOptions options = new CompilerOptions();
+
+        compiler.compile(INCREMENTAL_PROGRAM, target.toFile(), options);
+        assertEquals(0, compiler.getReusedCount());
+        assertEquals(4, compiler.getRebuiltCount());
+
+        // a body changed, its callers only see the signature
+        String changedBody = INCREMENTAL_PROGRAM.replace("v + 1", "v + 2");
+        compiler.compile(changedBody, target.toFile(), options);
+        assertEquals(3, compiler.getReusedCount());
+        assertEquals(1, compiler.getRebuiltCount());
+        assertSameAsFullCompilation(changedBody, target);
+
+        // a signature changed, the callers are rebuilt too
+        String changedSignature = "\n" + changedBody.replace("fun f(v int) int {\n    return v + 2;", "fun f(v int) float {\n    return 2.5;");
+        compiler.compile(changedSignature, target.toFile(), options);
+        assertEquals(2, compiler.getReusedCount());
+        assertEquals(2, compiler.getRebuiltCount());
+        assertSameAsFullCompilation(changedSignature, target);
+    }
+
+    @Test
+    public void testIncrementalErrorsKeepLineNumbers() throws Exception {
+        Path target = Files.createTempDirectory("incremental").resolve("test.class");
+        IncrementalCompiler compiler = new IncrementalCompiler();
+        CompilerOptions options = new CompilerOptions();
+
+        compiler.compile(INCREMENTAL_PROGRAM, target.toFile(), options);
+
+        // h moves down by two lines and then breaks through the signature of f
+        String broken = "\n\n" + INCREMENTAL_PROGRAM
+                .replace("fun f(v int) int {\n    return v + 1;", "fun f(v int) string {\n    return \"a\";")
+                .replace("return 3;", "return f(3);");
+
+        RuntimeException incremental = assertThrows(RuntimeException.class, () -> compiler.compile(broken, target.toFile(), options));
+        RuntimeException full = assertThrows(RuntimeException.class, () -> Compiler.compile(broken, target.toFile(), 1));
+
+        assertEquals(full.getMessage(), incremental.getMessage());
+    }
+
+    @Test
+    public void testWatchRebuildsSavedSources() throws Exception {
+        Path sourceDirectory = Files.createTempDirectory("watch");
+        Path outputDirectory = Files.createTempDirectory("watch-output");
+        Path source = sourceDirectory.resolve("program.lang");
+        Files.writeString(source, INCREMENTAL_PROGRAM);
+
+        BlockingQueue<BatchCompiler.Result> results = new LinkedBlockingQueue<>();
+        WatchCompiler watcher = new WatchCompiler(sourceDirectory, outputDirectory, new CompilerOptions(), 20);
+        watcher.setListener(results::add);
+
+        Thread thread = new Thread(() -> {
+            try {
+                watcher.watch();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+
+        BatchCompiler.Result initial = results.poll(10, TimeUnit.SECONDS);
+        assertNotNull(initial);
+        assertTrue(initial.isSuccess());
+
+        Path target = outputDirectory.resolve("program").resolve("test.class");
+        byte[] before = Files.readAllBytes(target);
+
+        Files.writeString(source, INCREMENTAL_PROGRAM.replace("return 3;", "return 4;"));
+
+        BatchCompiler.Result rebuilt = results.poll(10, TimeUnit.SECONDS);
+        assertNotNull(rebuilt);
+        assertTrue(rebuilt.isSuccess());
+        assertFalse(Arrays.equals(before, Files.readAllBytes(target)));
+
+        // a build throwing an Error fails on its own, the watch goes on
+        Path deep = deepSource(sourceDirectory);
+
+        BatchCompiler.Result overflow = results.poll(10, TimeUnit.SECONDS);
+        assertNotNull(overflow);
+        assertEquals(deep, overflow.source());
+        assertEquals("StackOverflowError", overflow.error());
+
+        Files.writeString(source, INCREMENTAL_PROGRAM);
+
+        BatchCompiler.Result restored = results.poll(10, TimeUnit.SECONDS);
+        assertNotNull(restored);
+        assertTrue(restored.isSuccess());
+
+        watcher.close();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void testJarOutput() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("jar");
+        Path target = outputDirectory.resolve("program.jar");
+
+        Compiler.compile(Compiler.readSource(FILES_DIR.resolve("record.lang").toString()), target.toFile(), 1);
+
+        try (JarFile jar = new JarFile(target.toFile())) {
+            assertEquals("program", jar.getManifest().getMainAttributes().get(Attributes.Name.MAIN_CLASS));
+            assertNotNull(jar.getEntry("program.class"));
+            assertNotNull(jar.getEntry("Point.class"));
+            assertNotNull(jar.getEntry("Person.class"));
+        }
+
+        // a failed compilation leaves nothing behind
+        Path failed = outputDirectory.resolve("failed.jar");
+        assertThrows(RuntimeException.class, () -> Compiler.compile(Compiler.readSource(FILES_DIR.resolve("error_return_type.lang").toString()), failed.toFile(), 1));
+
+        try (var files = Files.list(outputDirectory)) {
+            assertEquals(List.of(target), files.toList());
+        }
+    }
+
+    @Test
+    public void testPhaseProfile() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("phases");
+        Path target = outputDirectory.resolve("program.class");
+        PhaseProfile profile = new PhaseProfile();
+
+        Compiler.compile(Compiler.readSource(FILES_DIR.resolve("record.lang").toString()), target.toFile(), new CompilerOptions(), profile);
+
+        for (Phase phase : Phase.values()) {
+            assertTrue(phase + " is counted", profile.getCount(phase) > 0);
+        }
+
+        long bytes = 0;
+        try (var files = Files.list(outputDirectory)) {
+            for (Path file : files.toList()) {
+                bytes += Files.size(file);
+            }
+        }
+
+        assertEquals(bytes, profile.getCount(Phase.GENERATE));
+        assertEquals(bytes, profile.getCount(Phase.WRITE));
+        assertEquals(3, profile.getCount("classes"));
+        assertTrue(profile.getCount("symbols") > 0);
+        assertTrue(profile.getAllocatedBytes(Phase.LEX) > 0);
+        assertEquals(Phase.values().length + 2, profile.breakdown().size());
+
+        String json = profile.toJson();
+        assertTrue(json, json.startsWith("{\"compiler\":\"" + Compiler.VERSION + "\",\"class\":\"program\",\"cached\":false,"));
+        assertTrue(json, json.contains("\"classes\":3"));
+        assertTrue(json, json.contains("\"Point.<init>()V\":"));
+    }
+}
@@ -1,66 +1,40 @@
 import compiler.Analyzer;
+import compiler.Compiler;
 import compiler.Components.Blocks.Block;
 import compiler.Generator;
+import compiler.InMemoryCompiler;
 import compiler.Lexer;
 import compiler.Parser;
-import org.junit.After;
-import org.junit.Before;
 import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
 
 import java.io.*;
-import java.util.stream.Collectors;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
 public class TestGenerator {
     private static final String FILES_DIR = "./test/examples";
 
-    private String runCommand(String... command) throws IOException {
-        ProcessBuilder builder = new ProcessBuilder(command);
-        builder.redirectErrorStream(true);
-        Process process = builder.start();
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            return reader.lines().collect(Collectors.joining("\n"));
-        }
-    }
-
-    private String compileAndRunLangProgram(String filename) throws Exception {
+    // compiled and run in this JVM, the program reads the input and its output is returned
+    private String runLangProgram(String filename, String input) throws Exception {
         File file = new File(FILES_DIR, filename);
         if (!file.exists()) throw new FileNotFoundException("Missing file: " + file);
 
-        String compileOutput = runCommand("./gradlew", "run", "--args=" + file.getPath());
-        System.out.println("Compile output:\n" + compileOutput);
-
-        return runCommand("java", "test");
-    }
-
-    private void compileLangFile(String filename) throws IOException {
-        ProcessBuilder pb = new ProcessBuilder("./gradlew", "run", "--args=test/examples/" + filename);
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            while (reader.readLine() != null) {} // consume output
-        } catch (IOException ignored) {}
-
-        try {
-            process.waitFor();
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        return InMemoryCompiler.run(Compiler.readSource(file.getPath()), input);
     }
 
-    @After
-    public void cleanUpClassFiles() {
-        File dir = new File(".");
-        File[] classFiles = dir.listFiles((d, name) -> name.endsWith(".class"));
-
-        if (classFiles != null) {
-            for (File file : classFiles) {
-                file.delete();
-            }
-        }
+    private String compileAndRunLangProgram(String filename) throws Exception {
+        return runLangProgram(filename, "");
     }
 
     @Test
@@ -269,180 +243,62 @@ public class TestGenerator {
     @Test
     public void testReadInt() throws Exception {
         String simulatedInput = "42\n";
-        compileLangFile("readInt.lang");
-
-        ProcessBuilder pb = new ProcessBuilder("java", "test");
-        pb.directory(new File("."));
-        pb.redirectErrorStream(true);
-
-        Process process = pb.start();
+        String result = runLangProgram("readInt.lang", simulatedInput);
 
-        try (
-                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
-                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))
-        ) {
-            writer.write(simulatedInput);
-            writer.flush();
-
-            StringBuilder output = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
-
-            int exitCode = process.waitFor();
-            assertEquals(0, exitCode);
-            String result = output.toString();
-
-            System.out.println("Program Output:\n" + result);
-            assertTrue(result.contains("You entered: 42"));
-        }
+        System.out.println("Program Output:\n" + result);
+        assertTrue(result.contains("You entered: 42"));
     }
 
     @Test
     public void testReadFloat() throws Exception {
         String simulatedInput = "3.14\n";
-        compileLangFile("readFloat.lang");
-
-        ProcessBuilder pb = new ProcessBuilder("java", "test");
-        pb.directory(new File("."));
-        pb.redirectErrorStream(true);
-
-        Process process = pb.start();
+        String result = runLangProgram("readFloat.lang", simulatedInput);
 
-        try (
-                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
-                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))
-        ) {
-            writer.write(simulatedInput);
-            writer.flush();
-
-            StringBuilder output = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
-
-            int exitCode = process.waitFor();
-            assertEquals(0, exitCode);
-            String result = output.toString();
-
-            System.out.println("Program Output:\n" + result);
-            assertTrue(result.contains("You entered: 3.14"));
-        }
+        System.out.println("Program Output:\n" + result);
+        assertTrue(result.contains("You entered: 3.14"));
     }
 
     @Test
     public void testWriteFloat() throws Exception {
         String simulatedInput = "3.14\n";
-        compileLangFile("writeFloat.lang");
+        String result = runLangProgram("writeFloat.lang", simulatedInput);
 
-        ProcessBuilder pb = new ProcessBuilder("java", "test");
-        pb.directory(new File("."));
-        pb.redirectErrorStream(true);
-
-        Process process = pb.start();
-
-        try (
-                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
-                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))
-        ) {
-            writer.write(simulatedInput);
-            writer.flush();
-
-            StringBuilder output = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
-
-            int exitCode = process.waitFor();
-            assertEquals(0, exitCode);
-            String result = output.toString();
-
-            System.out.println("Program Output:\n" + result);
-            assertTrue(result.contains("-x = -3.14"));
-        }
+        System.out.println("Program Output:\n" + result);
+        assertTrue(result.contains("-x = -3.14"));
     }
 
     @Test
     public void testReadString() throws Exception {
         String simulatedInput = "LINFO2132 student\n";
-        compileLangFile("readString.lang");
-
-        ProcessBuilder pb = new ProcessBuilder("java", "test");
-        pb.directory(new File("."));
-        pb.redirectErrorStream(true);
-
-        Process process = pb.start();
+        String result = runLangProgram("readString.lang", simulatedInput);
 
-        try (
-                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
-                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))
-        ) {
-            writer.write(simulatedInput);
-            writer.flush();
-
-            StringBuilder output = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
-
-            int exitCode = process.waitFor();
-            assertEquals(0, exitCode);
-            String result = output.toString();
-
-            System.out.println("Program Output:\n" + result);
-            assertTrue(result.contains("Hello, LINFO2132 student"));
-        }
+        System.out.println("Program Output:\n" + result);
+        assertTrue(result.contains("Hello, LINFO2132 student"));
     }
 
-
-
     @Test
     public void testFactorialWithInput() throws Exception {
         String program = "factorial.lang";
-        compileLangFile(program);
-
         String simulatedInput = "5\n";
 
-        ProcessBuilder pb = new ProcessBuilder("java", "test");
-        pb.directory(new File(".")); // working dir must contain `test.class`
-        pb.redirectErrorStream(true);
-
-        Process process = pb.start();
-
-        try (
-                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
-                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))
-        ) {
-            writer.write(simulatedInput);
-            writer.flush();
+        String result = runLangProgram(program, simulatedInput);
+        System.out.println("Program Output:\n" + result);
 
-            // Read output
-            StringBuilder output = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
-
-            int exitCode = process.waitFor();
-            assertEquals(0, exitCode);
-
-            String result = output.toString();
-            System.out.println("Program Output:\n" + result);
-
-            assertTrue("Should prompt for input", result.contains("Enter a number"));
-            assertTrue("Should compute factorial", result.contains("Factorial is: 120"));
-        }
+        assertTrue("Should prompt for input", result.contains("Enter a number"));
+        assertTrue("Should compute factorial", result.contains("Factorial is: 120"));
     }
 
+    // the error message of the compilation, empty when it succeeded
     private String runCompilerOnly(String filename) throws IOException {
         File file = new File(FILES_DIR, filename);
         if (!file.exists()) throw new FileNotFoundException("Missing file: " + file);
 
-        return runCommand("./gradlew", "run", "--args=" + file.getPath());
+        try {
+            InMemoryCompiler.compile(Compiler.readSource(file.getPath()), "test", 1);
+            return "";
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
     }
 
     @Test
@@ -517,7 +373,124 @@ public class TestGenerator {
                 output.contains("ScopeError: Variable y is not defined"));
     }
 
+    private byte[] generateWithParallelism(String filename, int parallelism) throws IOException {
+        Analyzer.getInstance().reset();
+
+        Lexer lexer = new Lexer(new FileReader(new File(FILES_DIR, filename)));
+        Block ast = new Parser(lexer).getAST();
+        Analyzer.getInstance().analyze(ast);
+
+        File target = Files.createTempDirectory("parallel").resolve("test.class").toFile();
+
+        Generator generator = new Generator(target);
+        generator.setParallelism(parallelism);
+        generator.generate(ast);
+
+        return Files.readAllBytes(target.toPath());
+    }
+
+    @Test
+    public void testParallelGenerationMatchesSequential() throws Exception {
+        byte[] sequential = generateWithParallelism("funcOfRecordReturn.lang", 1);
+        byte[] parallel = generateWithParallelism("funcOfRecordReturn.lang", 4);
+
+        assertArrayEquals(sequential, parallel);
+    }
 
+    @Test
+    public void testConcurrentRunsKeepTheirOwnStreams() throws Exception {
+        String content = Compiler.readSource(new File(FILES_DIR, "factorial.lang").getPath());
 
+        List<Future<String>> runs = new ArrayList<>();
 
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            for (int i = 1; i <= 8; i++) {
+                String input = i + "\n";
+                runs.add(executor.submit(() -> InMemoryCompiler.run(content, input)));
+            }
+        }
+
+        int factorial = 1;
+
+        for (int i = 1; i <= 8; i++) {
+            factorial *= i;
+            assertTrue(runs.get(i - 1).get().contains("Factorial is: " + factorial));
+        }
+    }
+
+    @Test
+    public void testStringConcatenation() {
+        String output = InMemoryCompiler.run("""
+                fun main() {
+                    s string = "ab";
+                    i int;
+                    for (i, 0, 3, 1) {
+                        s = s + chr(65 + i);
+                    }
+                    writeln(s);
+                }
+                """, "");
+
+        assertEquals("abABC", output.trim());
+    }
+
+    @Test
+    public void testRecordConstructorFollowsFieldOrder() {
+        String output = InMemoryCompiler.run("""
+                Particle rec { x int; y int; vx int; vy int; }
+                fun main() {
+                    p Particle = Particle(1, 2, 3, 4);
+                    write(p.x); write(p.y); write(p.vx); write(p.vy);
+                }
+                """, "");
+
+        assertEquals("1234", output);
+    }
+
+    @Test
+    public void testCountedForLoop() {
+        String content = """
+                fun sum(a int[]) int {
+                    s int = 0;
+                    i int;
+                    for (i, 0, len(a), 1) {
+                        s = s + a[i];
+                    }
+                    return s;
+                }
+
+                fun main() {
+                    a int[] = array [5] of int;
+                    n int = 10;
+                    i int;
+                    for (i, 0, 5, 1) {
+                        a[i] = i;
+                    }
+                    $ the limit changes in the loop, so it is read again at each step
+                    for (i, 0, n, 2) {
+                        n = n - 1;
+                        write(i);
+                    }
+                    writeln("");
+                    writeln(sum(a));
+                }
+                """;
+
+        assertEquals("0246\n10\n", InMemoryCompiler.run(content, ""));
+
+        ClassNode program = new ClassNode();
+        new ClassReader(InMemoryCompiler.compile(content, "Program", 1).get("Program")).accept(program, 0);
+        MethodNode sum = program.methods.stream().filter(method -> method.name.equals("sum")).findFirst().orElseThrow();
+        List<Integer> opcodes = new ArrayList<>();
+
+        for (AbstractInsnNode instruction : sum.instructions) {
+            if (instruction.getOpcode() >= 0) opcodes.add(instruction.getOpcode());
+        }
+
+        // the length is stored once before the loop, and the variable only stepped by an iinc
+        assertEquals(Opcodes.ISTORE, (int) opcodes.get(opcodes.indexOf(Opcodes.ARRAYLENGTH) + 1));
+        assertTrue(opcodes.contains(Opcodes.IINC));
+        // only the one of the sum is left
+        assertEquals(1, opcodes.stream().filter(opcode -> opcode == Opcodes.IADD).count());
+    }
 }
@@ -0,0 +1,236 @@
+import compiler.Analyzer;
+import compiler.Compiler;
+import compiler.CompilerOptions;
+import compiler.Components.Blocks.Block;
+import compiler.Components.IR.*;
+import compiler.Components.Semantic.PrimitiveType;
+import compiler.Components.Semantic.ReturnType;
+import compiler.Exceptions.IRException;
+import compiler.IRBuilder;
+import compiler.InMemoryCompiler;
+import compiler.Lexer;
+import compiler.Parser;
+import compiler.ProgramGenerator;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestIR {
+    private static final String FILES_DIR = "./test/examples";
+
+    private Program build(String content) {
+        Analyzer analyzer = Analyzer.newInstance();
+        Block ast = new Parser(new Lexer(new StringReader(content))).getAST();
+        analyzer.analyze(ast);
+
+        IRBuilder builder = new IRBuilder(analyzer);
+        builder.setParallelism(1);
+
+        return builder.build(ast);
+    }
+
+    // the output, or what the compilation or the program threw
+    private String run(String content, String input, boolean usingIR) {
+        CompilerOptions options = new CompilerOptions();
+        options.setParallelism(1);
+        options.setUsingIR(usingIR);
+
+        try {
+            return InMemoryCompiler.run(content, input, options);
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+
+    // arrays are written with their identity hash
+    private void assertSameOutput(String name, String content, String input) {
+        String identity = "@[0-9a-f]+";
+
+        assertEquals(name, run(content, input, false).replaceAll(identity, ""), run(content, input, true).replaceAll(identity, ""));
+    }
+
+    @Test
+    public void testDump() {
+        Program program = build("""
+                final k int = 3;
+
+                fun add(a int, b int) int {
+                    return a + b * k;
+                }
+
+                fun main() {
+                    writeln(add(1, 2));
+                }
+                """);
+
+        String text = IRPrinter.print(program);
+
+        assertTrue(text, text.startsWith("final k int\n"));
+        assertTrue(text, text.contains("fun add(%a int, %b int) int {"));
+        assertTrue(text, text.contains("= getglobal int k"));
+        assertTrue(text, text.contains("= add int %a, %"));
+        assertTrue(text, text.contains("write writeln, %"));
+        assertTrue(text, text.contains("fun <entry>() void {"));
+        assertTrue(text, text.contains("call main()"));
+    }
+
+    @Test
+    public void testLoopsAreInSSAForm() {
+        Program program = build("""
+                fun main() {
+                    s int = 0;
+                    i int = 0;
+                    while (i < 10) {
+                        s = s + i;
+                        i = i + 1;
+                    }
+                    writeln(s);
+                }
+                """);
+
+        Function main = program.getFunction("main");
+        long phis = main.getBlocks().stream().mapToLong(block -> block.getPhis().size()).sum();
+
+        assertEquals(IRPrinter.print(main), 2, phis);
+    }
+
+    @Test
+    public void testVerifierRejectsBrokenIR() {
+        Program program = new Program();
+        Function function = new Function("f", PrimitiveType.INT, List.of());
+        program.addFunction(function);
+        program.setEntry(new Function(Program.ENTRY, ReturnType.VOID, List.of()));
+        program.getEntry().newBlock().append(Instruction.ret(null));
+
+        BasicBlock entry = function.newBlock();
+        BasicBlock next = function.newBlock();
+        Instruction sum = new Instruction(Opcode.ADD, PrimitiveType.INT, List.of(Constant.of(1), Constant.of(2)));
+
+        entry.append(Instruction.jump(next));
+        next.append(sum);
+
+        // no terminator
+        assertThrows(IRException.class, () -> Verifier.verify(program));
+
+        next.append(Instruction.ret(sum));
+        Verifier.verify(program);
+
+        // used before it is computed
+        Instruction product = new Instruction(Opcode.MUL, PrimitiveType.INT, List.of(sum, sum));
+        next.insertBefore(sum, product);
+        assertThrows(IRException.class, () -> Verifier.verify(program));
+        product.remove();
+
+        // a float added to an int
+        next.insertBefore(sum, new Instruction(Opcode.ADD, PrimitiveType.INT, List.of(Constant.of(1), Constant.of(1.5f))));
+        IRException error = assertThrows(IRException.class, () -> Verifier.verify(program));
+        assertTrue(error.getMessage(), error.getMessage().startsWith("IRError: Invalid IR in f"));
+    }
+
+    @Test
+    public void testExamplesSameOutput() throws Exception {
+        for (File file : new File(FILES_DIR).listFiles((directory, name) -> name.endsWith(".lang"))) {
+            assertSameOutput(file.getName(), Compiler.readSource(file.getPath()), "5\n");
+        }
+    }
+
+    @Test
+    public void testGeneratedProgramsSameOutput() {
+        for (int seed = 1; seed <= 10; seed++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.setSeed(seed);
+            generator.setFunctions(5 + seed);
+            generator.setStatements(5 + seed);
+            generator.setRecords(1 + seed % 4);
+            generator.setExpressionDepth(seed % 5);
+            generator.setLoopNesting(seed % 4);
+            generator.setStringDensity(seed % 3 * 0.2);
+
+            assertSameOutput("seed " + seed, generator.generate(), "");
+        }
+    }
+
+    @Test
+    public void testRecordFieldAssignment() {
+        String content = """
+                Point rec {
+                    x int;
+                    y int;
+                }
+
+                fun main() {
+                    p Point = Point(1, 2);
+                    p.x = p.y + 5;
+                    ps Point[] = array [2] of Point;
+                    ps[1] = p;
+                    ps[1].y = 9;
+                    writeln(p.x);
+                    writeln(p.y);
+                }
+                """;
+
+        assertEquals("7\n9\n", run(content, "", false));
+        assertEquals("7\n9\n", run(content, "", true));
+    }
+
+    @Test
+    public void testFunctionsReadGlobals() {
+        String content = """
+                final base int = 10;
+                count int = 0;
+
+                fun next() int {
+                    count = count + 1;
+                    return base + count;
+                }
+
+                fun main() {
+                    writeln(next());
+                    writeln(next());
+                    writeln(count);
+                }
+                """;
+
+        assertEquals("11\n12\n2\n", run(content, "", true));
+    }
+
+    @Test
+    public void testShortCircuit() {
+        String content = """
+                calls int = 0;
+
+                fun check(b bool) bool {
+                    calls = calls + 1;
+                    return b;
+                }
+
+                fun main() {
+                    if (check(true) || check(false)) {
+                        writeln(calls);
+                    }
+                    if (check(false) || check(true)) {
+                        writeln(calls);
+                    }
+                }
+                """;
+
+        assertEquals("1\n3\n", run(content, "", true));
+    }
+
+    @Test
+    public void testIllTypedOperandsReported() {
+        String content = """
+                fun main() {
+                    a int = 3;
+                    writeln(a + ",");
+                }
+                """;
+
+        assertTrue(run(content, "", true), run(content, "", true).startsWith("OperatorError"));
+        assertEquals(run(content, "", false), run(content, "", true));
+    }
+}
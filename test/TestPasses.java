@@ -0,0 +1,657 @@
+import compiler.Analyzer;
+import compiler.Compiler;
+import compiler.CompilerOptions;
+import compiler.Components.Blocks.Block;
+import compiler.Components.IR.*;
+import compiler.IRBuilder;
+import compiler.InMemoryCompiler;
+import compiler.Lexer;
+import compiler.Parser;
+import compiler.PhaseProfile;
+import compiler.Passes.ConstantPropagation;
+import compiler.Passes.DeadCodeElimination;
+import compiler.Passes.GlobalValueNumbering;
+import compiler.Passes.Inliner;
+import compiler.Passes.LoopInvariantCodeMotion;
+import compiler.Passes.PassManager;
+import compiler.Passes.SimplifyCFG;
+import compiler.Passes.StrengthReduction;
+import compiler.Passes.TailCallElimination;
+import compiler.ProgramGenerator;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestPasses {
+    private static final String FILES_DIR = "./test/examples";
+
+    private Program build(String content) {
+        Analyzer analyzer = Analyzer.newInstance();
+        Block ast = new Parser(new Lexer(new StringReader(content))).getAST();
+        analyzer.analyze(ast);
+
+        IRBuilder builder = new IRBuilder(analyzer);
+        builder.setParallelism(1);
+
+        return builder.build(ast);
+    }
+
+    private CompilerOptions options(String... args) {
+        CompilerOptions options = CompilerOptions.parse(args);
+        options.setParallelism(1);
+        options.setVerifyingIR(true);
+
+        return options;
+    }
+
+    // the output, or what the compilation or the program threw
+    private String run(String content, String input, CompilerOptions options) {
+        try {
+            return InMemoryCompiler.run(content, input, options);
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+
+    // arrays are written with their identity hash
+    private void assertSameOutput(String name, String content, String input) {
+        String identity = "@[0-9a-f]+";
+        String expected = run(content, input, options()).replaceAll(identity, "");
+
+        for (String level : List.of("-O1", "-O2")) {
+            assertEquals(name + " " + level, expected, run(content, input, options(level)).replaceAll(identity, ""));
+        }
+    }
+
+    @Test
+    public void testOptions() {
+        CompilerOptions options = CompilerOptions.parse(new String[] { "-O2", "--pass=-simplify-cfg,+other", "file.lang" });
+
+        assertEquals(2, options.getOptimizationLevel());
+        assertEquals(false, options.getPasses().get("simplify-cfg"));
+        assertEquals(true, options.getPasses().get("other"));
+        assertEquals(List.of("file.lang"), options.getArguments());
+        assertTrue(options.isUsingIR());
+
+        assertFalse(CompilerOptions.parse(new String[] { "-O0" }).isUsingIR());
+        assertTrue(CompilerOptions.parse(new String[] { "--pass=simplify-cfg" }).isUsingIR());
+        assertNotEquals(CompilerOptions.parse(new String[] { "-O1" }).fingerprint(), CompilerOptions.parse(new String[] { "-O2" }).fingerprint());
+
+        // the unknown flags are left to the command, which rejects them
+        assertEquals(List.of("-O3"), CompilerOptions.parse(new String[] { "-O3" }).getArguments());
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> CompilerOptions.parse(new String[] { "-j", "x" }));
+        assertEquals("Invalid value for -j - x", error.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> CompilerOptions.parse(new String[] { "-j", "0" }));
+        assertThrows(IllegalArgumentException.class, () -> CompilerOptions.parse(new String[] { "file.lang", "-j" }));
+    }
+
+    @Test
+    public void testPipeline() {
+        assertEquals(List.of(), new PassManager(options()).getPipeline());
+        assertEquals(List.of("const-prop", "tail-call", "strength-reduce", "dce", "simplify-cfg"), new PassManager(options("-O1")).getPipeline());
+        assertEquals(List.of("const-prop", "tail-call", "inline", "const-prop", "gvn", "licm", "strength-reduce", "dce"), new PassManager(options("-O2", "--pass=-simplify-cfg")).getPipeline());
+        assertEquals(List.of("simplify-cfg"), new PassManager(options("--pass=simplify-cfg")).getPipeline());
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> new PassManager(options("--pass=unknown")));
+        assertTrue(error.getMessage(), error.getMessage().startsWith("Unknown pass - unknown"));
+    }
+
+    @Test
+    public void testSimplifyCFG() {
+        Program program = build("""
+                fun f(a int) int {
+                    if (a > 3) {
+                        return a * 2;
+                    } else {
+                        a = a + 1;
+                    }
+                    while (a < 10) {
+                        a = a + 1;
+                    }
+                    return a;
+                }
+
+                fun main() {
+                    writeln(f(1));
+                }
+                """);
+
+        Function function = program.getFunction("f");
+        int blocks = function.getBlocks().size();
+
+        assertEquals(1, new SimplifyCFG().run(program));
+        assertTrue(IRPrinter.print(function), function.getBlocks().size() < blocks);
+        Verifier.verify(program);
+
+        // nothing left to do
+        assertEquals(0, new SimplifyCFG().run(program));
+    }
+
+    @Test
+    public void testProfile() {
+        PhaseProfile profile = new PhaseProfile();
+        new PassManager(options("-O1")).run(build("fun main() { if (true) { writeln(1); } }"), profile);
+
+        assertEquals(1, profile.getCount("pass.simplify-cfg.runs"));
+        assertTrue(profile.toJson().contains("\"pass.simplify-cfg.changed\":"));
+        List<String> report = PassManager.report(profile);
+
+        assertTrue(report.toString(), report.getFirst().startsWith("pass"));
+        assertTrue(report.toString(), report.stream().anyMatch(line -> line.startsWith("simplify-cfg ")));
+        assertTrue(report.toString(), report.stream().anyMatch(line -> line.startsWith("  folded ")));
+    }
+
+    @Test
+    public void testConstantPropagation() {
+        Program program = build("""
+                final i int = 3;
+                final k int = i * 3;
+                final name string = "ab" + chr(65);
+
+                fun f(a int) int {
+                    x int = k * 2 + len(name) + floor(2.5);
+                    if (x > 100) {
+                        writeln("never");
+                    }
+                    while (x < 0) {
+                        x = x + 1;
+                    }
+                    return x + len(array [4] of int);
+                }
+
+                fun main() {
+                    writeln(f(1) / 0);
+                }
+                """);
+
+        new ConstantPropagation().run(program);
+        new SimplifyCFG().run(program);
+        Verifier.verify(program);
+
+        Function f = program.getFunction("f");
+        String text = IRPrinter.print(program);
+
+        assertEquals(text, 1, f.getBlocks().size());
+        assertTrue(text, text.contains("ret 27"));
+        assertTrue(text, text.contains("putglobal k, 9"));
+        assertTrue(text, text.contains("putglobal name, \"abA\""));
+        // left to throw when it runs
+        assertTrue(text, text.contains("div int"));
+    }
+
+    @Test
+    public void testGlobalsReadBeforeTheyAreStored() {
+        String content = """
+                fun g() int {
+                    return k;
+                }
+
+                final j int = g();
+                final k int = 4;
+
+                fun main() {
+                    writeln(j);
+                    writeln(k);
+                }
+                """;
+
+        Program program = build(content);
+        new ConstantPropagation().run(program);
+
+        assertTrue(IRPrinter.print(program), IRPrinter.print(program.getFunction("g")).contains("getglobal int k"));
+        assertEquals("0\n4\n", run(content, "", options("-O2")));
+    }
+
+    @Test
+    public void testDeadCodeElimination() {
+        Program program = build("""
+                Point rec {
+                    x int;
+                    y int;
+                }
+
+                fun f(a int) int {
+                    unused int = a * 2;
+                    p Point = Point(1, 2);
+                    p.x = 5;
+                    values int[] = array [3] of int;
+                    values[1] = a;
+                    half int = a / 2;
+                    return a;
+                    writeln("after");
+                }
+
+                fun main() {
+                    writeln(f(1));
+                }
+                """);
+
+        DeadCodeElimination pass = new DeadCodeElimination();
+
+        assertEquals(1, pass.run(program));
+        Verifier.verify(program);
+
+        String text = IRPrinter.print(program.getFunction("f"));
+
+        assertEquals(text, 1, program.getFunction("f").countInstructions());
+        assertTrue(pass.getCounts().toString(), pass.getCounts().get("bytes") > 0);
+    }
+
+    @Test
+    public void testDeadCodeKeepsSideEffects() {
+        String content = """
+                count int = 0;
+
+                fun next() int {
+                    count = count + 1;
+                    return count;
+                }
+
+                fun main() {
+                    n int = readInt();
+                    ignored int = next();
+                    values int[] = array [2] of int;
+                    values[n - 4] = 1;
+                    writeln(count);
+                    quotient int = 1 / (n - 5);
+                    writeln("not reached");
+                }
+                """;
+
+        assertEquals("1\nnot reached\n", run(content, "4\n", options("-O2")));
+        assertEquals("ArithmeticException: / by zero", run(content, "5\n", options("-O2")));
+        assertEquals("ArrayIndexOutOfBoundsException: Index -1 out of bounds for length 2", run(content, "3\n", options("-O2")));
+        assertEquals("NegativeArraySizeException: -1", run("fun main() { values int[] = array [readInt()] of int; }", "-1\n", options("-O2")));
+    }
+
+    private long count(Function function, Opcode opcode) {
+        return function.getBlocks().stream().flatMap(block -> block.getInstructions().stream()).filter(instruction -> instruction.getOpcode() == opcode).count();
+    }
+
+    @Test
+    public void testValueNumbering() {
+        Program program = build("""
+                Point rec {
+                    x int;
+                    y int;
+                }
+
+                fun copyPoints(p Point[]) Point {
+                    return Point(p[0].x + p[1].x, p[0].y + p[1].y);
+                }
+
+                fun sum(p Point[], a int) int {
+                    s int = p[0].x * a;
+                    if (a > 2) {
+                        s = s + a * p[0].x;
+                    }
+                    return s;
+                }
+
+                fun main() {
+                    writeln(1);
+                }
+                """);
+
+        GlobalValueNumbering pass = new GlobalValueNumbering();
+        pass.run(program);
+        Verifier.verify(program);
+
+        Function copyPoints = program.getFunction("copyPoints");
+        Function sum = program.getFunction("sum");
+
+        assertEquals(IRPrinter.print(copyPoints), 2, count(copyPoints, Opcode.ARRAY_LOAD));
+        assertEquals(IRPrinter.print(sum), 1, count(sum, Opcode.GET_FIELD));
+        assertEquals(IRPrinter.print(sum), 1, count(sum, Opcode.MUL));
+        assertEquals(Long.valueOf(5), pass.getCounts().get("eliminated"));
+    }
+
+    @Test
+    public void testValueNumberingAfterStores() {
+        String content = """
+                Point rec {
+                    x int;
+                    y int;
+                }
+
+                fun f(p Point[], q Point, a int) int {
+                    s int = p[0].x;
+                    q.x = s + 10;
+                    s = s + p[0].x;
+                    p[1] = q;
+                    s = s + p[1].x;
+                    if (a > 2) {
+                        p[0].x = 100;
+                    }
+                    return s + p[0].x;
+                }
+
+                fun main() {
+                    ps Point[] = array [2] of Point;
+                    ps[0] = Point(1, 2);
+                    ps[1] = Point(3, 4);
+                    writeln(f(ps, ps[0], 3));
+                    writeln(f(ps, ps[1], 1));
+                }
+                """;
+
+        assertEquals("123\n430\n", run(content, "", options("-O2")));
+        assertEquals(run(content, "", options()), run(content, "", options("-O2")));
+    }
+
+    @Test
+    public void testInliner() {
+        String content = """
+                fun square(v int) int {
+                    return v * v;
+                }
+
+                fun sign(v int) int {
+                    if (v > 0) {
+                        return 1;
+                    } else {
+                        if (v < 0) {
+                            return -1;
+                        }
+                    }
+                    return 0;
+                }
+
+                fun fact(n int) int {
+                    if (n <= 1) {
+                        return 1;
+                    }
+                    return n * fact(n - 1);
+                }
+
+                fun bump(a int) int {
+                    a = a + 1;
+                    while (a < 5) {
+                        a = a + 2;
+                    }
+                    return a;
+                }
+
+                fun main() {
+                    n int = readInt();
+                    writeln(square(n));
+                    writeln(sign(-n) + sign(n) + sign(0));
+                    writeln(fact(n));
+                    writeln(bump(n) + square(2));
+                }
+                """;
+
+        Program program = build(content);
+        Inliner inliner = new Inliner();
+
+        assertEquals(2, inliner.run(program));
+        Verifier.verify(program);
+
+        Function main = program.getFunction("main");
+        Function fact = program.getFunction("fact");
+
+        assertEquals(IRPrinter.print(main), 1, count(main, Opcode.CALL));
+        // not into itself
+        assertEquals(IRPrinter.print(fact), 1, count(fact, Opcode.CALL));
+        assertEquals(Long.valueOf(3), inliner.getCounts().get("calls.sign"));
+        assertEquals(Long.valueOf(1), inliner.getCounts().get("calls.fact"));
+
+        assertEquals("25\n0\n120\n10\n", run(content, "5\n", options("-O2")));
+    }
+
+    @Test
+    public void testInlinerCalleeNeverReturning() {
+        String content = """
+                fun spin(n int) int {
+                    while (true) {
+                        n = n + 1;
+                    }
+                    return n;
+                }
+
+                fun main() {
+                    x int = readInt();
+                    if (x > 100) {
+                        writeln(spin(x));
+                    }
+                    writeln(x);
+                }
+                """;
+
+        assertEquals("5\n", run(content, "5\n", options("-O2")));
+        assertEquals("5\n", run(content, "5\n", options("--pass=+const-prop,+inline")));
+
+        Program program = build(content);
+        new ConstantPropagation().run(program);
+        new Inliner().run(program);
+        Verifier.verify(program);
+
+        assertEquals(IRPrinter.print(program.getFunction("main")), 0, count(program.getFunction("main"), Opcode.CALL));
+    }
+
+    @Test
+    public void testEqualityOfStringsBoolsAndRecords() {
+        String content = """
+                Point rec { x int; y int; }
+
+                fun main() {
+                    a string = "ab";
+                    writeln(a == "ab");
+                    writeln(a != "a" + "b");
+                    b bool = a == "x";
+                    writeln(b == false);
+                    writeln(b != true);
+                    p Point = Point(1, 2);
+                    q Point = p;
+                    writeln(p == q);
+                    writeln(p != Point(1, 2));
+                    if (a == "ab") {
+                        writeln("same");
+                    }
+                    i int = 0;
+                    while (a != "abab") {
+                        a = a + "ab";
+                        i = i + 1;
+                    }
+                    writeln(i);
+                }
+                """;
+
+        assertEquals("true\nfalse\ntrue\ntrue\ntrue\ntrue\nsame\n1\n", run(content, "", options()));
+        assertSameOutput("equality", content, "");
+    }
+
+    @Test
+    public void testLoopInvariantCodeMotion() {
+        String content = """
+                Point rec {
+                    x int;
+                    y int;
+                }
+
+                fun sum(a int[], p Point, k int) int {
+                    s int = 0;
+                    i int = 0;
+                    while (i < len(a)) {
+                        s = s + a[i] * (k * 3) + p.x;
+                        i = i + 1;
+                    }
+                    j int = 0;
+                    for (j, 0, len(a) - 1, 1) {
+                        s = s + p.y;
+                        p.x = s;
+                    }
+                    return s;
+                }
+
+                fun main() {
+                    a int[] = array [4] of int;
+                    a[2] = 5;
+                    writeln(sum(a, Point(1, 2), 2));
+                    q Point;
+                    writeln(sum(array [0] of int, q, 1));
+                }
+                """;
+
+        Program program = build(content);
+        LoopInvariantCodeMotion licm = new LoopInvariantCodeMotion();
+
+        assertEquals(1, licm.run(program));
+        Verifier.verify(program);
+
+        Function sum = program.getFunction("sum");
+        List<Opcode> entry = sum.getEntry().getInstructions().stream().map(Instruction::getOpcode).toList();
+
+        // the length and the multiplication of the first loop, the length and the subtraction of the limit of the second one
+        assertEquals(IRPrinter.print(sum), List.of(Opcode.LENGTH, Opcode.MUL, Opcode.JUMP), entry);
+        assertEquals(Long.valueOf(4), licm.getCounts().get("hoisted"));
+        // the record may be null when the loops don't run, and the second one stores to it
+        assertEquals(IRPrinter.print(sum), 2, count(sum, Opcode.GET_FIELD));
+
+        assertEquals("40\n0\n", run(content, "", options("-O2")));
+    }
+
+    @Test
+    public void testStrengthReduction() {
+        String content = """
+                fun hash(a int[]) int {
+                    h int = 7;
+                    i int = 0;
+                    for (i, 0, len(a), 1) {
+                        h = h * 31 + a[i] * 8 + i / 4 + i % 8 + i * 12;
+                    }
+                    return h;
+                }
+
+                fun identities(x int, b bool) int {
+                    if (!(!(b))) {
+                        return x / 4 + x % 8;
+                    }
+                    return x * 1 + (x + 0) - (x - x) + x * 0;
+                }
+
+                fun main() {
+                    a int[] = array [20] of int;
+                    i int = 0;
+                    for (i, 0, 20, 1) {
+                        a[i] = i * i - 50;
+                    }
+                    writeln(hash(a));
+                    writeln(identities(-13, true));
+                    writeln(identities(13, true));
+                    writeln(identities(-13, false));
+                }
+                """;
+
+        Program program = build(content);
+        StrengthReduction reduction = new StrengthReduction();
+
+        reduction.run(program);
+        Verifier.verify(program);
+
+        Function hash = program.getFunction("hash");
+        Function identities = program.getFunction("identities");
+
+        // the counter can't be negative, its products by 8 and 12 are a shift and a counter of their own
+        assertEquals(IRPrinter.print(hash), 1, count(hash, Opcode.MUL));
+        assertEquals(IRPrinter.print(hash), 1, count(hash, Opcode.SHL));
+        assertEquals(IRPrinter.print(hash), 1, count(hash, Opcode.SHR));
+        assertEquals(IRPrinter.print(hash), 1, count(hash, Opcode.AND));
+        assertEquals(Long.valueOf(1), reduction.getCounts().get("inductions"));
+        // a parameter may be negative, where the shifts and the masks round otherwise
+        assertEquals(IRPrinter.print(identities), 1, count(identities, Opcode.DIV));
+        assertEquals(IRPrinter.print(identities), 1, count(identities, Opcode.REM));
+        assertEquals(IRPrinter.print(identities), 0, count(identities, Opcode.MUL) + count(identities, Opcode.SUB));
+        assertTrue(IRPrinter.print(identities), identities.getEntry().getTerminator().getOperand(0) instanceof Parameter);
+
+        assertEquals(run(content, "", options()), run(content, "", options("-O2")));
+        assertEquals(run(content, "", options()), run(content, "", options("--pass=strength-reduce")));
+    }
+
+    @Test
+    public void testTailCallElimination() {
+        String content = """
+                fun gcd(a int, b int) int {
+                    if (b == 0) {
+                        return a;
+                    }
+                    return gcd(b, a % b);
+                }
+
+                fun sum(n int, acc int) int {
+                    if (n == 0) {
+                        return acc;
+                    } else {
+                        return sum(n - 1, acc + n);
+                    }
+                }
+
+                fun countDown(n int) {
+                    if (n > 0) {
+                        write(n);
+                        countDown(n - 1);
+                    }
+                }
+
+                fun fact(n int) int {
+                    if (n <= 1) {
+                        return 1;
+                    }
+                    return n * fact(n - 1);
+                }
+
+                fun main() {
+                    writeln(gcd(84, 36));
+                    writeln(sum(1000000, 0));
+                    countDown(3);
+                    writeln(fact(5));
+                }
+                """;
+
+        Program program = build(content);
+        TailCallElimination tailCalls = new TailCallElimination();
+
+        assertEquals(3, tailCalls.run(program));
+        Verifier.verify(program);
+
+        for (String name : List.of("gcd", "sum", "countDown")) {
+            assertEquals(IRPrinter.print(program.getFunction(name)), 0, count(program.getFunction(name), Opcode.CALL));
+            assertEquals(Long.valueOf(1), tailCalls.getCounts().get("calls." + name));
+        }
+
+        // its call is not the last thing it does
+        assertEquals(1, count(program.getFunction("fact"), Opcode.CALL));
+        assertEquals(Long.valueOf(3), tailCalls.getCounts().get("functions"));
+
+        // a million frames deep without it
+        assertEquals("12\n1784293664\n321120\n", run(content, "", options("-O1")));
+    }
+
+    @Test
+    public void testExamplesSameOutput() throws Exception {
+        for (File file : new File(FILES_DIR).listFiles((directory, name) -> name.endsWith(".lang"))) {
+            assertSameOutput(file.getName(), Compiler.readSource(file.getPath()), "5\n");
+        }
+    }
+
+    @Test
+    public void testGeneratedProgramsSameOutput() {
+        for (int seed = 1; seed <= 10; seed++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.setSeed(seed);
+            generator.setFunctions(5 + seed);
+            generator.setStatements(5 + seed);
+            generator.setRecords(1 + seed % 4);
+            generator.setExpressionDepth(seed % 5);
+            generator.setLoopNesting(seed % 4);
+            generator.setStringDensity(seed % 3 * 0.2);
+
+            assertSameOutput("seed " + seed, generator.generate(), "");
+        }
+    }
+}
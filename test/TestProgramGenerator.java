@@ -0,0 +1,124 @@
+import compiler.Compiler;
+import compiler.CompilerOptions;
+import compiler.InMemoryCompiler;
+import compiler.PhaseProfile;
+import compiler.PhaseProfile.Phase;
+import compiler.ProgramGenerator;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestProgramGenerator {
+    // up to 1M lines with ./gradlew scalingTest
+    private static final long MAX_LINES = Long.getLong("scaling.maxLines", 10_000);
+
+    // how much slower a line may get from one size to the next, well below the 10 times of a quadratic phase
+    private static final double MAX_SLOWDOWN = 3.0;
+
+    // a garbage collection can take that long, whatever the size
+    private static final double NOISE_NANOS = 50e6;
+
+    @Test
+    public void testSameSeedSameProgram() {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setSeed(7);
+
+        String program = generator.generate();
+        assertEquals(program, generator.generate());
+
+        generator.setSeed(8);
+        assertNotEquals(program, generator.generate());
+    }
+
+    @Test
+    public void testGeneratedProgramsRun() {
+        for (int seed = 1; seed <= 20; seed++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.setSeed(seed);
+            generator.setFunctions(10 + seed);
+            generator.setStatements(5 + seed);
+            generator.setRecords(1 + seed % 4);
+            generator.setExpressionDepth(seed % 5);
+            generator.setLoopNesting(seed % 4);
+            generator.setStringDensity(seed % 3 * 0.2);
+            generator.setCommentDensity(0.3);
+
+            String output = InMemoryCompiler.run(generator.generate(), "");
+
+            assertTrue("seed " + seed + ": " + output, output.trim().matches("-?[0-9]+"));
+        }
+    }
+
+    @Test
+    public void testLines() {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setLines(5_000);
+        generator.setStatements(20);
+
+        long lines = generator.generate().lines().count();
+
+        // the last function goes past the target
+        assertTrue(lines >= 5_000);
+        assertTrue(lines < 5_200);
+    }
+
+    // the same shape of functions at every size, only their number grows, so that each phase should take the same time per line
+    @Test
+    public void testScaling() throws Exception {
+        Path outputDirectory = Files.createTempDirectory("scaling");
+        List<Phase> phases = List.of(Phase.LEX, Phase.PARSE, Phase.ANALYZE, Phase.GENERATE);
+
+        // warms up the compiler, the smallest size would look slow otherwise
+        for (int i = 0; i < 3; i++) {
+            profile(1_000, outputDirectory);
+        }
+
+        List<Long> sizes = new ArrayList<>();
+        List<PhaseProfile> profiles = new ArrayList<>();
+
+        for (long lines = 1_000; lines <= MAX_LINES; lines *= 10) {
+            sizes.add(lines);
+            profiles.add(profile(lines, outputDirectory));
+
+            PhaseProfile profile = profiles.getLast();
+            StringBuilder row = new StringBuilder(String.format("%9d lines", lines));
+
+            for (Phase phase : phases) {
+                row.append(String.format("  %s %8.2f us/line", phase, profile.getNanos(phase) / 1e3 / lines));
+            }
+
+            System.out.println(row);
+        }
+
+        for (int i = 1; i < sizes.size(); i++) {
+            for (Phase phase : phases) {
+                double before = (double) profiles.get(i - 1).getNanos(phase) / sizes.get(i - 1);
+                double after = (double) profiles.get(i).getNanos(phase) / sizes.get(i);
+
+                assertTrue(phase + " from " + sizes.get(i - 1) + " to " + sizes.get(i) + " lines: " + before + " to " + after + " ns per line",
+                        after <= before * MAX_SLOWDOWN + NOISE_NANOS / sizes.get(i));
+            }
+        }
+    }
+
+    private PhaseProfile profile(long lines, Path outputDirectory) {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setSeed(lines);
+        generator.setLines(lines);
+        generator.setStatements(60);
+
+        CompilerOptions options = new CompilerOptions();
+        options.setParallelism(1);
+
+        PhaseProfile profile = new PhaseProfile();
+        Compiler.compile(generator.generate(), new File(outputDirectory.toFile(), "scaling.class"), options, profile);
+
+        return profile;
+    }
+}